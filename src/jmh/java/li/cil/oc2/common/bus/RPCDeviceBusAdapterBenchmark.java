@@ -0,0 +1,120 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.bus;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayFIFOQueue;
+import li.cil.oc2.api.bus.DeviceBusController;
+import li.cil.oc2.api.bus.device.Device;
+import li.cil.oc2.api.bus.device.object.Callback;
+import li.cil.oc2.api.bus.device.object.ObjectDevice;
+import li.cil.sedna.api.device.serial.SerialDevice;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing, dispatching and answering a single {@code invoke} message, as sent by the
+ * RPC serial device of a virtual machine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RPCDeviceBusAdapterBenchmark {
+    private LoopbackSerialDevice serialDevice;
+    private RPCDeviceBusAdapter adapter;
+    private byte[] message;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serialDevice = new LoopbackSerialDevice();
+        adapter = new RPCDeviceBusAdapter(serialDevice);
+
+        final Device device = new ObjectDevice(new BenchmarkDevice(), "benchmark");
+        final UUID deviceId = UUID.randomUUID();
+        adapter.resume(new SingleDeviceBusController(device, deviceId), true);
+        adapter.mountDevices();
+
+        message = ("{\"type\":\"invoke\",\"data\":{\"deviceId\":\"" + deviceId + "\",\"name\":\"add\",\"parameters\":[1,2]}}\0")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int invoke() {
+        serialDevice.putInput(message);
+        adapter.step(0);
+        return serialDevice.drainOutput();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    public static final class BenchmarkDevice {
+        @Callback(synchronize = false)
+        public int add(final int a, final int b) {
+            return a + b;
+        }
+    }
+
+    private record SingleDeviceBusController(Device device, UUID deviceId) implements DeviceBusController {
+        @Override
+        public void scheduleBusScan(final ScanReason reason) {
+        }
+
+        @Override
+        public void scanDevices() {
+        }
+
+        @Override
+        public Set<Device> getDevices() {
+            return Set.of(device);
+        }
+
+        @Override
+        public Set<UUID> getDeviceIdentifiers(final Device device) {
+            return Set.of(deviceId);
+        }
+    }
+
+    private static final class LoopbackSerialDevice implements SerialDevice {
+        private final ByteArrayFIFOQueue input = new ByteArrayFIFOQueue();
+        private int outputCount;
+
+        public void putInput(final byte[] data) {
+            for (final byte value : data) {
+                input.enqueue(value);
+            }
+        }
+
+        public int drainOutput() {
+            final int count = outputCount;
+            outputCount = 0;
+            return count;
+        }
+
+        @Override
+        public int read() {
+            return input.isEmpty() ? -1 : input.dequeueByte() & 0xFF;
+        }
+
+        @Override
+        public boolean canPutByte() {
+            return true;
+        }
+
+        @Override
+        public void putByte(final byte value) {
+            outputCount++;
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
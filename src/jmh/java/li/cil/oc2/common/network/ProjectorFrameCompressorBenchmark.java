@@ -0,0 +1,110 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network;
+
+import li.cil.oc2.jcodec.codecs.h264.H264Encoder;
+import li.cil.oc2.jcodec.codecs.h264.encode.CQPRateControl;
+import li.cil.oc2.jcodec.common.VideoEncoder;
+import li.cil.oc2.jcodec.common.model.ColorSpace;
+import li.cil.oc2.jcodec.common.model.Picture;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Measures compressing encoded projector frames, either with a new {@link Deflater} per frame, as
+ * projectors used to, or with a {@link ProjectorFrameCompressor}.
+ * <p>
+ * Frames are a keyframe followed by frames where one text line sized band changes each, encoded
+ * once up front, so only compression is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProjectorFrameCompressorBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int LINE_HEIGHT = 16;
+    private static final int BLOCK_SIZE = 4;
+    private static final int FRAME_COUNT = 30;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Param({"per_frame", "stream"}) public String mode;
+    @Param({"1", "9"}) public int level;
+
+    private final ByteBuffer[] frames = new ByteBuffer[FRAME_COUNT];
+    private ProjectorFrameCompressor compressor;
+    private ByteBuffer output;
+    private int frame;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final H264Encoder encoder = new H264Encoder(new CQPRateControl(12));
+        encoder.setKeyInterval(FRAME_COUNT);
+        final Picture picture = Picture.create(WIDTH, HEIGHT, ColorSpace.YUV420J);
+        final Random random = new Random(0);
+        fillBlocks(picture, random, 0, HEIGHT);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            if (i > 0) {
+                fillBlocks(picture, random, (i * LINE_HEIGHT) % HEIGHT, LINE_HEIGHT);
+            }
+
+            buffer.clear();
+            final VideoEncoder.EncodedFrame encodedFrame = encoder.encodeFrame(picture, buffer);
+            final ByteBuffer data = encodedFrame.data();
+            frames[i] = ByteBuffer.allocateDirect(data.remaining());
+            frames[i].put(data).flip();
+        }
+
+        compressor = new ProjectorFrameCompressor(() -> level);
+        output = ByteBuffer.allocateDirect(1024 * 1024);
+    }
+
+    @Benchmark
+    public ByteBuffer compress() {
+        final ByteBuffer frameData = frames[frame].duplicate();
+        final boolean keyFrame = frame == 0;
+        frame = (frame + 1) % FRAME_COUNT;
+
+        output.clear();
+        if ("per_frame".equals(mode)) {
+            final Deflater deflater = new Deflater(level);
+            deflater.setInput(frameData);
+            deflater.finish();
+            deflater.deflate(output, Deflater.FULL_FLUSH);
+            deflater.end();
+            output.flip();
+            return output;
+        } else {
+            return compressor.compress(frameData, keyFrame, output);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static void fillBlocks(final Picture picture, final Random random, final int top, final int height) {
+        final byte[] luma = picture.getPlaneData(0);
+        for (int y = top; y < top + height; y += BLOCK_SIZE) {
+            for (int x = 0; x < WIDTH; x += BLOCK_SIZE) {
+                final byte value = (byte) random.nextInt();
+                for (int row = y; row < y + BLOCK_SIZE; row++) {
+                    final int offset = row * WIDTH + x;
+                    for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+                        luma[i] = value;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing terminal output, either plain text or text interleaved with the kind of
+ * escape sequences emitted by full-screen programs (colors, cursor movement, erasing).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TerminalBenchmark {
+    private static final String PLAIN_LINE = "drwxr-xr-x    2 root     root          4096 Jan  1 00:00 bin\r\n";
+    private static final String ESCAPE_LINE = "\033[1;1H\033[2K\033[1;32mroot\033[0m@\033[34mlocalhost\033[0m:~# \033[7m top \033[27m\033[24;80H\r\n";
+    private static final int LINES_PER_OPERATION = 100;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Param({"plain", "escape"}) public String output;
+
+    private Terminal terminal;
+    private ByteBuffer data;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() {
+        terminal = new Terminal();
+        final String line = "plain".equals(output) ? PLAIN_LINE : ESCAPE_LINE;
+        data = ByteBuffer.wrap(line.repeat(LINES_PER_OPERATION).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public void putOutput() {
+        data.rewind();
+        terminal.putOutput(data);
+    }
+}
@@ -0,0 +1,165 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import li.cil.oc2.common.Constants;
+import li.cil.oc2.common.bus.CommonDeviceBusController;
+import li.cil.oc2.common.bus.device.data.BuildrootFirmware;
+import li.cil.oc2.common.vm.context.global.GlobalVMContext;
+import li.cil.oc2.common.vm.provider.DeviceTreeProviders;
+import li.cil.sedna.Sedna;
+import li.cil.sedna.buildroot.Buildroot;
+import li.cil.sedna.device.block.ByteBufferBlockDevice;
+import li.cil.sedna.device.memory.ByteBufferMemory;
+import li.cil.sedna.device.virtio.VirtIOBlockDevice;
+import li.cil.sedna.riscv.R5Board;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraft.server.level.ServerPlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one server tick worth of virtual machine execution, for a headless machine running
+ * the Buildroot image.
+ * <p>
+ * The machine is booted during setup. In the {@code idle} case it then sits at its shell
+ * prompt, in the {@code busy} case it runs a shell busy-loop. Note that a tick is capped at the
+ * time slice of the runner, so results close to that cap mean the host cannot keep up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class VMRunnerBenchmark {
+    private static final int MEMORY_SIZE = 32 * Constants.MEGABYTE;
+    private static final int BOOT_TICKS = 30 * Constants.SECONDS_TO_TICKS;
+    private static final String BUSY_LOOP_COMMAND = "while true; do :; done\n";
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Param({"idle", "busy"}) public String load;
+
+    private HeadlessVirtualMachine virtualMachine;
+    private VMRunner runner;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Sedna.initialize();
+        DeviceTreeProviders.initialize();
+
+        virtualMachine = new HeadlessVirtualMachine();
+        final R5Board board = virtualMachine.state.board;
+        final GlobalVMContext context = virtualMachine.state.context;
+
+        final ByteBufferMemory memory = new ByteBufferMemory(MEMORY_SIZE, ByteBuffer.allocateDirect(MEMORY_SIZE));
+        if (!context.getMemoryRangeAllocator().claimMemoryRange(board.getDefaultProgramStart(), memory)) {
+            throw new IllegalStateException("Failed adding memory.");
+        }
+
+        final VirtIOBlockDevice hardDrive = new VirtIOBlockDevice(board.getMemoryMap(), false);
+        hardDrive.setBlock(ByteBufferBlockDevice.createFromStream(Buildroot.getRootFilesystem(), false));
+        if (context.getMemoryRangeAllocator().claimMemoryRange(hardDrive).isEmpty()) {
+            throw new IllegalStateException("Failed adding hard drive.");
+        }
+        final int hardDriveInterrupt = context.getInterruptAllocator().claimInterrupt()
+            .orElseThrow(() -> new IllegalStateException("Failed claiming hard drive interrupt."));
+        hardDrive.getInterrupt().set(hardDriveInterrupt, context.getInterruptController());
+
+        board.reset();
+        board.initialize();
+        new BuildrootFirmware().run(board.getMemoryMap(), board.getDefaultProgramStart());
+        board.setRunning(true);
+
+        runner = virtualMachine.createRunner();
+        for (int i = 0; i < BOOT_TICKS; i++) {
+            runTick();
+        }
+
+        if ("busy".equals(load)) {
+            virtualMachine.terminal.putInput(ByteBuffer.wrap(BUSY_LOOP_COMMAND.getBytes(StandardCharsets.US_ASCII)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        virtualMachine.stopRunnerAndReset();
+        virtualMachine.dispose();
+    }
+
+    @Benchmark
+    public void tick() {
+        runTick();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private void runTick() {
+        virtualMachine.state.rpcAdapter.tick();
+        if (runner.addTickBudget()) {
+            while (runner.runSlice(Integer.MAX_VALUE)) {
+                // Keep running until the tick's cycle budget or time quota is used up.
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final class HeadlessVirtualMachine extends AbstractVirtualMachine {
+        public final Terminal terminal = new Terminal();
+        private final TerminalSynchronizer terminalSynchronizer = new HeadlessTerminalSynchronizer(terminal);
+
+        public HeadlessVirtualMachine() {
+            // The bus is never scanned, devices are added to the board directly.
+            super(new CommonDeviceBusController(null, 0));
+        }
+
+        @Override
+        public Component getDescription() {
+            return new TextComponent("Benchmark");
+        }
+
+        @Override
+        protected AbstractTerminalVMRunner createRunner() {
+            return new AbstractTerminalVMRunner(this, terminal) {
+                @Override
+                protected void putTerminalOutput(final ByteBuffer output) {
+                    terminalSynchronizer.putOutput(output);
+                }
+            };
+        }
+
+        @Override
+        protected boolean consumeEnergy(final int amount, final boolean simulate) {
+            return true;
+        }
+    }
+
+    // There are no clients, but output still goes through the synchronizer to measure its cost.
+    private static final class HeadlessTerminalSynchronizer extends TerminalSynchronizer {
+        public HeadlessTerminalSynchronizer(final Terminal terminal) {
+            super(terminal);
+        }
+
+        @Override
+        protected void sendOutput(final ByteBuffer output, final Collection<ServerPlayer> players) {
+        }
+
+        @Override
+        protected void sendState(final CompoundTag state, final Collection<ServerPlayer> players) {
+        }
+
+        @Override
+        protected void sendLines(final ByteBuffer lines) {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm.device;
+
+import li.cil.oc2.common.bus.device.vm.block.ProjectorDevice;
+import li.cil.oc2.jcodec.common.model.ColorSpace;
+import li.cil.oc2.jcodec.common.model.Picture;
+import li.cil.sedna.api.memory.MemoryAccessException;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting the RGB565 framebuffer contents of a projector to YUV420, either for the
+ * whole framebuffer or for a single dirty line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SimpleFramebufferDeviceBenchmark {
+    private static final int WIDTH = ProjectorDevice.WIDTH;
+    private static final int HEIGHT = ProjectorDevice.HEIGHT;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Param({"full", "line"}) public String dirty;
+
+    private SimpleFramebufferDevice device;
+    private Picture picture;
+    private final BitSet changedMacroblocks = new BitSet();
+    private int value;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() throws MemoryAccessException {
+        device = new SimpleFramebufferDevice(WIDTH, HEIGHT, ByteBuffer.allocateDirect(WIDTH * HEIGHT * SimpleFramebufferDevice.STRIDE));
+        picture = Picture.create(WIDTH, HEIGHT, ColorSpace.YUV420J);
+        for (int offset = 0; offset < device.getLength(); offset += SimpleFramebufferDevice.STRIDE) {
+            device.store(offset, offset * 31, 1);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void markDirty() throws MemoryAccessException {
+        value++;
+        if ("full".equals(dirty)) {
+            for (int row = 0; row < HEIGHT; row += 2) {
+                device.store(row * WIDTH * SimpleFramebufferDevice.STRIDE, value, 1);
+            }
+        } else {
+            device.store((HEIGHT / 2) * WIDTH * SimpleFramebufferDevice.STRIDE, value, 1);
+        }
+    }
+
+    @Benchmark
+    public boolean applyChanges() {
+        changedMacroblocks.clear();
+        return device.applyChanges(picture, changedMacroblocks);
+    }
+}
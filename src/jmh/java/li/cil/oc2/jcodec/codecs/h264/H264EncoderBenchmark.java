@@ -0,0 +1,97 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.jcodec.codecs.h264;
+
+import li.cil.oc2.jcodec.codecs.h264.encode.CQPRateControl;
+import li.cil.oc2.jcodec.common.model.ColorSpace;
+import li.cil.oc2.jcodec.common.model.Picture;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding projector sized frames, configured the same way projectors configure their
+ * encoder.
+ * <p>
+ * In the {@code static} case the picture does not change between frames, in the {@code line}
+ * case one text line sized band changes, in the {@code noise} case the whole picture changes.
+ * Content is made of randomly coloured blocks rather than per-pixel noise, which is closer to
+ * what projectors actually show and keeps frames within the encoder buffer.
+ * <p>
+ * Like projectors, the encoder is told which macroblocks changed, so unchanged ones are skipped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class H264EncoderBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int LINE_HEIGHT = 16;
+    private static final int BLOCK_SIZE = 4;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Param({"static", "line", "noise"}) public String content;
+
+    private H264Encoder encoder;
+    private Picture picture;
+    private ByteBuffer buffer;
+    private final BitSet changedMacroblocks = new BitSet();
+    private final Random random = new Random(0);
+    private int line;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Setup(Level.Trial)
+    public void setup() {
+        encoder = new H264Encoder(new CQPRateControl(12));
+        encoder.setKeyInterval(100);
+        picture = Picture.create(WIDTH, HEIGHT, ColorSpace.YUV420J);
+        buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        fillBlocks(0, HEIGHT);
+    }
+
+    @Setup(Level.Invocation)
+    public void updatePicture() {
+        changedMacroblocks.clear();
+        switch (content) {
+            case "line" -> {
+                fillBlocks(line * LINE_HEIGHT, LINE_HEIGHT);
+                line = (line + 1) % (HEIGHT / LINE_HEIGHT);
+            }
+            case "noise" -> fillBlocks(0, HEIGHT);
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFrame() {
+        buffer.clear();
+        return encoder.encodeFrame(picture, buffer, changedMacroblocks).data();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private void fillBlocks(final int top, final int height) {
+        final int macroblockColumns = WIDTH / 16;
+        changedMacroblocks.set((top / 16) * macroblockColumns, ((top + height + 15) / 16) * macroblockColumns);
+
+        final byte[] luma = picture.getPlaneData(0);
+        for (int y = top; y < top + height; y += BLOCK_SIZE) {
+            for (int x = 0; x < WIDTH; x += BLOCK_SIZE) {
+                final byte value = (byte) random.nextInt();
+                for (int row = y; row < y + BLOCK_SIZE; row++) {
+                    final int offset = row * WIDTH + x;
+                    for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+                        luma[i] = value;
+                    }
+                }
+            }
+        }
+    }
+}
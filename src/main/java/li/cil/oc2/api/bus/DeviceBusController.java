@@ -59,6 +59,18 @@ public interface DeviceBusController {
         scheduleBusScan(ScanReason.BUS_CHANGE);
     }
 
+    /**
+     * Schedules a scan due to a change of the neighbors of the specified bus element.
+     * <p>
+     * Controllers may use this to only visit the changed part of the bus again, instead of the whole
+     * bus. By default, this schedules a scan of the whole bus.
+     *
+     * @param element the bus element whose neighbors changed.
+     */
+    default void scheduleBusScan(final DeviceBusElement element) {
+        scheduleBusScan(ScanReason.BUS_CHANGE);
+    }
+
     /**
      * Forces a device map rebuild.
      * <p>
@@ -37,7 +37,8 @@ public interface DeviceBusElement extends DeviceBus {
      * by controllers to detect each other on the bus.
      * <p>
      * When {@link #scheduleScan()} is called, {@link DeviceBusController#scheduleBusScan()}
-     * <em>must</em> be called for each registered controller.
+     * or {@link DeviceBusController#scheduleBusScan(DeviceBusElement)} <em>must</em> be
+     * called for each registered controller.
      *
      * @param controller the controller to add.
      */
@@ -0,0 +1,180 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.api.bus.device.object;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Creates invokers for {@link Callback} methods bound to their target object.
+ * <p>
+ * For methods with few parameters we generate a class calling the method directly, using the
+ * {@link LambdaMetafactory}. This avoids reflection and argument list adaption on each call. For
+ * all other methods, or if generating the class fails, we fall back to a spreading method handle
+ * of the exact required type.
+ * <p>
+ * Generated classes are never unloaded, so they are generated once per method and take the target
+ * as a captured argument. Creating an invoker for a target only instantiates the generated class.
+ */
+final class CallbackInvokers {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final Class<?>[] FUNCTION_TYPES = {Function0.class, Function1.class, Function2.class, Function3.class, Function4.class};
+    private static final Class<?>[] ACTION_TYPES = {Action0.class, Action1.class, Action2.class, Action3.class, Action4.class};
+
+    // Factories taking the target and returning the generated function. Empty if generation failed.
+    private static final Map<Method, Optional<MethodHandle>> FACTORY_BY_METHOD = Collections.synchronizedMap(new HashMap<>());
+
+    ///////////////////////////////////////////////////////////////////
+
+    @FunctionalInterface
+    interface Invoker {
+        @Nullable
+        Object invoke(Object[] parameters) throws Throwable;
+    }
+
+    public static Invoker create(final Object target, final Method method, final MethodHandle handle) {
+        final int arity = method.getParameterCount();
+        final Optional<MethodHandle> factory = FACTORY_BY_METHOD.computeIfAbsent(method, m -> createFactory(m, handle));
+        if (factory.isPresent()) {
+            try {
+                return createGenerated(target, method, factory.get());
+            } catch (final Throwable e) {
+                LOGGER.debug("Failed generating invoker for method [{}], falling back to method handle.", method, e);
+            }
+        }
+
+        final MethodHandle spreader = handle.bindTo(target)
+            .asSpreader(Object[].class, arity)
+            .asType(MethodType.methodType(Object.class, Object[].class));
+        return parameters -> (Object) spreader.invokeExact(parameters);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static Optional<MethodHandle> createFactory(final Method method, final MethodHandle handle) {
+        final int arity = method.getParameterCount();
+        if (arity >= FUNCTION_TYPES.length || Modifier.isStatic(method.getModifiers())) {
+            return Optional.empty();
+        }
+
+        final boolean isVoid = method.getReturnType() == void.class;
+        final Class<?> functionType = isVoid ? ACTION_TYPES[arity] : FUNCTION_TYPES[arity];
+
+        // The generated class casts and unboxes parameters, and boxes the return value.
+        final Class<?>[] erasedParameterTypes = new Class<?>[arity];
+        Arrays.fill(erasedParameterTypes, Object.class);
+        final Class<?>[] parameterTypes = Arrays.stream(method.getParameterTypes())
+            .map(CallbackInvokers::wrap)
+            .toArray(Class<?>[]::new);
+        final Class<?> returnType = isVoid ? void.class : wrap(method.getReturnType());
+
+        try {
+            final CallSite callSite = LambdaMetafactory.metafactory(
+                MethodHandles.lookup(),
+                "apply",
+                MethodType.methodType(functionType, method.getDeclaringClass()),
+                MethodType.methodType(isVoid ? void.class : Object.class, erasedParameterTypes),
+                handle,
+                MethodType.methodType(returnType, parameterTypes));
+            return Optional.of(callSite.getTarget());
+        } catch (final Throwable e) {
+            LOGGER.debug("Failed generating invoker for method [{}], falling back to method handle.", method, e);
+            return Optional.empty();
+        }
+    }
+
+    private static Invoker createGenerated(final Object target, final Method method, final MethodHandle factory) throws Throwable {
+        final int arity = method.getParameterCount();
+        final boolean isVoid = method.getReturnType() == void.class;
+        final Object function = factory.invoke(target);
+
+        return switch (arity) {
+            case 0 -> isVoid
+                ? parameters -> { ((Action0) function).apply(); return null; }
+                : parameters -> ((Function0) function).apply();
+            case 1 -> isVoid
+                ? parameters -> { ((Action1) function).apply(parameters[0]); return null; }
+                : parameters -> ((Function1) function).apply(parameters[0]);
+            case 2 -> isVoid
+                ? parameters -> { ((Action2) function).apply(parameters[0], parameters[1]); return null; }
+                : parameters -> ((Function2) function).apply(parameters[0], parameters[1]);
+            case 3 -> isVoid
+                ? parameters -> { ((Action3) function).apply(parameters[0], parameters[1], parameters[2]); return null; }
+                : parameters -> ((Function3) function).apply(parameters[0], parameters[1], parameters[2]);
+            case 4 -> isVoid
+                ? parameters -> { ((Action4) function).apply(parameters[0], parameters[1], parameters[2], parameters[3]); return null; }
+                : parameters -> ((Function4) function).apply(parameters[0], parameters[1], parameters[2], parameters[3]);
+            default -> throw new IllegalArgumentException();
+        };
+    }
+
+    private static Class<?> wrap(final Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @FunctionalInterface
+    interface Function0 {
+        @Nullable
+        Object apply() throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Function1 {
+        @Nullable
+        Object apply(Object a0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Function2 {
+        @Nullable
+        Object apply(Object a0, Object a1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Function3 {
+        @Nullable
+        Object apply(Object a0, Object a1, Object a2) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Function4 {
+        @Nullable
+        Object apply(Object a0, Object a1, Object a2, Object a3) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Action0 {
+        void apply() throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Action1 {
+        void apply(Object a0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Action2 {
+        void apply(Object a0, Object a1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Action3 {
+        void apply(Object a0, Object a1, Object a2) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Action4 {
+        void apply(Object a0, Object a1, Object a2, Object a3) throws Throwable;
+    }
+}
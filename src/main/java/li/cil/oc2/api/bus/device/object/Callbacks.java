@@ -101,6 +101,7 @@ public final class Callbacks {
 
     private static final class ObjectRPCMethod extends AbstractRPCMethod {
         private final MethodHandle handle;
+        private final CallbackInvokers.Invoker invoker;
         private final String description;
         private final String returnValueDescription;
 
@@ -111,7 +112,9 @@ public final class Callbacks {
         private ObjectRPCMethod(final ConstructorData data) throws IllegalAccessException {
             super(data.methodName, data.annotation.synchronize(), data.method.getReturnType(), data.parameters);
 
-            this.handle = MethodHandles.lookup().unreflect(data.method).bindTo(data.target);
+            final MethodHandle handle = MethodHandles.lookup().unreflect(data.method);
+            this.handle = handle.bindTo(data.target);
+            this.invoker = CallbackInvokers.create(data.target, data.method, handle);
             this.description = data.description;
             this.returnValueDescription = data.returnValueDescription;
         }
@@ -119,7 +122,7 @@ public final class Callbacks {
         @Nullable
         @Override
         protected Object invoke(final Object... parameters) throws Throwable {
-            return handle.invokeWithArguments(parameters);
+            return invoker.invoke(parameters);
         }
 
         @Override
@@ -13,6 +13,12 @@ import javax.annotation.Nullable;
  * If found, they will actively poll frames via {@link #readEthernetFrame()} and push
  * forwarded frames via {@link #writeEthernetFrame(NetworkInterface, byte[], int)}.
  * <p>
+ * Frames are passed through the network by reference, without being copied. The same frame
+ * may be delivered to many network interfaces, and may still be queued for delivery after
+ * the call that sent it has returned. Frames must therefore not be modified once they have
+ * been returned from {@link #readEthernetFrame()} or passed to {@code writeEthernetFrame}.
+ * Implementations that need to modify a frame must copy it first.
+ * <p>
  * As with all capabilities, this capability can be provided by {@link ItemDevice}s.
  */
 public interface NetworkInterface {
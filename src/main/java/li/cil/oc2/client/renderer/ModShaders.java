@@ -22,6 +22,7 @@ public final class ModShaders {
     public static final int MAX_PROJECTORS = 3;
 
     private static final ResourceLocation PROJECTORS_SHADER_LOCATION = new ResourceLocation(API.MOD_ID, "projectors");
+    private static final ResourceLocation TERMINAL_SHADER_LOCATION = new ResourceLocation(API.MOD_ID, "terminal");
     private static final String[] PROJECTOR_COLOR_NAMES = {"ProjectorColor0", "ProjectorColor1", "ProjectorColor2"};
     private static final String[] PROJECTOR_DEPTH_NAMES = {"ProjectorDepth0", "ProjectorDepth1", "ProjectorDepth2"};
     private static final String[] PROJECTOR_CAMERA_NAMES = {"ProjectorCamera0", "ProjectorCamera1", "ProjectorCamera2"};
@@ -29,6 +30,7 @@ public final class ModShaders {
     ///////////////////////////////////////////////////////////////////
 
     private static ShaderInstance projectorsShader;
+    private static ShaderInstance terminalShader;
 
     ///////////////////////////////////////////////////////////////////
 
@@ -37,6 +39,11 @@ public final class ModShaders {
         return projectorsShader;
     }
 
+    @Nullable
+    public static ShaderInstance getTerminalShader() {
+        return terminalShader;
+    }
+
     @SuppressWarnings("ConstantConditions") // Setting samples to null to clear them is fine.
     public static void configureProjectorsShader(
         final RenderTarget target,
@@ -64,6 +71,11 @@ public final class ModShaders {
         }
     }
 
+    public static void configureTerminalShader(final DynamicTexture cells, final int cursorColumn, final int cursorRow) {
+        terminalShader.setSampler("Cells", cells.getId());
+        terminalShader.safeGetUniform("CursorPosition").set(cursorColumn, cursorRow);
+    }
+
     @SubscribeEvent
     public static void handleRegisterShaders(final RegisterShadersEvent event) throws IOException {
         event.registerShader(new ShaderInstance(
@@ -71,5 +83,10 @@ public final class ModShaders {
             PROJECTORS_SHADER_LOCATION,
             DefaultVertexFormat.POSITION_TEX
         ), instance -> projectorsShader = instance);
+        event.registerShader(new ShaderInstance(
+            event.getResourceManager(),
+            TERMINAL_SHADER_LOCATION,
+            DefaultVertexFormat.POSITION_TEX
+        ), instance -> terminalShader = instance);
     }
 }
@@ -11,6 +11,9 @@ import java.util.UUID;
 
 public final class Config {
     @Path("vm") public static long maxAllocatedMemory = 512 * Constants.MEGABYTE;
+    @Path("vm") public static long maxAllocatedMemoryPerDimension = 0;
+    @Path("vm") public static long maxAllocatedMemoryPerOwner = 0;
+    @Path("vm") public static int vmSchedulerThreadCount = 0;
 
     @Path("energy.blocks") public static double busCableEnergyPerTick = 0.1;
     @Path("energy.blocks") public static double busInterfaceEnergyPerTick = 0.5;
@@ -38,9 +41,19 @@ public final class Config {
     @Path("gameplay") public static long soundCardCoolDownSeconds = 2;
 
     @Path("admin") public static UUID fakePlayerUUID = UUID.fromString("e39dd9a7-514f-4a2d-aa5e-b6030621416d");
+    @Path("admin.debug") public static boolean trackMemoryAllocationStackTraces = false;
+    @Path("admin.bus") public static int maxBusElementCount = 128;
+    @Path("admin.bus") public static int busScanElementsPerTick = 512;
     @Path("admin.network") public static int projectorAverageMaxBytesPerSecond = 160 * 1024;
+    @Path("admin.network") public static int projectorEncoderThreadCount = 0;
+    @Path("admin.network") public static int projectorCompressionLevel = 1;
     @Path("admin.virtual_network") public static int ethernetFrameTimeToLive = 12;
     @Path("admin.virtual_network") public static int hubEthernetFramesPerTick = 32;
+    @Path("admin.virtual_network") public static int ethernetPortQueueCapacity = 64;
+    @Path("admin.virtual_network") public static int connectorBytesPerSecond = 64 * 1024;
+    @Path("admin.virtual_network") public static int connectorBurstBytes = 64 * 1024;
+    @Path("admin.virtual_network") public static int tunnelBytesPerSecond = 32 * 1024;
+    @Path("admin.virtual_network") public static int tunnelBurstBytes = 32 * 1024;
 
     public static boolean computersUseEnergy() {
         return computerEnergyPerTick > 0 && computerEnergyStorage > 0;
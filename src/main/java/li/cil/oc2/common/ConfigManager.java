@@ -64,6 +64,7 @@ public final class ConfigManager {
     private static final Map<IConfigSpec<ForgeConfigSpec>, ConfigDefinition> CONFIGS = new HashMap<>();
 
     static {
+        PARSERS.put(boolean.class, ConfigManager::parseBooleanField);
         PARSERS.put(int.class, ConfigManager::parseIntField);
         PARSERS.put(long.class, ConfigManager::parseLongField);
         PARSERS.put(double.class, ConfigManager::parseDoubleField);
@@ -124,6 +125,14 @@ public final class ConfigManager {
         }
     }
 
+    private static ConfigFieldPair<?> parseBooleanField(final Object instance, final Field field, final String path, final ForgeConfigSpec.Builder builder) throws IllegalAccessException {
+        final boolean defaultValue = field.getBoolean(instance);
+
+        final ForgeConfigSpec.BooleanValue configValue = builder.define(path, defaultValue);
+
+        return new ConfigFieldPair<>(field, configValue);
+    }
+
     private static ConfigFieldPair<?> parseIntField(final Object instance, final Field field, final String path, final ForgeConfigSpec.Builder builder) throws IllegalAccessException {
         final int defaultValue = field.getInt(instance);
         final int minValue = (int) Math.max(getMin(field), Integer.MIN_VALUE);
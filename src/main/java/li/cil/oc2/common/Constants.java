@@ -59,4 +59,23 @@ public final class Constants {
     public static final String CONNECTOR_ERROR_FULL = key("message.{mod}.connector.error.full");
     public static final String CONNECTOR_ERROR_TOO_FAR = key("message.{mod}.connector.error.too_far");
     public static final String CONNECTOR_ERROR_OBSTRUCTED = key("message.{mod}.connector.error.obstructed");
+
+    ///////////////////////////////////////////////////////////////////
+
+    public static final String COMMAND_VM_DESCRIPTION = key("commands.{mod}.vm.description");
+    public static final String COMMAND_VM_TOP_EMPTY = key("commands.{mod}.vm.top.empty");
+    public static final String COMMAND_VM_TOP_HEADER = key("commands.{mod}.vm.top.header");
+    public static final String COMMAND_VM_TOP_ENTRY = key("commands.{mod}.vm.top.entry");
+    public static final String COMMAND_NETWORK_BRIDGE_DESCRIPTION = key("commands.{mod}.network.bridge.description");
+    public static final String COMMAND_NETWORK_TUNNEL_DESCRIPTION = key("commands.{mod}.network.tunnel.description");
+    public static final String COMMAND_NETWORK_TOP_EMPTY = key("commands.{mod}.network.top.empty");
+    public static final String COMMAND_NETWORK_TOP_HEADER = key("commands.{mod}.network.top.header");
+    public static final String COMMAND_NETWORK_TOP_ENTRY = key("commands.{mod}.network.top.entry");
+    public static final String COMMAND_NETWORK_LINKS_EMPTY = key("commands.{mod}.network.links.empty");
+    public static final String COMMAND_NETWORK_LINKS_HEADER = key("commands.{mod}.network.links.header");
+    public static final String COMMAND_NETWORK_LINKS_ENTRY = key("commands.{mod}.network.links.entry");
+    public static final String COMMAND_MEMORY_TOTAL = key("commands.{mod}.memory.total");
+    public static final String COMMAND_MEMORY_DIMENSIONS_HEADER = key("commands.{mod}.memory.dimensions.header");
+    public static final String COMMAND_MEMORY_OWNERS_HEADER = key("commands.{mod}.memory.owners.header");
+    public static final String COMMAND_MEMORY_ENTRY = key("commands.{mod}.memory.entry");
 }
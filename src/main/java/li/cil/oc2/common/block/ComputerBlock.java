@@ -22,6 +22,7 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.InteractionHand;
 import net.minecraft.world.InteractionResult;
+import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.ItemStack;
@@ -196,6 +197,16 @@ public final class ComputerBlock extends HorizontalDirectionalBlock implements E
         super.playerWillDestroy(level, pos, state, player);
     }
 
+    @Override
+    public void setPlacedBy(final Level level, final BlockPos pos, final BlockState state, @Nullable final LivingEntity placer, final ItemStack stack) {
+        super.setPlacedBy(level, pos, state, placer, stack);
+
+        final BlockEntity blockEntity = level.getBlockEntity(pos);
+        if (!level.isClientSide() && placer instanceof Player && blockEntity instanceof final ComputerBlockEntity computer) {
+            computer.setOwner(placer.getUUID());
+        }
+    }
+
     @Override
     public BlockState getStateForPlacement(final BlockPlaceContext context) {
         return super.defaultBlockState().setValue(FACING, context.getHorizontalDirection().getOpposite());
@@ -9,6 +9,7 @@ import li.cil.oc2.api.bus.device.provider.ItemDeviceQuery;
 import li.cil.oc2.api.capabilities.TerminalUserProvider;
 import li.cil.oc2.client.audio.LoopingSoundManager;
 import li.cil.oc2.common.Config;
+import li.cil.oc2.common.Constants;
 import li.cil.oc2.common.block.ComputerBlock;
 import li.cil.oc2.common.bus.AbstractBlockDeviceBusElement;
 import li.cil.oc2.common.bus.BlockDeviceBusController;
@@ -22,7 +23,9 @@ import li.cil.oc2.common.network.Network;
 import li.cil.oc2.common.network.message.ComputerBootErrorMessage;
 import li.cil.oc2.common.network.message.ComputerBusStateMessage;
 import li.cil.oc2.common.network.message.ComputerRunStateMessage;
+import li.cil.oc2.common.network.message.ComputerTerminalLinesMessage;
 import li.cil.oc2.common.network.message.ComputerTerminalOutputMessage;
+import li.cil.oc2.common.network.message.ComputerTerminalStateMessage;
 import li.cil.oc2.common.serialization.NBTSerialization;
 import li.cil.oc2.common.util.*;
 import li.cil.oc2.common.vm.*;
@@ -30,6 +33,7 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.ItemStack;
@@ -55,6 +59,7 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
     private static final String TERMINAL_TAG_NAME = "terminal";
     private static final String STATE_TAG_NAME = "state";
     private static final String ENERGY_TAG_NAME = "energy";
+    private static final String OWNER_TAG_NAME = "owner";
 
     private static final int MEMORY_SLOTS = 4;
     private static final int HARD_DRIVE_SLOTS = 4;
@@ -68,10 +73,12 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
     private boolean hasAddedOwnDevices;
     private boolean isNeighborUpdateScheduled;
     private LevelChunk chunk;
+    @Nullable private UUID owner;
 
     ///////////////////////////////////////////////////////////////////
 
     private final Terminal terminal = new Terminal();
+    private final ComputerTerminalSynchronizer terminalSynchronizer = new ComputerTerminalSynchronizer(terminal);
     private final ComputerBusElement busElement = new ComputerBusElement();
     private final ComputerItemStackHandlers deviceItems = new ComputerItemStackHandlers();
     private final FixedEnergyStorage energy = new FixedEnergyStorage(Config.computerEnergyStorage);
@@ -111,6 +118,11 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
         }
     }
 
+    public void setOwner(@Nullable final UUID value) {
+        owner = value;
+        setChanged();
+    }
+
     public void openTerminalScreen(final ServerPlayer player) {
         ComputerTerminalContainer.createServer(this, energy, virtualMachine.busController, player);
     }
@@ -191,6 +203,8 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
         chunk = level.getChunkAt(getBlockPos());
 
         virtualMachine.tick();
+
+        terminalSynchronizer.tick(terminalUsers);
     }
 
     @Override
@@ -228,6 +242,9 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
         tag.put(BUS_ELEMENT_TAG_NAME, busElement.save());
         tag.put(ITEMS_TAG_NAME, deviceItems.saveItems());
         tag.put(DEVICES_TAG_NAME, deviceItems.saveDevices());
+        if (owner != null) {
+            tag.putUUID(OWNER_TAG_NAME, owner);
+        }
     }
 
     @Override
@@ -241,6 +258,7 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
 
         deviceItems.loadItems(tag.getCompound(ITEMS_TAG_NAME));
         deviceItems.loadDevices(tag.getCompound(DEVICES_TAG_NAME));
+        owner = tag.hasUUID(OWNER_TAG_NAME) ? tag.getUUID(OWNER_TAG_NAME) : null;
     }
 
     public void exportToItemStack(final ItemStack stack) {
@@ -405,8 +423,29 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
         }
 
         @Override
-        protected void sendTerminalUpdateToClient(final ByteBuffer output) {
-            sendToClientsTrackingComputer(new ComputerTerminalOutputMessage(ComputerBlockEntity.this, output));
+        protected void putTerminalOutput(final ByteBuffer output) {
+            terminalSynchronizer.putOutput(output);
+        }
+    }
+
+    private final class ComputerTerminalSynchronizer extends TerminalSynchronizer {
+        public ComputerTerminalSynchronizer(final Terminal terminal) {
+            super(terminal);
+        }
+
+        @Override
+        protected void sendOutput(final ByteBuffer output, final Collection<ServerPlayer> players) {
+            Network.sendToClients(new ComputerTerminalOutputMessage(ComputerBlockEntity.this, output), players);
+        }
+
+        @Override
+        protected void sendState(final CompoundTag state, final Collection<ServerPlayer> players) {
+            Network.sendToClients(new ComputerTerminalStateMessage(ComputerBlockEntity.this, state), players);
+        }
+
+        @Override
+        protected void sendLines(final ByteBuffer lines) {
+            sendToClientsTrackingComputer(new ComputerTerminalLinesMessage(ComputerBlockEntity.this, lines));
         }
     }
 
@@ -441,6 +480,17 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
             super.tick();
         }
 
+        @Override
+        public Component getDescription() {
+            final String dimension = level != null ? level.dimension().location().toString() : "?";
+            return new TranslatableComponent(Constants.COMMAND_VM_DESCRIPTION, getBlockState().getBlock().getName(), getBlockPos().toShortString(), dimension);
+        }
+
+        @Override
+        protected Allocator.Account getMemoryAccount() {
+            return new Allocator.Account(level != null ? level.dimension() : null, owner);
+        }
+
         @Override
         protected boolean consumeEnergy(final int amount, final boolean simulate) {
             if (!Config.computersUseEnergy()) {
@@ -459,7 +509,7 @@ public final class ComputerBlockEntity extends ModBlockEntity implements Termina
         protected void stopRunnerAndReset() {
             super.stopRunnerAndReset();
 
-            TerminalUtils.resetTerminal(terminal, output -> sendToClientsTrackingComputer(new ComputerTerminalOutputMessage(ComputerBlockEntity.this, output)));
+            TerminalUtils.resetTerminal(terminalSynchronizer);
         }
 
         @Override
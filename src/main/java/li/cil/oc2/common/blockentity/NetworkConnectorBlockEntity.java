@@ -5,8 +5,13 @@ package li.cil.oc2.common.blockentity;
 import li.cil.oc2.api.capabilities.NetworkInterface;
 import li.cil.oc2.client.renderer.NetworkCableRenderer;
 import li.cil.oc2.common.Config;
+import li.cil.oc2.common.Constants;
 import li.cil.oc2.common.block.NetworkConnectorBlock;
 import li.cil.oc2.common.capabilities.Capabilities;
+import li.cil.oc2.common.ethernet.EthernetBridge;
+import li.cil.oc2.common.ethernet.EthernetFabric;
+import li.cil.oc2.common.ethernet.EthernetLink;
+import li.cil.oc2.common.ethernet.NetworkSegment;
 import li.cil.oc2.common.item.Items;
 import li.cil.oc2.common.network.Network;
 import li.cil.oc2.common.network.message.NetworkConnectorConnectionsMessage;
@@ -17,6 +22,8 @@ import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtUtils;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.ClipContext;
@@ -37,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.function.Consumer;
 
 public final class NetworkConnectorBlockEntity extends ModBlockEntity implements TickableBlockEntity {
     public enum ConnectionResult {
@@ -54,13 +62,12 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
     private static final int RETRY_UNLOADED_CHUNK_INTERVAL = TickUtils.toTicks(Duration.ofSeconds(5));
     private static final int MAX_CONNECTION_COUNT = 2;
     private static final int MAX_CONNECTION_DISTANCE = 16;
-    private static final int BYTES_PER_TICK = 64 * 1024 / TickUtils.toTicks(Duration.ofSeconds(1)); // bytes / sec -> bytes / tick
-    private static final int MIN_ETHERNET_FRAME_SIZE = 42;
-    private static final int TTL_COST = 1;
 
     ///////////////////////////////////////////////////////////////////
 
     private final NetworkConnectorNetworkInterface networkInterface = new NetworkConnectorNetworkInterface();
+    private final EthernetLink link = EthernetFabric.createLink(
+        () -> Config.connectorBytesPerSecond, () -> Config.connectorBurstBytes, networkInterface::getDescription);
 
     private LazyOptional<NetworkInterface> adjacentInterface = LazyOptional.empty();
     private boolean isAdjacentInterfaceDirty = true;
@@ -135,7 +142,9 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
 
     public void disconnectFrom(final BlockPos pos) {
         dirtyConnectors.remove(pos);
-        connectors.remove(pos);
+        if (connectors.remove(pos) != null) {
+            networkInterface.invalidateSegment();
+        }
 
         if (ownedCables.remove(pos)) {
             if (level != null) {
@@ -193,11 +202,10 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
 
         final NetworkInterface source = adjacentInterface.orElse(NullNetworkInterface.INSTANCE);
 
-        int byteBudget = BYTES_PER_TICK;
+        link.tick();
         byte[] frame;
-        while ((frame = source.readEthernetFrame()) != null && byteBudget > 0) {
-            byteBudget -= Math.max(frame.length, MIN_ETHERNET_FRAME_SIZE); // Avoid bogus packets messing with us.
-            networkInterface.writeEthernetFrame(source, frame, Config.ethernetFrameTimeToLive);
+        while (link.canSend() && (frame = source.readEthernetFrame()) != null) {
+            link.record(frame, networkInterface.send(source, frame, Config.ethernetFrameTimeToLive));
         }
     }
 
@@ -291,6 +299,8 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
     protected void unloadServer(final boolean isRemove) {
         super.unloadServer(isRemove);
 
+        networkInterface.invalidateSegment();
+
         if (isRemove) {
             // When we're being removed we want to break the actual link to any connected
             // connectors. This will also cause cables to be dropped.
@@ -305,7 +315,9 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
             // from connected connectors; we don't want to actually break the link.
             final BlockPos pos = getBlockPos();
             for (final NetworkConnectorBlockEntity connector : connectors.values()) {
-                connector.connectors.remove(pos);
+                if (connector.connectors.remove(pos) != null) {
+                    connector.networkInterface.invalidateSegment();
+                }
                 if (connector.connectorPositions.contains(pos)) {
                     connector.dirtyConnectors.add(pos);
                 }
@@ -319,6 +331,7 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
         assert level != null;
 
         adjacentInterface = LazyOptional.empty();
+        networkInterface.invalidateSegment();
 
         if (!isValid()) {
             return;
@@ -344,7 +357,9 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
     }
 
     private void resolveConnectedInterface(final BlockPos connectedPosition) {
-        connectors.remove(connectedPosition);
+        if (connectors.remove(connectedPosition) != null) {
+            networkInterface.invalidateSegment();
+        }
 
         if (!isValid()) {
             return;
@@ -379,6 +394,7 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
         }
 
         connectors.put(connectedPosition, networkConnector);
+        networkInterface.invalidateSegment();
     }
 
     private static boolean isObstructed(final Level level, final BlockPos a, final BlockPos b) {
@@ -430,7 +446,9 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
         }
     }
 
-    private final class NetworkConnectorNetworkInterface implements NetworkInterface {
+    private final class NetworkConnectorNetworkInterface implements EthernetBridge {
+        @Nullable private NetworkSegment segment;
+
         @Override
         public byte[] readEthernetFrame() {
             return null;
@@ -438,23 +456,38 @@ public final class NetworkConnectorBlockEntity extends ModBlockEntity implements
 
         @Override
         public void writeEthernetFrame(final NetworkInterface source, final byte[] frame, final int timeToLive) {
-            if (timeToLive <= 0) {
-                return;
-            }
-
-            adjacentInterface.ifPresent(dst -> {
-                if (dst == source) {
-                    return;
-                }
-                dst.writeEthernetFrame(this, frame, timeToLive - TTL_COST);
-            });
+            send(source, frame, timeToLive);
+        }
 
-            for (final NetworkConnectorBlockEntity dst : connectors.values()) {
-                if (!dst.isValid() || dst.networkInterface == source) {
-                    continue;
+        @Override
+        public void collectConnectedInterfaces(final Consumer<NetworkInterface> consumer) {
+            adjacentInterface.ifPresent(consumer::accept);
+            for (final NetworkConnectorBlockEntity connector : connectors.values()) {
+                if (connector.isValid()) {
+                    consumer.accept(connector.networkInterface);
                 }
-                dst.networkInterface.writeEthernetFrame(this, frame, timeToLive - TTL_COST);
             }
         }
+
+        @Override
+        public Component getDescription() {
+            final String dimension = level != null ? level.dimension().location().toString() : "?";
+            return new TranslatableComponent(Constants.COMMAND_NETWORK_BRIDGE_DESCRIPTION, getBlockState().getBlock().getName(), getBlockPos().toShortString(), dimension);
+        }
+
+        @Nullable
+        @Override
+        public NetworkSegment getSegment() {
+            return segment;
+        }
+
+        @Override
+        public void setSegment(final NetworkSegment segment) {
+            this.segment = segment;
+        }
+
+        public boolean send(final NetworkInterface source, final byte[] frame, final int timeToLive) {
+            return level != null && NetworkSegment.get(this).send(this, source, frame, timeToLive, level.getGameTime());
+        }
     }
 }
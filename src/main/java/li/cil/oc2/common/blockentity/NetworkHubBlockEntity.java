@@ -6,22 +6,22 @@ import li.cil.oc2.api.capabilities.NetworkInterface;
 import li.cil.oc2.common.Config;
 import li.cil.oc2.common.Constants;
 import li.cil.oc2.common.capabilities.Capabilities;
+import li.cil.oc2.common.ethernet.EthernetBridge;
+import li.cil.oc2.common.ethernet.NetworkSegment;
 import li.cil.oc2.common.util.LazyOptionalUtils;
 import li.cil.oc2.common.util.LevelUtils;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraftforge.common.util.LazyOptional;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
-import java.util.Objects;
-import java.util.stream.Stream;
-
-public final class NetworkHubBlockEntity extends ModBlockEntity implements NetworkInterface {
-    private static final int TTL_COST = 1;
+import java.util.function.Consumer;
 
+public final class NetworkHubBlockEntity extends ModBlockEntity implements EthernetBridge {
     private int frameCount;
     private long lastGameTime;
 
@@ -29,6 +29,7 @@ public final class NetworkHubBlockEntity extends ModBlockEntity implements Netwo
 
     private final NetworkInterface[] adjacentBlockInterfaces = new NetworkInterface[Constants.BLOCK_FACE_COUNT];
     private boolean haveAdjacentBlocksChanged = true;
+    @Nullable private NetworkSegment segment;
 
     ///////////////////////////////////////////////////////////////////
 
@@ -40,6 +41,7 @@ public final class NetworkHubBlockEntity extends ModBlockEntity implements Netwo
 
     public void handleNeighborChanged() {
         haveAdjacentBlocksChanged = true;
+        invalidateSegment();
     }
 
     @Override
@@ -66,11 +68,34 @@ public final class NetworkHubBlockEntity extends ModBlockEntity implements Netwo
             frameCount++;
         }
 
-        getAdjacentInterfaces().forEach(adjacentInterface -> {
-            if (adjacentInterface != source) {
-                adjacentInterface.writeEthernetFrame(this, frame, timeToLive - TTL_COST);
+        NetworkSegment.get(this).send(this, source, frame, timeToLive, gameTime);
+    }
+
+    @Override
+    public void collectConnectedInterfaces(final Consumer<NetworkInterface> consumer) {
+        validateAdjacentBlocks();
+        for (final NetworkInterface adjacentInterface : adjacentBlockInterfaces) {
+            if (adjacentInterface != null) {
+                consumer.accept(adjacentInterface);
             }
-        });
+        }
+    }
+
+    @Override
+    public Component getDescription() {
+        final String dimension = level != null ? level.dimension().location().toString() : "?";
+        return new TranslatableComponent(Constants.COMMAND_NETWORK_BRIDGE_DESCRIPTION, getBlockState().getBlock().getName(), getBlockPos().toShortString(), dimension);
+    }
+
+    @Nullable
+    @Override
+    public NetworkSegment getSegment() {
+        return segment;
+    }
+
+    @Override
+    public void setSegment(final NetworkSegment segment) {
+        this.segment = segment;
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -80,13 +105,15 @@ public final class NetworkHubBlockEntity extends ModBlockEntity implements Netwo
         collector.offer(Capabilities.networkInterface(), this);
     }
 
-    ///////////////////////////////////////////////////////////////////
+    @Override
+    protected void unloadServer(final boolean isRemove) {
+        super.unloadServer(isRemove);
 
-    private Stream<NetworkInterface> getAdjacentInterfaces() {
-        validateAdjacentBlocks();
-        return Arrays.stream(adjacentBlockInterfaces).filter(Objects::nonNull);
+        invalidateSegment();
     }
 
+    ///////////////////////////////////////////////////////////////////
+
     private void validateAdjacentBlocks() {
         if (!isValid() || !haveAdjacentBlocksChanged) {
             return;
@@ -8,12 +8,15 @@ import li.cil.oc2.common.bus.device.vm.block.ProjectorDevice;
 import li.cil.oc2.common.capabilities.Capabilities;
 import li.cil.oc2.common.energy.FixedEnergyStorage;
 import li.cil.oc2.common.network.Network;
+import li.cil.oc2.common.network.ProjectorFrameCompressor;
+import li.cil.oc2.common.network.ProjectorFrameDecompressor;
 import li.cil.oc2.common.network.ProjectorLoadBalancer;
 import li.cil.oc2.common.network.message.ProjectorRequestFramebufferMessage;
 import li.cil.oc2.common.network.message.ProjectorStateMessage;
 import li.cil.oc2.jcodec.codecs.h264.H264Decoder;
 import li.cil.oc2.jcodec.codecs.h264.H264Encoder;
-import li.cil.oc2.jcodec.codecs.h264.encode.CQPRateControl;
+import li.cil.oc2.jcodec.codecs.h264.encode.AdaptiveRateControl;
+import li.cil.oc2.jcodec.common.VideoEncoder;
 import li.cil.oc2.jcodec.common.model.ColorSpace;
 import li.cil.oc2.jcodec.common.model.Picture;
 import net.minecraft.core.BlockPos;
@@ -28,13 +31,11 @@ import javax.annotation.Nullable;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 
 public final class ProjectorBlockEntity extends ModBlockEntity implements TickableBlockEntity {
     @FunctionalInterface
@@ -53,6 +54,10 @@ public final class ProjectorBlockEntity extends ModBlockEntity implements Tickab
     private static final String IS_PROJECTING_TAG_NAME = "projecting";
     private static final String HAS_ENERGY_TAG_NAME = "has_energy";
 
+    // Range of quantization parameters, i.e. quality, used when adapting to the available bandwidth.
+    private static final int MIN_QP = 12;
+    private static final int MAX_QP = 36;
+
     private static final ExecutorService DECODER_WORKERS = Executors.newCachedThreadPool(r -> {
         final Thread thread = new Thread(r);
         thread.setDaemon(true);
@@ -68,12 +73,15 @@ public final class ProjectorBlockEntity extends ModBlockEntity implements Tickab
     private final Picture picture = Picture.create(ProjectorDevice.WIDTH, ProjectorDevice.HEIGHT, ColorSpace.YUV420J);
 
     // Video encoding.
-    private final H264Encoder encoder = new H264Encoder(new CQPRateControl(12));
-    private final ByteBuffer encoderBuffer = ByteBuffer.allocateDirect(1024 * 1024); // Re-used decompression buffer.
+    private final AdaptiveRateControl rateControl = new AdaptiveRateControl(MIN_QP, MAX_QP);
+    private final H264Encoder encoder = new H264Encoder(rateControl);
     private boolean needsIDR; // Whether we need to send a keyframe next.
+    private final BitSet changedMacroblocks = new BitSet(); // Macroblocks changed since the last encoded frame.
+    private final ProjectorFrameCompressor compressor = new ProjectorFrameCompressor(() -> Config.projectorCompressionLevel);
 
     // Video decoding.
     private final H264Decoder decoder = new H264Decoder();
+    private final ProjectorFrameDecompressor decompressor = new ProjectorFrameDecompressor();
     @Nullable private CompletableFuture<?> runningDecode; // Current decoding operation, if any, to avoid race conditions.
     private final ByteBuffer decoderBuffer = ByteBuffer.allocateDirect(1024 * 1024); // Re-used decompression buffer.
     @Nullable private FrameConsumer frameConsumer; // Where to throw received frames.
@@ -224,26 +232,21 @@ public final class ProjectorBlockEntity extends ModBlockEntity implements Tickab
         final CompletableFuture<?> lastDecode = runningDecode;
         runningDecode = CompletableFuture.runAsync(() -> {
             try {
-                try {
-                    if (lastDecode != null) lastDecode.join();
-                } catch (final CompletionException ignored) {
-                }
-
-                final Inflater inflater = new Inflater();
-                inflater.setInput(frameData);
+                if (lastDecode != null) lastDecode.join();
+            } catch (final CompletionException ignored) {
+            }
 
-                decoderBuffer.clear();
-                inflater.inflate(decoderBuffer);
-                decoderBuffer.flip();
+            final ByteBuffer encodedFrame = decompressor.decompress(frameData, decoderBuffer);
+            if (encodedFrame == null) {
+                return;
+            }
 
-                decoder.decodeFrame(decoderBuffer, picture.getData());
+            decoder.decodeFrame(encodedFrame, picture.getData());
 
-                synchronized (picture) {
-                    if (frameConsumer != null) {
-                        frameConsumer.processFrame(picture);
-                    }
+            synchronized (picture) {
+                if (frameConsumer != null) {
+                    frameConsumer.processFrame(picture);
                 }
-            } catch (final DataFormatException ignored) {
             }
         }, DECODER_WORKERS);
     }
@@ -291,34 +294,43 @@ public final class ProjectorBlockEntity extends ModBlockEntity implements Tickab
     }
 
     @Nullable
-    private ByteBuffer encodeFrame() {
-        final boolean hasChanges = projectorDevice.applyChanges(picture);
+    private ByteBuffer encodeFrame(final ByteBuffer encoderBuffer, final ByteBuffer compressedFrameData, final int targetFrameSize) {
+        final boolean hasChanges = projectorDevice.applyChanges(picture, changedMacroblocks);
         if (!hasChanges && !needsIDR) {
             return null;
         }
 
-        encoderBuffer.clear();
+        rateControl.setTargetFrameSize(targetFrameSize);
+
         final ByteBuffer frameData;
+        final boolean isKeyFrame;
         try {
             if (needsIDR) {
                 frameData = encoder.encodeIDRFrame(picture, encoderBuffer);
+                isKeyFrame = true;
                 needsIDR = false;
             } else {
-                frameData = encoder.encodeFrame(picture, encoderBuffer).data();
+                final VideoEncoder.EncodedFrame frame = encoder.encodeFrame(picture, encoderBuffer, changedMacroblocks);
+                frameData = frame.data();
+                isKeyFrame = frame.keyFrame();
             }
         } catch (final BufferOverflowException ignored) {
+            // Keep the changed macroblocks, so they are not skipped when encoding the next frame.
             return null;
         }
 
-        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
-        deflater.setInput(frameData);
-        deflater.finish();
-        final ByteBuffer compressedFrameData = ByteBuffer.allocateDirect(1024 * 1024);
-        deflater.deflate(compressedFrameData, Deflater.FULL_FLUSH);
-        deflater.end();
-        compressedFrameData.flip();
+        changedMacroblocks.clear();
+
+        final ByteBuffer compressedFrame = compressor.compress(frameData, isKeyFrame, compressedFrameData);
+        if (compressedFrame == null) {
+            // Compression stream is broken, restart it with a keyframe.
+            needsIDR = true;
+        } else {
+            // The target frame size is what we may send, so adapt to the size after compression.
+            rateControl.setFrameSize(compressedFrame.remaining());
+        }
 
-        return compressedFrameData;
+        return compressedFrame;
     }
 
     private void updateRenderBounds() {
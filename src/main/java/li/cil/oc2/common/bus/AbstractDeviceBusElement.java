@@ -76,7 +76,7 @@ public abstract class AbstractDeviceBusElement implements DeviceBusElement {
     @Override
     public void scheduleScan() {
         for (final DeviceBusController controller : controllers) {
-            controller.scheduleBusScan();
+            controller.scheduleBusScan(this);
         }
     }
 
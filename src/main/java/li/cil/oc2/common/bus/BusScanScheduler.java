@@ -0,0 +1,55 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.bus;
+
+import li.cil.oc2.api.API;
+import li.cil.oc2.common.Config;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+/**
+ * Limits the number of bus elements visited by bus scans per tick, across all bus controllers.
+ * <p>
+ * Scanning a bus means walking all of its elements, which gets expensive for large buses, in
+ * particular when they are rescanned repeatedly, e.g. while someone is building. Controllers take
+ * the elements they visit from a budget shared by all controllers and refilled every tick. When it
+ * runs out, they continue their scan in the next tick. To guarantee progress, each controller may
+ * always visit at least one element per tick.
+ */
+@Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class BusScanScheduler {
+    // Not limited before the first tick, so scans not driven by the server tick complete immediately.
+    private static int remainingElementCount = Integer.MAX_VALUE;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @SubscribeEvent
+    public static void handleServerTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            remainingElementCount = Math.max(1, Config.busScanElementsPerTick);
+        }
+    }
+
+    @SubscribeEvent
+    public static void handleServerStopped(final ServerStoppedEvent event) {
+        remainingElementCount = Integer.MAX_VALUE;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Takes one element from the budget of the current tick.
+     *
+     * @return {@code true} if the element may be visited; {@code false} if the budget is used up.
+     */
+    static boolean tryVisitElement() {
+        if (remainingElementCount <= 0) {
+            return false;
+        }
+
+        remainingElementCount--;
+        return true;
+    }
+}
@@ -5,6 +5,7 @@ package li.cil.oc2.common.bus;
 import li.cil.oc2.api.bus.DeviceBusController;
 import li.cil.oc2.api.bus.DeviceBusElement;
 import li.cil.oc2.api.bus.device.Device;
+import li.cil.oc2.common.Config;
 import li.cil.oc2.common.util.Event;
 import li.cil.oc2.common.util.LazyOptionalUtils;
 import li.cil.oc2.common.util.ParameterizedEvent;
@@ -27,7 +28,6 @@ public class CommonDeviceBusController implements DeviceBusController {
 
     ///////////////////////////////////////////////////////////////////
 
-    private static final int MAX_BUS_ELEMENT_COUNT = 128;
     private static final int INCOMPLETE_RETRY_INTERVAL = TickUtils.toTicks(Duration.ofSeconds(10));
     private static final int BAD_CONFIGURATION_RETRY_INTERVAL = TickUtils.toTicks(Duration.ofSeconds(5));
 
@@ -46,8 +46,23 @@ public class CommonDeviceBusController implements DeviceBusController {
     private final HashSet<Device> devices = new HashSet<>();
     private final HashMap<Device, Set<UUID>> deviceIds = new HashMap<>();
 
+    // Elements we registered with during a scan, that are not yet in our element set.
+    private final HashSet<DeviceBusElement> pendingElements = new HashSet<>();
+
+    // Optionals of elements in our element set we listen to for invalidation.
+    private final HashMap<DeviceBusElement, LazyOptional<DeviceBusElement>> observedOptionals = new HashMap<>();
+
+    // Graph of the bus found by scans. It is kept after a scan completes, so that when elements change
+    // only they have to be visited again. Scans of large buses are spread over multiple ticks.
+    private final HashSet<DeviceBusElement> scannedElements = new HashSet<>();
+    private final HashMap<DeviceBusElement, HashSet<DeviceBusElement>> neighborsByElement = new HashMap<>();
+    private final ArrayDeque<DeviceBusElement> openElements = new ArrayDeque<>();
+    private final HashMap<DeviceBusElement, LazyOptional<DeviceBusElement>> scannedOptionals = new HashMap<>();
+    private boolean isScanInProgress;
+
     private BusState state = BusState.SCAN_PENDING;
     private int scanDelay;
+    private boolean areDevicesStale;
 
     private int energyConsumption;
 
@@ -65,15 +80,16 @@ public class CommonDeviceBusController implements DeviceBusController {
 
     public void dispose() {
         for (final DeviceBusElement element : elements) {
-            element.removeController(this);
-
-            // Let other controllers on the bus know we're gone, so they can quickly recover.
-            for (final DeviceBusController controller : element.getControllers()) {
-                controller.scheduleBusScan(ScanReason.BUS_CHANGE);
-            }
+            unregisterFrom(element);
+        }
+        for (final DeviceBusElement element : pendingElements) {
+            unregisterFrom(element);
         }
 
         elements.clear();
+        pendingElements.clear();
+        observedOptionals.clear();
+        clearScan();
     }
 
     public BusState getState() {
@@ -94,6 +110,25 @@ public class CommonDeviceBusController implements DeviceBusController {
 
         scanDelay = 0; // scan as soon as possible
         state = BusState.SCAN_PENDING;
+
+        // Start over if a scan is in progress, we don't know which part of the bus changed.
+        clearScan();
+    }
+
+    @Override
+    public void scheduleBusScan(final DeviceBusElement element) {
+        if (!scannedElements.contains(element)) {
+            scheduleBusScan(ScanReason.BUS_CHANGE);
+            return;
+        }
+
+        // Elements found but not visited yet will be visited anyway. Visited elements are visited again,
+        // keeping the rest of the graph.
+        if (neighborsByElement.containsKey(element) && !openElements.contains(element)) {
+            openElements.push(element);
+        }
+
+        beginUpdate();
     }
 
     @Override
@@ -120,6 +155,8 @@ public class CommonDeviceBusController implements DeviceBusController {
 
         final boolean didDevicesChange = !removedDevices.isEmpty() || !addedDevices.isEmpty();
         final boolean didDeviceIdsChange;
+        areDevicesStale = false;
+
         if (didDevicesChange) {
             devices.clear();
             devices.addAll(newDevices);
@@ -149,44 +186,23 @@ public class CommonDeviceBusController implements DeviceBusController {
     }
 
     public void scan() {
-        if (scanDelay < 0) {
-            return;
-        }
-
-        if (scanDelay-- > 0) {
-            return;
-        }
-
-        assert scanDelay == -1;
-
-        // We stay registered with elements until we scan so that other controllers on the same bus
-        // can detect us in the meantime (for multiple controller detection). This also means that
-        // adapters keep devices mounted until a scan, which is a nice performance plus.
-
-        collectBusElements().ifPresent(optionals -> {
-            final HashSet<DeviceBusElement> addedElements = updateElements(optionals.keySet());
-
-            if (checkOtherBusControllers()) {
+        if (!isScanInProgress) {
+            if (scanDelay < 0) {
                 return;
             }
 
-            // Don't have an optional for our root element, so skip that.
-            addedElements.remove(root);
-            for (final DeviceBusElement element : addedElements) {
-                // Rescan if any bus element gets invalidated. Don't have bus elements keep this instance alive,
-                // only notify us on change if we still exist.
-                LazyOptionalUtils.addWeakListener(optionals.get(element), this,
-                    (controller, ignored) -> controller.scheduleBusScan(ScanReason.BUS_CHANGE));
+            if (scanDelay-- > 0) {
+                return;
             }
 
-            scanDevices();
+            assert scanDelay == -1;
 
-            updateEnergyConsumption();
-
-            state = BusState.READY;
+            beginScan();
+        }
 
-            onAfterBusScan();
-        });
+        if (continueScan()) {
+            finishScan();
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -221,23 +237,56 @@ public class CommonDeviceBusController implements DeviceBusController {
         for (final DeviceBusElement element : elements) {
             element.removeController(this);
         }
+        for (final DeviceBusElement element : pendingElements) {
+            element.removeController(this);
+        }
 
         elements.clear();
+        pendingElements.clear();
+        observedOptionals.clear();
+        clearScan();
 
         scanDevices();
     }
 
-    private Optional<HashMap<DeviceBusElement, LazyOptional<DeviceBusElement>>> collectBusElements() {
-        final HashSet<DeviceBusElement> closed = new HashSet<>();
-        final Stack<DeviceBusElement> open = new Stack<>();
-        final HashMap<DeviceBusElement, LazyOptional<DeviceBusElement>> optionals = new HashMap<>();
+    private void clearScan() {
+        isScanInProgress = false;
+        scannedElements.clear();
+        neighborsByElement.clear();
+        openElements.clear();
+        scannedOptionals.clear();
+    }
+
+    private void beginScan() {
+        clearScan();
+        isScanInProgress = true;
 
-        closed.add(root);
-        open.add(root);
-        optionals.put(root, LazyOptional.empty()); // Needed because we only return this map.
+        scannedElements.add(root);
+        openElements.push(root);
+        registerWith(root);
+    }
 
-        while (!open.isEmpty()) {
-            final DeviceBusElement element = open.pop();
+    private void beginUpdate() {
+        isScanInProgress = true;
+        state = BusState.SCAN_PENDING;
+    }
+
+    /**
+     * Visits elements of the bus until all were found, or the scan budget for this tick is used up.
+     * <p>
+     * We register with elements as soon as we find them, so that we get notified if the part of the
+     * bus we already scanned changes before the scan completes, and can visit the changed elements again.
+     *
+     * @return {@code true} if the scan completed; {@code false} if it has to be continued next tick,
+     * or failed.
+     */
+    private boolean continueScan() {
+        for (int visitedCount = 0; !openElements.isEmpty(); visitedCount++) {
+            if (!BusScanScheduler.tryVisitElement() && visitedCount > 0) {
+                return false;
+            }
+
+            final DeviceBusElement element = openElements.pop();
 
             final Optional<Collection<LazyOptional<DeviceBusElement>>> elementNeighbors = element.getNeighbors();
             if (elementNeighbors.isEmpty()) {
@@ -245,54 +294,190 @@ public class CommonDeviceBusController implements DeviceBusController {
                 state = BusState.INCOMPLETE;
 
                 clearElements();
-                return Optional.empty();
+                return false;
             }
 
+            final HashSet<DeviceBusElement> neighborElements = new HashSet<>();
             for (final LazyOptional<DeviceBusElement> neighbor : elementNeighbors.get()) {
                 neighbor.ifPresent(neighborElement -> {
-                    if (closed.add(neighborElement)) {
-                        open.add(neighborElement);
-                        optionals.put(neighborElement, neighbor);
+                    neighborElements.add(neighborElement);
+                    if (scannedElements.add(neighborElement)) {
+                        openElements.push(neighborElement);
+                        scannedOptionals.put(neighborElement, neighbor);
+                        registerWith(neighborElement);
                     }
                 });
             }
+            neighborsByElement.put(element, neighborElements);
 
-            if (closed.size() > MAX_BUS_ELEMENT_COUNT) {
+            // Elements cut off by changes since the last scan do not count, so drop them before giving up.
+            final int maxElementCount = Config.maxBusElementCount;
+            if (maxElementCount > 0 && scannedElements.size() > maxElementCount &&
+                removeUnreachableElements() > maxElementCount) {
                 scanDelay = BAD_CONFIGURATION_RETRY_INTERVAL;
                 state = BusState.TOO_COMPLEX;
 
                 clearElements();
-                return Optional.empty();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void finishScan() {
+        // Catch elements that went away without telling us while the scan was spread over multiple ticks.
+        for (final Map.Entry<DeviceBusElement, LazyOptional<DeviceBusElement>> entry : List.copyOf(scannedOptionals.entrySet())) {
+            if (!entry.getValue().isPresent()) {
+                removeElement(entry.getKey());
             }
         }
 
-        return Optional.of(optionals);
+        // Neighbors of removed elements have to be visited again first.
+        if (!openElements.isEmpty()) {
+            return;
+        }
+
+        isScanInProgress = false;
+
+        removeUnreachableElements();
+
+        updateElements(scannedElements);
+
+        if (checkOtherBusControllers()) {
+            clearScan();
+            return;
+        }
+
+        // Don't have an optional for our root element, so it is never observed.
+        for (final Map.Entry<DeviceBusElement, LazyOptional<DeviceBusElement>> entry : scannedOptionals.entrySet()) {
+            final DeviceBusElement element = entry.getKey();
+            final LazyOptional<DeviceBusElement> optional = entry.getValue();
+            if (observedOptionals.put(element, optional) != optional) {
+                // Update if any bus element gets invalidated. Don't have bus elements keep this instance alive,
+                // only notify us on change if we still exist.
+                LazyOptionalUtils.addWeakListener(optional, this,
+                    (controller, ignored) -> controller.handleElementInvalidated(element));
+            }
+        }
+
+        // Devices only need to be collected again if elements were added or removed. Changes in the
+        // devices of elements already on the bus are reported by the elements themselves.
+        if (areDevicesStale) {
+            scanDevices();
+        }
+
+        updateEnergyConsumption();
+
+        state = BusState.READY;
+
+        onAfterBusScan();
     }
 
-    private HashSet<DeviceBusElement> updateElements(final Set<DeviceBusElement> newElements) {
-        final HashSet<DeviceBusElement> removedElements = new HashSet<>(elements);
-        removedElements.removeAll(newElements);
+    private void handleElementInvalidated(final DeviceBusElement element) {
+        // Without a graph of the bus, e.g. after an error, all we can do is start over.
+        if (scannedElements.isEmpty()) {
+            scheduleBusScan(ScanReason.BUS_CHANGE);
+            return;
+        }
 
-        elements.removeAll(removedElements);
+        if (scannedElements.contains(element)) {
+            removeElement(element);
+            beginUpdate();
+        }
+    }
 
-        for (final DeviceBusElement removedElement : removedElements) {
-            removedElement.removeController(this);
+    private void removeElement(final DeviceBusElement element) {
+        scannedElements.remove(element);
+        neighborsByElement.remove(element);
+        openElements.remove(element);
+        scannedOptionals.remove(element);
+
+        // Invalidation does not mean the element is gone, e.g. it may only have replaced its optional.
+        // Visit its neighbors again, so it is found again if it is still connected.
+        for (final Map.Entry<DeviceBusElement, HashSet<DeviceBusElement>> entry : neighborsByElement.entrySet()) {
+            if (entry.getValue().remove(element) && !openElements.contains(entry.getKey())) {
+                openElements.push(entry.getKey());
+            }
+        }
+    }
 
-            // Let other controllers on the bus know we're gone, so they can quickly recover.
-            for (final DeviceBusController controller : removedElement.getControllers()) {
-                controller.scheduleBusScan(ScanReason.BUS_CHANGE);
+    /**
+     * Removes elements from the graph that are no longer connected to the root element.
+     *
+     * @return the number of remaining elements.
+     */
+    private int removeUnreachableElements() {
+        final HashSet<DeviceBusElement> reachableElements = new HashSet<>();
+        final ArrayDeque<DeviceBusElement> queue = new ArrayDeque<>();
+        reachableElements.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            final HashSet<DeviceBusElement> neighbors = neighborsByElement.get(queue.pop());
+            if (neighbors == null) {
+                continue; // Not visited yet.
+            }
+
+            for (final DeviceBusElement neighbor : neighbors) {
+                if (reachableElements.add(neighbor)) {
+                    queue.add(neighbor);
+                }
             }
         }
 
-        final HashSet<DeviceBusElement> addedElements = new HashSet<>(newElements);
-        addedElements.removeAll(elements);
+        scannedElements.retainAll(reachableElements);
+        neighborsByElement.keySet().retainAll(reachableElements);
+        openElements.removeIf(element -> !reachableElements.contains(element));
+        scannedOptionals.keySet().retainAll(reachableElements);
 
-        elements.addAll(addedElements);
+        return scannedElements.size();
+    }
 
-        for (final DeviceBusElement element : addedElements) {
+    private void registerWith(final DeviceBusElement element) {
+        if (!elements.contains(element) && pendingElements.add(element)) {
             element.addController(this);
         }
-        return addedElements;
+    }
+
+    private void unregisterFrom(final DeviceBusElement element) {
+        element.removeController(this);
+
+        // Let other controllers on the bus know we're gone, so they can quickly recover.
+        for (final DeviceBusController controller : element.getControllers()) {
+            controller.scheduleBusScan(ScanReason.BUS_CHANGE);
+        }
+    }
+
+    /**
+     * Applies the difference between the current and the new set of elements.
+     *
+     * @param newElements the elements found in the last scan.
+     */
+    private void updateElements(final Set<DeviceBusElement> newElements) {
+        final Iterator<DeviceBusElement> iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            final DeviceBusElement element = iterator.next();
+            if (!newElements.contains(element)) {
+                iterator.remove();
+                observedOptionals.remove(element);
+                unregisterFrom(element);
+                areDevicesStale = true;
+            }
+        }
+
+        for (final DeviceBusElement element : newElements) {
+            if (elements.add(element)) {
+                areDevicesStale = true;
+            }
+        }
+
+        // Elements registered with during the scan are now either on the bus, or were not reachable anymore.
+        for (final DeviceBusElement element : pendingElements) {
+            if (!newElements.contains(element)) {
+                unregisterFrom(element);
+            }
+        }
+        pendingElements.clear();
     }
 
     private boolean checkOtherBusControllers() {
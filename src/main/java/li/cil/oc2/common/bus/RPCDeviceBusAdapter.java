@@ -2,8 +2,7 @@
 
 package li.cil.oc2.common.bus;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
+import com.google.gson.*;
 import li.cil.ceres.api.Serialized;
 import li.cil.oc2.api.bus.DeviceBusController;
 import li.cil.oc2.api.bus.device.Device;
@@ -12,31 +11,62 @@ import li.cil.oc2.api.util.Side;
 import li.cil.oc2.common.Constants;
 import li.cil.oc2.common.bus.device.rpc.RPCDeviceList;
 import li.cil.oc2.common.bus.device.rpc.RPCMethodParameterTypeAdapters;
+import li.cil.oc2.common.bus.device.rpc.RPCParameterDecoders;
+import li.cil.oc2.common.serialization.MessagePackJsonConverter;
 import li.cil.oc2.common.serialization.gson.*;
 import li.cil.sedna.api.device.Steppable;
 import li.cil.sedna.api.device.serial.SerialDevice;
 
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Exposes {@link RPCDevice}s on a device bus to a VM via a serial device.
+ * <p>
+ * By default, messages are sent as JSON, delimited by {@code \0} bytes. The VM may switch to a
+ * binary protocol by sending a {@link Message#MESSAGE_TYPE_PROTOCOL} message. In the binary
+ * protocol messages have the same structure, but are encoded using MessagePack and prefixed with
+ * their length as a big-endian 32-bit integer. Additionally, devices are assigned small integer
+ * handles, which may be used instead of device ids. The protocol is reset to JSON when the
+ * adapter is reset.
+ * <p>
+ * Messages may carry an {@code id}, which is copied to the response. Invocations of methods
+ * that must run on the main thread with such an id do not block processing of further messages,
+ * so the VM may have multiple calls in flight, which may complete out of order. Messages of type
+ * {@link Message#MESSAGE_TYPE_BATCH} carry a list of invocations, which are all run in the same
+ * tick and are answered with a single message holding the list of results.
+ */
 public final class RPCDeviceBusAdapter implements Steppable {
     private static final int DEFAULT_MAX_MESSAGE_SIZE = 4 * Constants.KILOBYTE;
+    private static final int MAX_BINARY_MESSAGE_SIZE = 64 * Constants.KILOBYTE;
+    private static final int BINARY_HEADER_SIZE = 4;
+    private static final int MAX_PENDING_SYNCHRONIZED_MESSAGES = 16;
+    private static final int MAX_BATCH_SIZE = 64;
     private static final byte[] MESSAGE_DELIMITER = "\0".getBytes();
 
+    public static final String PROTOCOL_JSON = "json";
+    public static final String PROTOCOL_BINARY = "binary";
+
     public static final String ERROR_MESSAGE_TOO_LARGE = "message too large";
     public static final String ERROR_UNKNOWN_MESSAGE_TYPE = "unknown message type";
     public static final String ERROR_UNKNOWN_DEVICE = "unknown device";
     public static final String ERROR_UNKNOWN_METHOD = "unknown method";
     public static final String ERROR_INVALID_PARAMETER_SIGNATURE = "invalid parameter signature";
+    public static final String ERROR_UNKNOWN_PROTOCOL = "unknown protocol";
+    public static final String ERROR_BATCH_TOO_LARGE = "batch too large";
 
     ///////////////////////////////////////////////////////////////////
 
     private final SerialDevice serialDevice;
+    private final int maxMessageSize;
     private final Gson gson;
 
     private final ArrayList<RPCDeviceWithIdentifier> devicesWithId = new ArrayList<>();
@@ -45,12 +75,18 @@ public final class RPCDeviceBusAdapter implements Steppable {
     private final Set<RPCDeviceList> mountedDevices = new HashSet<>();
     private final Lock pauseLock = new ReentrantLock();
     private boolean isPaused;
+    private volatile long processedMessageCount;
+    private final HashMap<UUID, Integer> deviceHandlesById = new HashMap<>();
 
     ///////////////////////////////////////////////////////////////////
 
-    @Serialized private final ByteBuffer transmitBuffer; // for data written to device by VM
+    @Serialized private ByteBuffer transmitBuffer; // for data written to device by VM
     @Serialized private ByteBuffer receiveBuffer; // for data written by device to VM
     @Serialized private MethodInvocation synchronizedInvocation; // pending main thread invocation
+    @Serialized private JsonArray synchronizedMessages = new JsonArray(); // pending main thread messages with id, and batches
+    @Serialized private boolean isBinaryProtocol;
+    @Serialized private int binaryBytesToSkip; // remainder of a binary message that was too large
+    @Serialized private JsonArray deviceHandles = new JsonArray(); // device ids by handle, binary protocol only
 
     ///////////////////////////////////////////////////////////////////
 
@@ -60,6 +96,7 @@ public final class RPCDeviceBusAdapter implements Steppable {
 
     public RPCDeviceBusAdapter(final SerialDevice serialDevice, final int maxMessageSize) {
         this.serialDevice = serialDevice;
+        this.maxMessageSize = maxMessageSize;
         this.transmitBuffer = ByteBuffer.allocate(maxMessageSize);
         this.gson = RPCMethodParameterTypeAdapters.beginBuildGson()
             .registerTypeAdapter(byte[].class, new UnsignedByteArrayJsonSerializer())
@@ -102,6 +139,12 @@ public final class RPCDeviceBusAdapter implements Steppable {
         transmitBuffer.clear();
         receiveBuffer = null;
         synchronizedInvocation = null;
+        synchronizedMessages = new JsonArray();
+        isBinaryProtocol = false;
+        binaryBytesToSkip = 0;
+        deviceHandles = new JsonArray();
+        deviceHandlesById.clear();
+        resizeTransmitBuffer();
     }
 
     public void pause() {
@@ -192,19 +235,47 @@ public final class RPCDeviceBusAdapter implements Steppable {
         unmountedDevices.retainAll(devices);
     }
 
+    /**
+     * The total number of messages received from the VM and processed by this adapter.
+     *
+     * @return the number of processed messages.
+     */
+    public long getProcessedMessageCount() {
+        return processedMessageCount;
+    }
+
     public void tick() {
         if (isPaused) {
             return;
         }
 
-        if (synchronizedInvocation != null) {
-            final MethodInvocation methodInvocation = synchronizedInvocation;
-            processMethodInvocation(methodInvocation, true);
+        // With calls in flight the VM may keep sending and receiving messages, so we must keep
+        // it from stepping the adapter while we write back results.
+        pauseLock.lock();
+        try {
+            if (synchronizedInvocation != null) {
+                final MethodInvocation methodInvocation = synchronizedInvocation;
+                try {
+                    invokeMethod(prepareInvocation(methodInvocation), null);
+                } catch (final Throwable e) {
+                    writeError(null, e.getMessage());
+                }
 
-            // This is also used to prevent thread from processing messages, so only
-            // reset this when we're done. Otherwise, we may get a race-condition when
-            // writing back data.
-            synchronizedInvocation = null;
+                // This is also used to prevent thread from processing messages, so only
+                // reset this when we're done. Otherwise, we may get a race-condition when
+                // writing back data.
+                synchronizedInvocation = null;
+            }
+
+            if (synchronizedMessages.size() > 0) {
+                final JsonArray messages = synchronizedMessages;
+                synchronizedMessages = new JsonArray();
+                for (final JsonElement message : messages) {
+                    processMessage(message, true);
+                }
+            }
+        } finally {
+            pauseLock.unlock();
         }
     }
 
@@ -240,25 +311,83 @@ public final class RPCDeviceBusAdapter implements Steppable {
         // method of limiting the write queue size would work, but this is
         // the most simple and easy to maintain one I could think of.
         int value;
-        while (receiveBuffer == null && synchronizedInvocation == null && (value = serialDevice.read()) >= 0) {
-            if (value == 0) {
-                if (transmitBuffer.limit() > 0) {
-                    transmitBuffer.flip();
-                    if (transmitBuffer.hasRemaining()) {
-                        final byte[] message = new byte[transmitBuffer.remaining()];
-                        transmitBuffer.get(message);
-                        processMessage(message);
-                    }
-                } else {
-                    writeError(ERROR_MESSAGE_TOO_LARGE);
+        while (receiveBuffer == null && !isWaitingForMainThread() && (value = serialDevice.read()) >= 0) {
+            if (isBinaryProtocol) {
+                readBinary((byte) value);
+            } else {
+                readJson((byte) value);
+            }
+        }
+    }
+
+    private boolean isWaitingForMainThread() {
+        if (synchronizedInvocation != null || synchronizedMessages.size() >= MAX_PENDING_SYNCHRONIZED_MESSAGES) {
+            return true;
+        }
+
+        // Same as for plain invocations, messages without id block until they have been answered.
+        for (final JsonElement message : synchronizedMessages) {
+            if (!message.getAsJsonObject().has("id")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void readJson(final byte value) {
+        if (value == 0) {
+            if (transmitBuffer.limit() > 0) {
+                transmitBuffer.flip();
+                if (transmitBuffer.hasRemaining()) {
+                    final byte[] message = new byte[transmitBuffer.remaining()];
+                    transmitBuffer.get(message);
+                    processMessage(message);
                 }
-                transmitBuffer.clear();
-            } else if (transmitBuffer.hasRemaining()) {
-                transmitBuffer.put((byte) value);
             } else {
-                transmitBuffer.clear();
-                transmitBuffer.limit(0); // marks message too large
+                writeError(ERROR_MESSAGE_TOO_LARGE);
+            }
+            transmitBuffer.clear();
+        } else if (transmitBuffer.limit() > 0 && transmitBuffer.position() < maxMessageSize) {
+            transmitBuffer.put(value);
+        } else {
+            transmitBuffer.clear();
+            transmitBuffer.limit(0); // marks message too large
+        }
+    }
+
+    private void readBinary(final byte value) {
+        if (binaryBytesToSkip > 0) {
+            binaryBytesToSkip--;
+            if (binaryBytesToSkip == 0) {
+                writeError(ERROR_MESSAGE_TOO_LARGE);
+            }
+            return;
+        }
+
+        transmitBuffer.put(value);
+        if (transmitBuffer.position() < BINARY_HEADER_SIZE) {
+            return;
+        }
+
+        final int length = transmitBuffer.getInt(0);
+        if (length < 0 || length > transmitBuffer.capacity() - BINARY_HEADER_SIZE) {
+            transmitBuffer.clear();
+            if (length > 0) {
+                binaryBytesToSkip = length;
+            } else {
+                writeError(ERROR_MESSAGE_TOO_LARGE);
+            }
+            return;
+        }
+
+        if (transmitBuffer.position() == BINARY_HEADER_SIZE + length) {
+            transmitBuffer.flip();
+            transmitBuffer.position(BINARY_HEADER_SIZE);
+            if (transmitBuffer.hasRemaining()) {
+                processBinaryMessage(transmitBuffer);
             }
+            transmitBuffer.clear();
         }
     }
 
@@ -283,37 +412,215 @@ public final class RPCDeviceBusAdapter implements Steppable {
             return;
         }
 
+        processedMessageCount++;
+
         final InputStreamReader stream = new InputStreamReader(new ByteArrayInputStream(messageData));
+        final JsonElement json;
+        try {
+            json = JsonParser.parseReader(stream);
+        } catch (final Throwable e) {
+            writeError(e.getMessage());
+            return;
+        }
+
+        processMessage(json, false);
+    }
+
+    private void processBinaryMessage(final ByteBuffer messageData) {
+        processedMessageCount++;
+
+        final JsonElement json;
         try {
-            final Message message = gson.fromJson(stream, Message.class);
+            json = MessagePackJsonConverter.read(messageData);
+            resolveDeviceHandles(json);
+        } catch (final Throwable e) {
+            writeError(e.getMessage());
+            return;
+        }
+
+        processMessage(json, false);
+    }
+
+    private void processMessage(final JsonElement json, final boolean isMainThread) {
+        final JsonElement id = json.isJsonObject() ? json.getAsJsonObject().get("id") : null;
+        try {
+            final Message message = gson.fromJson(json, Message.class);
             switch (message.type) {
-                case Message.MESSAGE_TYPE_LIST -> writeDeviceList();
+                case Message.MESSAGE_TYPE_LIST -> writeDeviceList(id);
                 case Message.MESSAGE_TYPE_METHODS -> {
                     if (message.data != null) {
-                        writeDeviceMethods((UUID) message.data);
+                        writeDeviceMethods((UUID) message.data, id);
                     } else {
-                        writeError("missing device id");
+                        writeError(id, "missing device id");
                     }
                 }
                 case Message.MESSAGE_TYPE_INVOKE_METHOD -> {
                     if (message.data != null) {
-                        processMethodInvocation((MethodInvocation) message.data, false);
+                        processMethodInvocation(json, (MethodInvocation) message.data, id, isMainThread);
                     } else {
-                        writeError("missing invocation data");
+                        writeError(id, "missing invocation data");
                     }
                 }
-                default -> writeError(ERROR_UNKNOWN_MESSAGE_TYPE);
+                case Message.MESSAGE_TYPE_BATCH -> {
+                    if (message.data != null) {
+                        processBatch(json, (JsonArray) message.data, id, isMainThread);
+                    } else {
+                        writeError(id, "missing invocation data");
+                    }
+                }
+                case Message.MESSAGE_TYPE_PROTOCOL -> {
+                    if (message.data != null) {
+                        setProtocol((String) message.data, id);
+                    } else {
+                        writeError(id, "missing protocol");
+                    }
+                }
+                default -> writeError(id, ERROR_UNKNOWN_MESSAGE_TYPE);
             }
         } catch (final Throwable e) {
-            writeError(e.getMessage());
+            writeError(id, e.getMessage());
+        }
+    }
+
+    private void setProtocol(final String protocol, @Nullable final JsonElement id) {
+        final boolean isBinary;
+        switch (protocol) {
+            case PROTOCOL_JSON -> isBinary = false;
+            case PROTOCOL_BINARY -> isBinary = true;
+            default -> {
+                writeError(id, ERROR_UNKNOWN_PROTOCOL);
+                return;
+            }
+        }
+
+        // Acknowledge using the old protocol, everything after this uses the new one.
+        writeMessage(new Message(Message.MESSAGE_TYPE_PROTOCOL, protocol, id));
+        isBinaryProtocol = isBinary;
+        resizeTransmitBuffer();
+    }
+
+    private void resizeTransmitBuffer() {
+        // Binary messages may be larger, but only use a larger buffer when needed, it is persisted, too.
+        final int capacity = isBinaryProtocol ? Math.max(maxMessageSize, BINARY_HEADER_SIZE + MAX_BINARY_MESSAGE_SIZE) : maxMessageSize;
+        if (transmitBuffer.capacity() != capacity) {
+            transmitBuffer = ByteBuffer.allocate(capacity);
+        }
+    }
+
+    private void resolveDeviceHandles(final JsonElement json) {
+        if (!json.isJsonObject()) {
+            return;
+        }
+
+        final JsonObject message = json.getAsJsonObject();
+        final JsonElement data = message.get("data");
+        if (data == null) {
+            return;
+        }
+
+        if (data.isJsonObject()) {
+            resolveInvocationDeviceHandle(data.getAsJsonObject());
+        } else if (data.isJsonArray()) {
+            for (final JsonElement invocation : data.getAsJsonArray()) {
+                if (invocation.isJsonObject()) {
+                    resolveInvocationDeviceHandle(invocation.getAsJsonObject());
+                }
+            }
+        } else {
+            message.add("data", resolveDeviceHandle(data));
+        }
+    }
+
+    private void resolveInvocationDeviceHandle(final JsonObject invocation) {
+        final JsonElement deviceId = invocation.get("deviceId");
+        if (deviceId != null) {
+            invocation.add("deviceId", resolveDeviceHandle(deviceId));
+        }
+    }
+
+    private JsonElement resolveDeviceHandle(final JsonElement deviceId) {
+        if (!deviceId.isJsonPrimitive() || !deviceId.getAsJsonPrimitive().isNumber()) {
+            return deviceId;
+        }
+
+        final int handle = deviceId.getAsInt();
+        if (handle < 0 || handle >= deviceHandles.size()) {
+            throw new JsonParseException(ERROR_UNKNOWN_DEVICE);
         }
+
+        return deviceHandles.get(handle);
+    }
+
+    private int getDeviceHandle(final UUID deviceId) {
+        // Handles are never reassigned until reset, so VMs may keep using them across bus changes.
+        if (deviceHandlesById.size() != deviceHandles.size()) {
+            deviceHandlesById.clear();
+            for (int i = 0; i < deviceHandles.size(); i++) {
+                deviceHandlesById.put(UUID.fromString(deviceHandles.get(i).getAsString()), i);
+            }
+        }
+
+        return deviceHandlesById.computeIfAbsent(deviceId, unused -> {
+            deviceHandles.add(deviceId.toString());
+            return deviceHandles.size() - 1;
+        });
+    }
+
+    private void processMethodInvocation(final JsonElement json, final MethodInvocation methodInvocation, @Nullable final JsonElement id, final boolean isMainThread) {
+        final PreparedInvocation invocation = prepareInvocation(methodInvocation);
+        if (invocation.method().isSynchronized() && !isMainThread) {
+            if (id != null) {
+                synchronizedMessages.add(json);
+            } else {
+                synchronizedInvocation = methodInvocation;
+            }
+            return;
+        }
+
+        invokeMethod(invocation, id);
+    }
+
+    private void processBatch(final JsonElement json, final JsonArray methodInvocations, @Nullable final JsonElement id, final boolean isMainThread) {
+        if (methodInvocations.size() > MAX_BATCH_SIZE) {
+            writeError(id, ERROR_BATCH_TOO_LARGE);
+            return;
+        }
+
+        final PreparedInvocation[] invocations = new PreparedInvocation[methodInvocations.size()];
+        final String[] errors = new String[methodInvocations.size()];
+        boolean isSynchronized = false;
+        for (int i = 0; i < invocations.length; i++) {
+            try {
+                invocations[i] = prepareInvocation(gson.fromJson(methodInvocations.get(i), MethodInvocation.class));
+                isSynchronized |= invocations[i].method().isSynchronized();
+            } catch (final Throwable e) {
+                errors[i] = getErrorMessage(e);
+            }
+        }
+
+        // Run all invocations of a batch on the same thread, so they are run in the same tick
+        // and in the order the VM specified them in.
+        if (isSynchronized && !isMainThread) {
+            synchronizedMessages.add(json);
+            return;
+        }
+
+        final ArrayList<Message> results = new ArrayList<>(invocations.length);
+        for (int i = 0; i < invocations.length; i++) {
+            if (invocations[i] != null) {
+                results.add(invoke(invocations[i], null));
+            } else {
+                results.add(new Message(Message.MESSAGE_TYPE_ERROR, errors[i]));
+            }
+        }
+
+        writeMessage(new Message(Message.MESSAGE_TYPE_BATCH, results, id));
     }
 
-    private void processMethodInvocation(final MethodInvocation methodInvocation, final boolean isMainThread) {
+    private PreparedInvocation prepareInvocation(final MethodInvocation methodInvocation) {
         final RPCDevice device = devicesById.get(methodInvocation.deviceId);
         if (device == null) {
-            writeError(ERROR_UNKNOWN_DEVICE);
-            return;
+            throw new IllegalArgumentException(ERROR_UNKNOWN_DEVICE);
         }
 
         final RPCInvocation invocation = new RPCInvocationImpl(methodInvocation.parameters, gson);
@@ -330,8 +637,7 @@ public final class RPCDeviceBusAdapter implements Steppable {
 
             final Optional<RPCMethod> overload = methodGroup.findOverload(invocation);
             if (overload.isPresent()) {
-                invokeMethod(methodInvocation, isMainThread, overload.get(), invocation);
-                return;
+                return new PreparedInvocation(overload.get(), invocation);
             }
 
             error = ERROR_INVALID_PARAMETER_SIGNATURE;
@@ -340,33 +646,45 @@ public final class RPCDeviceBusAdapter implements Steppable {
             // method group with the same name.
         }
 
-        writeError(error);
+        throw new IllegalArgumentException(error);
     }
 
-    private void invokeMethod(final MethodInvocation methodInvocation, final boolean isMainThread, final RPCMethod method, final RPCInvocation invocation) {
-        if (method.isSynchronized() && !isMainThread) {
-            synchronizedInvocation = methodInvocation;
-            return;
-        }
+    private void invokeMethod(final PreparedInvocation invocation, @Nullable final JsonElement id) {
+        writeMessage(invoke(invocation, id));
+    }
 
+    private Message invoke(final PreparedInvocation invocation, @Nullable final JsonElement id) {
         try {
-            final Object result = method.invoke(invocation);
-            writeMessage(Message.MESSAGE_TYPE_RESULT, result);
+            final Object result = invocation.method().invoke(invocation.invocation());
+            return new Message(Message.MESSAGE_TYPE_RESULT, result, id);
         } catch (final Throwable e) {
-            writeError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            return new Message(Message.MESSAGE_TYPE_ERROR, getErrorMessage(e), id);
         }
     }
 
-    private void writeDeviceList() {
-        writeMessage(Message.MESSAGE_TYPE_LIST, devicesWithId);
+    private static String getErrorMessage(final Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private void writeDeviceList(@Nullable final JsonElement id) {
+        if (!isBinaryProtocol) {
+            writeMessage(new Message(Message.MESSAGE_TYPE_LIST, devicesWithId, id));
+            return;
+        }
+
+        final JsonArray devices = gson.toJsonTree(devicesWithId).getAsJsonArray();
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).getAsJsonObject().addProperty("handle", getDeviceHandle(devicesWithId.get(i).identifier()));
+        }
+        writeMessage(new Message(Message.MESSAGE_TYPE_LIST, devices, id));
     }
 
-    private void writeDeviceMethods(final UUID deviceId) {
+    private void writeDeviceMethods(final UUID deviceId, @Nullable final JsonElement id) {
         final RPCDeviceList device = devicesById.get(deviceId);
         if (device != null) {
-            writeMessage(Message.MESSAGE_TYPE_METHODS, flattenMethodGroups(device.getMethodGroups()));
+            writeMessage(new Message(Message.MESSAGE_TYPE_METHODS, flattenMethodGroups(device.getMethodGroups()), id));
         } else {
-            writeError("unknown device");
+            writeError(id, "unknown device");
         }
     }
 
@@ -384,12 +702,23 @@ public final class RPCDeviceBusAdapter implements Steppable {
     }
 
     private void writeError(final String message) {
-        writeMessage(Message.MESSAGE_TYPE_ERROR, message);
+        writeError(null, message);
     }
 
-    private void writeMessage(final String type, @Nullable final Object data) {
-        if (receiveBuffer != null) throw new IllegalStateException();
-        final String json = gson.toJson(new Message(type, data));
+    private void writeError(@Nullable final JsonElement id, final String message) {
+        writeMessage(new Message(Message.MESSAGE_TYPE_ERROR, message, id));
+    }
+
+    private void writeMessage(final Message message) {
+        if (isBinaryProtocol) {
+            writeBinaryMessage(message);
+        } else {
+            writeJsonMessage(message);
+        }
+    }
+
+    private void writeJsonMessage(final Message message) {
+        final String json = gson.toJson(message);
         final byte[] bytes = json.getBytes();
         final ByteBuffer receiveBuffer = ByteBuffer.allocate(bytes.length + MESSAGE_DELIMITER.length * 2);
 
@@ -406,7 +735,37 @@ public final class RPCDeviceBusAdapter implements Steppable {
         receiveBuffer.put(MESSAGE_DELIMITER);
 
         receiveBuffer.flip();
-        this.receiveBuffer = receiveBuffer;
+        enqueueReceiveData(receiveBuffer);
+    }
+
+    private void writeBinaryMessage(final Message message) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            MessagePackJsonConverter.write(gson.toJsonTree(message), new DataOutputStream(bytes));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e); // Cannot happen, we're writing to memory.
+        }
+
+        final ByteBuffer receiveBuffer = ByteBuffer.allocate(BINARY_HEADER_SIZE + bytes.size());
+        receiveBuffer.putInt(bytes.size());
+        receiveBuffer.put(bytes.toByteArray());
+
+        receiveBuffer.flip();
+        enqueueReceiveData(receiveBuffer);
+    }
+
+    private void enqueueReceiveData(final ByteBuffer data) {
+        if (receiveBuffer == null) {
+            receiveBuffer = data;
+            return;
+        }
+
+        // More than one call was in flight, queue this message after what the VM has yet to read.
+        final ByteBuffer combined = ByteBuffer.allocate(receiveBuffer.remaining() + data.remaining());
+        combined.put(receiveBuffer);
+        combined.put(data);
+        combined.flip();
+        receiveBuffer = combined;
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -415,13 +774,21 @@ public final class RPCDeviceBusAdapter implements Steppable {
 
     public record EmptyMethodGroup(String name) { }
 
-    public record Message(String type, @Nullable Object data) {
+    public record Message(String type, @Nullable Object data, @Nullable JsonElement id) {
         // Device -> VM
         public static final String MESSAGE_TYPE_LIST = "list";
         public static final String MESSAGE_TYPE_METHODS = "methods";
         public static final String MESSAGE_TYPE_RESULT = "result";
         public static final String MESSAGE_TYPE_ERROR = "error";
 
+        // Both directions
+        public static final String MESSAGE_TYPE_PROTOCOL = "protocol";
+        public static final String MESSAGE_TYPE_BATCH = "batch";
+
+        public Message(final String type, @Nullable final Object data) {
+            this(type, data, null);
+        }
+
         // VM -> Device
         public static final String MESSAGE_TYPE_INVOKE_METHOD = "invoke";
     }
@@ -445,7 +812,22 @@ public final class RPCDeviceBusAdapter implements Steppable {
 
     ///////////////////////////////////////////////////////////////////
 
-    private record RPCInvocationImpl(JsonArray parameters, Gson gson) implements RPCInvocation {
+    private record PreparedInvocation(RPCMethod method, RPCInvocation invocation) { }
+
+    private static final class RPCInvocationImpl implements RPCInvocation {
+        private final JsonArray parameters;
+        private final Gson gson;
+
+        // Overload resolution deserializes parameters to check if they match, and invoking the
+        // method that matched does so again, so we remember the last result.
+        @Nullable private RPCParameter[] lastParameterTypes;
+        @Nullable private Object[] lastResult;
+
+        public RPCInvocationImpl(final JsonArray parameters, final Gson gson) {
+            this.parameters = parameters;
+            this.gson = gson;
+        }
+
         @Override
         public JsonArray getParameters() {
             return parameters;
@@ -462,16 +844,28 @@ public final class RPCDeviceBusAdapter implements Steppable {
                 return Optional.empty();
             }
 
+            if (parameterTypes == lastParameterTypes) {
+                return Optional.ofNullable(lastResult);
+            }
+
+            final Object[] result = deserializeParameters(parameterTypes);
+            lastParameterTypes = parameterTypes;
+            lastResult = result;
+            return Optional.ofNullable(result);
+        }
+
+        @Nullable
+        private Object[] deserializeParameters(final RPCParameter[] parameterTypes) {
             final Object[] result = new Object[parameterTypes.length];
             for (int i = 0; i < parameterTypes.length; i++) {
                 final RPCParameter parameterInfo = parameterTypes[i];
                 try {
-                    result[i] = gson.fromJson(parameters.get(i), parameterInfo.getType());
+                    result[i] = RPCParameterDecoders.get(parameterInfo.getType()).decode(parameters.get(i), gson);
                 } catch (final Throwable e) {
-                    return Optional.empty();
+                    return null;
                 }
             }
-            return Optional.of(result);
+            return result;
         }
     }
 }
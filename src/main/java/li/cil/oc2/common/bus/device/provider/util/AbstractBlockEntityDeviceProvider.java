@@ -23,6 +23,17 @@ public abstract class AbstractBlockEntityDeviceProvider<T extends BlockEntity> e
 
     ///////////////////////////////////////////////////////////////////
 
+    /**
+     * Whether this provider may provide devices for block entities of the specified type at all.
+     * Used to narrow down the providers queried for a block.
+     *
+     * @param type the block entity type to check.
+     * @return {@code true} if this provider may provide devices for the type; {@code false} otherwise.
+     */
+    public final boolean isApplicableTo(final BlockEntityType<?> type) {
+        return blockEntityType == null || blockEntityType == type;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public final Invalidatable<Device> getDevice(final BlockDeviceQuery query) {
@@ -36,6 +36,17 @@ public abstract class AbstractItemDeviceProvider extends ForgeRegistryEntry<Item
 
     ///////////////////////////////////////////////////////////////////
 
+    /**
+     * Whether this provider may provide devices for stacks of the specified item at all. Used to
+     * narrow down the providers queried for an item stack.
+     *
+     * @param item the item to check.
+     * @return {@code true} if this provider may provide devices for the item; {@code false} otherwise.
+     */
+    public final boolean isApplicableTo(final Item item) {
+        return predicate.test(item);
+    }
+
     @Override
     public final Optional<ItemDevice> getDevice(final ItemDeviceQuery query) {
         return matches(query) ? getItemDevice(query) : Optional.empty();
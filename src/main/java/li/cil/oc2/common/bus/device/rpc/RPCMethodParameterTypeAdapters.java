@@ -29,6 +29,16 @@ public final class RPCMethodParameterTypeAdapters {
         TYPE_ADAPTERS.add(value);
     }
 
+    public static boolean hasTypeAdapter(final Class<?> type) {
+        for (final RPCMethodParameterTypeAdapter value : TYPE_ADAPTERS) {
+            if (value.type() == type) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public static GsonBuilder beginBuildGson() {
         final GsonBuilder builder = new GsonBuilder();
 
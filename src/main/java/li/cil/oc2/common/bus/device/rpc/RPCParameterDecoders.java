@@ -0,0 +1,93 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.bus.device.rpc;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+import javax.annotation.Nullable;
+
+/**
+ * Provides decoders for RPC method parameters.
+ * <p>
+ * Parameters of primitive types, their wrappers and strings are by far the most common. For these,
+ * we read the value directly from the JSON tree instead of going through {@link Gson#fromJson}.
+ * The specialized decoders mirror the behaviour of Gson's built-in type adapters when reading
+ * from a tree, so overload resolution is not affected. If a custom type adapter was registered for
+ * such a type, Gson is used instead.
+ */
+public final class RPCParameterDecoders {
+    @FunctionalInterface
+    public interface Decoder {
+        @Nullable
+        Object decode(JsonElement json, Gson gson);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final ClassValue<Decoder> DECODERS = new ClassValue<>() {
+        @Override
+        protected Decoder computeValue(final Class<?> type) {
+            return createDecoder(type);
+        }
+    };
+
+    ///////////////////////////////////////////////////////////////////
+
+    public static Decoder get(final Class<?> type) {
+        return DECODERS.get(type);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static Decoder createDecoder(final Class<?> type) {
+        if (!RPCMethodParameterTypeAdapters.hasTypeAdapter(type)) {
+            if (type == int.class || type == Integer.class) {
+                return (json, gson) -> json.isJsonNull() ? null : getNumberOrString(json).getAsInt();
+            } else if (type == long.class || type == Long.class) {
+                return (json, gson) -> json.isJsonNull() ? null : getNumberOrString(json).getAsLong();
+            } else if (type == short.class || type == Short.class) {
+                return (json, gson) -> json.isJsonNull() ? null : (short) getNumberOrString(json).getAsInt();
+            } else if (type == byte.class || type == Byte.class) {
+                return (json, gson) -> json.isJsonNull() ? null : (byte) getNumberOrString(json).getAsInt();
+            } else if (type == double.class || type == Double.class) {
+                return (json, gson) -> json.isJsonNull() ? null : getNumberOrString(json).getAsDouble();
+            } else if (type == float.class || type == Float.class) {
+                return (json, gson) -> json.isJsonNull() ? null : (float) getNumberOrString(json).getAsDouble();
+            } else if (type == boolean.class || type == Boolean.class) {
+                return (json, gson) -> json.isJsonNull() ? null : decodeBoolean(json);
+            } else if (type == String.class) {
+                return (json, gson) -> json.isJsonNull() ? null : decodeString(json);
+            }
+        }
+
+        return (json, gson) -> gson.fromJson(json, type);
+    }
+
+    private static JsonPrimitive getNumberOrString(final JsonElement json) {
+        if (json instanceof final JsonPrimitive primitive && (primitive.isNumber() || primitive.isString())) {
+            return primitive;
+        }
+        throw new JsonParseException("Expected a number");
+    }
+
+    private static boolean decodeBoolean(final JsonElement json) {
+        if (json instanceof final JsonPrimitive primitive) {
+            if (primitive.isString()) {
+                return Boolean.parseBoolean(primitive.getAsString());
+            } else if (primitive.isBoolean()) {
+                return primitive.getAsBoolean();
+            }
+        }
+        throw new JsonParseException("Expected a boolean");
+    }
+
+    private static String decodeString(final JsonElement json) {
+        if (json instanceof final JsonPrimitive primitive) {
+            return primitive.getAsString();
+        }
+        throw new JsonParseException("Expected a string");
+    }
+}
@@ -0,0 +1,178 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.bus.device.util;
+
+import li.cil.oc2.api.API;
+import li.cil.oc2.api.bus.device.provider.BlockDeviceProvider;
+import li.cil.oc2.api.bus.device.provider.ItemDeviceProvider;
+import li.cil.oc2.common.bus.device.provider.Providers;
+import li.cil.oc2.common.bus.device.provider.util.AbstractBlockEntityDeviceProvider;
+import li.cil.oc2.common.bus.device.provider.util.AbstractItemDeviceProvider;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.BlockEntityType;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.registries.IForgeRegistry;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Narrows down the device providers to query for a block or an item stack.
+ * <p>
+ * Most providers only apply to a specific block entity type or item. Instead of asking every
+ * registered provider in every query, providers are grouped by the block entity type and item
+ * they apply to. Only the providers for the queried type or item are asked. Providers we know
+ * nothing about, e.g. those of other mods not using our base classes, are always asked.
+ * <p>
+ * The candidate lists are computed on first use of a type or item. They are kept for as long as
+ * the registry stays the same, which it does once it is frozen.
+ * <p>
+ * Also caches the energy consumption of item stacks, which is queried repeatedly for tooltips.
+ */
+@Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.MOD)
+public final class DeviceProviderIndex {
+    private static final int MAX_CACHED_ENERGY_CONSUMPTION_COUNT = 1024;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Nullable private static volatile BlockProviders blockProviders;
+    @Nullable private static volatile ItemProviders itemProviders;
+    private static final ConcurrentHashMap<EnergyConsumptionKey, Integer> ENERGY_CONSUMPTION = new ConcurrentHashMap<>();
+
+    ///////////////////////////////////////////////////////////////////
+
+    @SubscribeEvent
+    public static void handleConfigReloading(final ModConfigEvent.Reloading event) {
+        // Energy consumption is mostly defined by config values.
+        ENERGY_CONSUMPTION.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the providers that may provide devices for a block with the specified block entity.
+     *
+     * @param blockEntity the block entity at the queried position, if any.
+     * @return the providers to query, in registry order.
+     */
+    static List<BlockDeviceProvider> getBlockDeviceProviders(@Nullable final BlockEntity blockEntity) {
+        final IForgeRegistry<BlockDeviceProvider> registry = Providers.blockDeviceProviderRegistry();
+        BlockProviders providers = blockProviders;
+        if (providers == null || providers.registry != registry) {
+            providers = new BlockProviders(registry);
+            blockProviders = providers;
+        }
+
+        if (blockEntity == null) {
+            return providers.withoutBlockEntity;
+        } else {
+            return providers.byBlockEntityType.computeIfAbsent(blockEntity.getType(), providers::collect);
+        }
+    }
+
+    /**
+     * Gets the providers that may provide devices for stacks of the specified item.
+     *
+     * @param item the item of the queried stack.
+     * @return the providers to query, in registry order.
+     */
+    static List<ItemDeviceProvider> getItemDeviceProviders(final Item item) {
+        final IForgeRegistry<ItemDeviceProvider> registry = Providers.itemDeviceProviderRegistry();
+        ItemProviders providers = itemProviders;
+        if (providers == null || providers.registry != registry) {
+            providers = new ItemProviders(registry);
+            itemProviders = providers;
+            ENERGY_CONSUMPTION.clear();
+        }
+
+        return providers.byItem.computeIfAbsent(item, providers::collect);
+    }
+
+    /**
+     * Gets the cached energy consumption of an item stack, computing it if necessary.
+     * <p>
+     * Only valid for values that depend on nothing but the item and its tag.
+     *
+     * @param stack   the stack to get the energy consumption for.
+     * @param compute computes the energy consumption if it is not cached.
+     * @return the energy consumption of the stack.
+     */
+    static int getEnergyConsumption(final ItemStack stack, final ToIntFunction<ItemStack> compute) {
+        final Integer cached = ENERGY_CONSUMPTION.get(new EnergyConsumptionKey(stack.getItem(), stack.getTag()));
+        if (cached != null) {
+            return cached;
+        }
+
+        final int energyConsumption = compute.applyAsInt(stack);
+
+        if (ENERGY_CONSUMPTION.size() >= MAX_CACHED_ENERGY_CONSUMPTION_COUNT) {
+            ENERGY_CONSUMPTION.clear();
+        }
+        final CompoundTag tag = stack.getTag();
+        ENERGY_CONSUMPTION.put(new EnergyConsumptionKey(stack.getItem(), tag != null ? tag.copy() : null), energyConsumption);
+
+        return energyConsumption;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final class BlockProviders {
+        final IForgeRegistry<BlockDeviceProvider> registry;
+        final List<BlockDeviceProvider> all;
+        final List<BlockDeviceProvider> withoutBlockEntity = new ArrayList<>();
+        final ConcurrentHashMap<BlockEntityType<?>, List<BlockDeviceProvider>> byBlockEntityType = new ConcurrentHashMap<>();
+
+        BlockProviders(final IForgeRegistry<BlockDeviceProvider> registry) {
+            this.registry = registry;
+            this.all = new ArrayList<>(registry.getValues());
+            for (final BlockDeviceProvider provider : all) {
+                if (!(provider instanceof AbstractBlockEntityDeviceProvider<?>)) {
+                    withoutBlockEntity.add(provider);
+                }
+            }
+        }
+
+        List<BlockDeviceProvider> collect(final BlockEntityType<?> type) {
+            final ArrayList<BlockDeviceProvider> result = new ArrayList<>();
+            for (final BlockDeviceProvider provider : all) {
+                if (!(provider instanceof final AbstractBlockEntityDeviceProvider<?> blockEntityProvider) ||
+                    blockEntityProvider.isApplicableTo(type)) {
+                    result.add(provider);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class ItemProviders {
+        final IForgeRegistry<ItemDeviceProvider> registry;
+        final List<ItemDeviceProvider> all;
+        final ConcurrentHashMap<Item, List<ItemDeviceProvider>> byItem = new ConcurrentHashMap<>();
+
+        ItemProviders(final IForgeRegistry<ItemDeviceProvider> registry) {
+            this.registry = registry;
+            this.all = new ArrayList<>(registry.getValues());
+        }
+
+        List<ItemDeviceProvider> collect(final Item item) {
+            final ArrayList<ItemDeviceProvider> result = new ArrayList<>();
+            for (final ItemDeviceProvider provider : all) {
+                if (!(provider instanceof final AbstractItemDeviceProvider itemProvider) ||
+                    itemProvider.isApplicableTo(item)) {
+                    result.add(provider);
+                }
+            }
+            return result;
+        }
+    }
+
+    private record EnergyConsumptionKey(Item item, @Nullable CompoundTag tag) { }
+}
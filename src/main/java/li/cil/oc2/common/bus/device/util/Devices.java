@@ -9,7 +9,6 @@ import li.cil.oc2.api.bus.device.provider.BlockDeviceQuery;
 import li.cil.oc2.api.bus.device.provider.ItemDeviceProvider;
 import li.cil.oc2.api.bus.device.provider.ItemDeviceQuery;
 import li.cil.oc2.api.util.Invalidatable;
-import li.cil.oc2.common.bus.device.provider.Providers;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.world.entity.Entity;
@@ -18,7 +17,6 @@ import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.block.entity.BlockEntity;
-import net.minecraftforge.registries.IForgeRegistry;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
@@ -57,9 +55,9 @@ public final class Devices {
             return Optional.empty();
         }
 
-        final IForgeRegistry<BlockDeviceProvider> registry = Providers.blockDeviceProviderRegistry();
+        final BlockEntity blockEntity = query.getLevel().getBlockEntity(query.getQueryPosition());
         final ArrayList<Invalidatable<BlockDeviceInfo>> devices = new ArrayList<>();
-        for (final BlockDeviceProvider provider : registry.getValues()) {
+        for (final BlockDeviceProvider provider : DeviceProviderIndex.getBlockDeviceProviders(blockEntity)) {
             final Invalidatable<Device> device = provider.getDevice(query);
             if (device.isPresent()) {
                 devices.add(device.mapWithDependency(d -> new BlockDeviceInfo(provider, d)));
@@ -74,9 +72,8 @@ public final class Devices {
             return Collections.emptyList();
         }
 
-        final IForgeRegistry<ItemDeviceProvider> registry = Providers.itemDeviceProviderRegistry();
         final ArrayList<ItemDeviceInfo> devices = new ArrayList<>();
-        for (final ItemDeviceProvider provider : registry.getValues()) {
+        for (final ItemDeviceProvider provider : DeviceProviderIndex.getItemDeviceProviders(query.getItemStack().getItem())) {
             final Optional<ItemDevice> device = provider.getDevice(query);
             device.ifPresent(d -> devices.add(new ItemDeviceInfo(provider, d, provider.getEnergyConsumption(query))));
         }
@@ -84,13 +81,24 @@ public final class Devices {
     }
 
     public static int getEnergyConsumption(final ItemDeviceQuery query) {
-        if (query.getItemStack().isEmpty()) {
+        final ItemStack stack = query.getItemStack();
+        if (stack.isEmpty()) {
             return 0;
         }
 
-        final IForgeRegistry<ItemDeviceProvider> registry = Providers.itemDeviceProviderRegistry();
+        // Without a container, the energy consumption only depends on the stack, so it can be cached.
+        if (query.getContainerBlockEntity().isEmpty() && query.getContainerEntity().isEmpty()) {
+            return DeviceProviderIndex.getEnergyConsumption(stack, unused -> computeEnergyConsumption(query));
+        } else {
+            return computeEnergyConsumption(query);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static int computeEnergyConsumption(final ItemDeviceQuery query) {
         long accumulator = 0;
-        for (final ItemDeviceProvider provider : registry.getValues()) {
+        for (final ItemDeviceProvider provider : DeviceProviderIndex.getItemDeviceProviders(query.getItemStack().getItem())) {
             accumulator += Math.max(0, provider.getEnergyConsumption(query));
         }
         if (accumulator > Integer.MAX_VALUE) {
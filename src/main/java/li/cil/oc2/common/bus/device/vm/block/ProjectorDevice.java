@@ -20,6 +20,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.BitSet;
 import java.util.UUID;
 
 public final class ProjectorDevice extends IdentityProxy<BlockEntity> implements VMDevice {
@@ -54,9 +55,9 @@ public final class ProjectorDevice extends IdentityProxy<BlockEntity> implements
         return framebufferDevice != null && framebufferDevice.hasChanges();
     }
 
-    public boolean applyChanges(final Picture picture) {
+    public boolean applyChanges(final Picture picture, final BitSet changedMacroblocks) {
         final SimpleFramebufferDevice framebufferDevice = device;
-        return framebufferDevice != null && framebufferDevice.applyChanges(picture);
+        return framebufferDevice != null && framebufferDevice.applyChanges(picture, changedMacroblocks);
     }
 
     @Override
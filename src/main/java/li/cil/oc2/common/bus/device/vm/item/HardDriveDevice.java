@@ -6,6 +6,7 @@ import li.cil.oc2.common.serialization.BlobStorage;
 import li.cil.oc2.common.util.BlockLocation;
 import li.cil.oc2.common.util.SoundEvents;
 import li.cil.oc2.common.util.ThrottledSoundEmitter;
+import li.cil.sedna.api.device.BlockDevice;
 import li.cil.sedna.device.block.ByteBufferBlockDevice;
 import net.minecraft.world.item.ItemStack;
 
@@ -17,7 +18,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
-public class HardDriveDevice extends AbstractBlockStorageDevice<ByteBufferBlockDevice, ItemStack> {
+public class HardDriveDevice extends AbstractBlockStorageDevice<BlockDevice, ItemStack> {
     private final int size;
     private final ThrottledSoundEmitter soundEmitter;
 
@@ -33,14 +34,12 @@ public class HardDriveDevice extends AbstractBlockStorageDevice<ByteBufferBlockD
     ///////////////////////////////////////////////////////////////////
 
     @Override
-    protected CompletableFuture<ByteBufferBlockDevice> createBlockDevice() {
+    protected CompletableFuture<BlockDevice> createBlockDevice() {
         blobHandle = BlobStorage.validateHandle(blobHandle);
 
         return CompletableFuture.supplyAsync(() -> {
             try {
-                final FileChannel channel = BlobStorage.getOrOpen(blobHandle);
-                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
-                return ByteBufferBlockDevice.wrap(buffer, readonly);
+                return openBlockDevice(BlobStorage.getOrOpen(blobHandle));
             } catch (final IOException e) {
                 throw new RuntimeException(e);
             }
@@ -51,4 +50,9 @@ public class HardDriveDevice extends AbstractBlockStorageDevice<ByteBufferBlockD
     protected void handleDataAccess() {
         soundEmitter.play();
     }
+
+    protected BlockDevice openBlockDevice(final FileChannel channel) throws IOException {
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return ByteBufferBlockDevice.wrap(buffer, readonly);
+    }
 }
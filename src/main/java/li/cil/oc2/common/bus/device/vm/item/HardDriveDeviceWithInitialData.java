@@ -2,17 +2,15 @@
 
 package li.cil.oc2.common.bus.device.vm.item;
 
-import com.google.common.io.ByteStreams;
+import li.cil.oc2.common.serialization.SparseBlob;
 import li.cil.oc2.common.util.BlockLocation;
+import li.cil.oc2.common.vm.device.CopyOnWriteBlockDevice;
 import li.cil.sedna.api.device.BlockDevice;
-import li.cil.sedna.device.block.ByteBufferBlockDevice;
 import net.minecraft.world.item.ItemStack;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 public final class HardDriveDeviceWithInitialData extends HardDriveDevice {
@@ -28,20 +26,25 @@ public final class HardDriveDeviceWithInitialData extends HardDriveDevice {
     ///////////////////////////////////////////////////////////////////
 
     @Override
-    protected CompletableFuture<ByteBufferBlockDevice> createBlockDevice() {
-        final boolean isInitializing = blobHandle == null;
-        return super.createBlockDevice().thenApplyAsync(device -> {
-            if (isInitializing) {
-                try {
-                    try (final InputStream input = base.getInputStream(0);
-                         final OutputStream output = device.getOutputStream(0)) {
-                        ByteStreams.copy(input, output);
-                    }
-                } catch (final IOException e) {
-                    throw new RuntimeException(e);
-                }
+    protected BlockDevice openBlockDevice(final FileChannel channel) throws IOException {
+        final SparseBlob overlay;
+        if (channel.size() == 0) {
+            overlay = SparseBlob.create(channel, CopyOnWriteBlockDevice.BLOCK_SIZE,
+                CopyOnWriteBlockDevice.getBlockCount(base), CopyOnWriteBlockDevice.getFingerprint(base));
+        } else if (SparseBlob.isSparseBlob(channel)) {
+            overlay = SparseBlob.open(channel);
+            if (overlay.getTag() != CopyOnWriteBlockDevice.getFingerprint(base)) {
+                LOGGER.warn("Base image of hard drive [{}] changed, its contents may be inconsistent.", blobHandle);
             }
-            return device;
-        }, WORKERS);
+        } else {
+            // Drives created before overlays were introduced hold a full copy of the base image.
+            return super.openBlockDevice(channel);
+        }
+
+        try {
+            return new CopyOnWriteBlockDevice(base, overlay, readonly);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException(e);
+        }
     }
 }
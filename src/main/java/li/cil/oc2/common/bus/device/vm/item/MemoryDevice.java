@@ -10,18 +10,23 @@ import li.cil.oc2.common.Constants;
 import li.cil.oc2.common.bus.device.util.IdentityProxy;
 import li.cil.oc2.common.bus.device.util.OptionalAddress;
 import li.cil.oc2.common.serialization.BlobStorage;
+import li.cil.oc2.common.serialization.PageLog;
+import li.cil.oc2.common.serialization.SparseBlob;
 import li.cil.oc2.common.util.NBTTagIds;
-import li.cil.sedna.api.device.PhysicalMemory;
-import li.cil.sedna.device.memory.ByteBufferMemory;
+import li.cil.oc2.common.vm.device.SparseMemory;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.world.item.ItemStack;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDevice, ItemDevice {
     private static final Logger LOGGER = LogManager.getLogger();
@@ -29,10 +34,20 @@ public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDe
     private static final String BLOB_HANDLE_TAG_NAME = "blob";
     private static final String ADDRESS_TAG_NAME = "address";
 
+    private static final ExecutorService SNAPSHOT_WRITERS = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), r -> {
+            final Thread thread = new Thread(r, "Memory Snapshot Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
     ///////////////////////////////////////////////////////////////
 
     private final int size;
-    private PhysicalMemory device;
+    private SparseMemory device;
+    @Nullable private PageLog log;
+    private CompletableFuture<Void> pendingSnapshot = CompletableFuture.completedFuture(null);
+    private volatile boolean needsFullSnapshot; // Set when writing a snapshot failed.
 
     ///////////////////////////////////////////////////////////////
 
@@ -63,6 +78,8 @@ public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDe
 
     @Override
     public void unmount() {
+        saveDevice();
+        joinPendingSnapshot();
         closeDevice();
 
         if (blobHandle != null) {
@@ -73,6 +90,7 @@ public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDe
     @Override
     public void dispose() {
         // Memory is volatile, so free up our persisted blob when device is disposed.
+        joinPendingSnapshot();
         if (blobHandle != null) {
             BlobStorage.delete(blobHandle);
             blobHandle = null;
@@ -83,6 +101,8 @@ public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDe
 
     @Override
     public CompoundTag serializeNBT() {
+        saveDevice();
+
         final CompoundTag tag = new CompoundTag();
 
         if (blobHandle != null) {
@@ -112,30 +132,100 @@ public final class MemoryDevice extends IdentityProxy<ItemStack> implements VMDe
             return false;
         }
 
+        joinPendingSnapshot();
+
         try {
             blobHandle = BlobStorage.validateHandle(blobHandle);
             final FileChannel channel = BlobStorage.getOrOpen(blobHandle);
-            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
-            device = new ByteBufferMemory(size, buffer);
+            final PageLog.Storage storage = new BlobPageLogStorage(blobHandle);
+            final int pageCount = SparseMemory.getPageCount(size);
+            device = new SparseMemory(size);
+            if (PageLog.isPageLog(channel)) {
+                log = PageLog.open(storage, SparseMemory.PAGE_SIZE, pageCount, device::restore);
+            } else {
+                // Convert memory persisted in one of the older formats.
+                if (SparseBlob.isSparseBlob(channel)) {
+                    device.readFrom(SparseBlob.open(channel));
+                } else if (channel.size() > 0) {
+                    device.readFromContiguous(channel);
+                }
+                // The converted data is only replaced once the new log has been committed.
+                log = PageLog.create(storage, SparseMemory.PAGE_SIZE, pageCount);
+                final SparseMemory.Snapshot snapshot = device.snapshot(true);
+                log.write(snapshot.indices(), snapshot.pages(), true);
+            }
         } catch (final IOException e) {
             LOGGER.error(e);
+            device = null;
+            log = null;
             return false;
         }
 
         return true;
     }
 
-    private void closeDevice() {
-        if (device == null) {
+    private void saveDevice() {
+        if (device == null || log == null) {
             return;
         }
 
+        // Copy changed pages now, while the VM is paused, so we get a consistent state. Compressing
+        // and writing them happens in the background, so saving does not stall the server.
+        final PageLog log = this.log;
+        final boolean full = needsFullSnapshot || log.shouldCompact();
+        final SparseMemory.Snapshot snapshot = device.snapshot(full);
+        if (!full && snapshot.indices().length == 0) {
+            return;
+        }
+
+        needsFullSnapshot = false;
+        pendingSnapshot = pendingSnapshot.thenRunAsync(() -> {
+            try {
+                log.write(snapshot.indices(), snapshot.pages(), full);
+            } catch (final IOException e) {
+                LOGGER.error(e);
+
+                // Taking the snapshot cleared the dirty state of its pages, so the next snapshot
+                // has to include all pages for them to be persisted.
+                needsFullSnapshot = true;
+            }
+        }, SNAPSHOT_WRITERS);
+    }
+
+    private void joinPendingSnapshot() {
         try {
-            device.close();
-        } catch (final Exception e) {
+            pendingSnapshot.join();
+        } catch (final CompletionException e) {
             LOGGER.error(e);
         }
+    }
 
+    private void closeDevice() {
+        if (device == null) {
+            return;
+        }
+
+        device.close();
         device = null;
+        log = null;
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private record BlobPageLogStorage(UUID handle) implements PageLog.Storage {
+        @Override
+        public FileChannel getChannel() throws IOException {
+            return BlobStorage.getOrOpen(handle);
+        }
+
+        @Override
+        public FileChannel createReplacement() throws IOException {
+            return BlobStorage.createReplacement(handle);
+        }
+
+        @Override
+        public FileChannel commitReplacement() throws IOException {
+            return BlobStorage.commitReplacement(handle);
+        }
     }
 }
@@ -7,9 +7,14 @@ import com.google.common.collect.HashBiMap;
 import li.cil.oc2.api.bus.device.vm.VMDeviceLoadResult;
 import li.cil.oc2.api.bus.device.vm.context.VMContext;
 import li.cil.oc2.api.capabilities.NetworkInterface;
+import li.cil.oc2.common.Config;
+import li.cil.oc2.common.Constants;
+import li.cil.oc2.common.ethernet.EthernetFabric;
+import li.cil.oc2.common.ethernet.EthernetLink;
 import li.cil.oc2.common.item.NetworkTunnelItem;
-import li.cil.oc2.common.util.TickUtils;
 import net.minecraft.core.Direction;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.world.item.ItemStack;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.util.LazyOptional;
@@ -20,7 +25,6 @@ import net.minecraftforge.fml.common.Mod;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.time.Duration;
 import java.util.*;
 
 public final class NetworkTunnelDevice extends AbstractNetworkInterfaceDevice {
@@ -56,20 +60,23 @@ public final class NetworkTunnelDevice extends AbstractNetworkInterfaceDevice {
 
     @Mod.EventBusSubscriber
     private static final class TunnelManager {
-        private static final int BYTES_PER_TICK = 32 * 1024 / TickUtils.toTicks(Duration.ofSeconds(1)); // bytes / sec -> bytes / tick
-        private static final int MIN_ETHERNET_FRAME_SIZE = 42;
-
         private static final BiMap<UUID, Set<NetworkInterface>> TUNNELS = HashBiMap.create();
+        private static final Map<NetworkInterface, EthernetLink> LINKS = new HashMap<>();
 
         public static void registerEndpoint(final UUID id, final NetworkInterface networkInterface) {
             TUNNELS.computeIfAbsent(id, unused -> new HashSet<>())
                 .add(networkInterface);
+            final Component description = new TranslatableComponent(Constants.COMMAND_NETWORK_TUNNEL_DESCRIPTION, id.toString());
+            LINKS.computeIfAbsent(networkInterface, unused -> EthernetFabric.createLink(
+                () -> Config.tunnelBytesPerSecond, () -> Config.tunnelBurstBytes, () -> description));
+            EthernetFabric.getPort(networkInterface).setDescription(description);
         }
 
         public static void unregisterEndpoint(final NetworkInterface networkInterface) {
             for (final Set<NetworkInterface> tunnel : TUNNELS.values()) {
                 tunnel.remove(networkInterface);
             }
+            LINKS.remove(networkInterface);
         }
 
         @SubscribeEvent
@@ -82,6 +89,7 @@ public final class NetworkTunnelDevice extends AbstractNetworkInterfaceDevice {
         @SubscribeEvent
         public static void handleServerStopped(final ServerStoppedEvent event) {
             TUNNELS.clear();
+            LINKS.clear();
         }
 
         private static void pumpMessages() {
@@ -98,15 +106,23 @@ public final class NetworkTunnelDevice extends AbstractNetworkInterfaceDevice {
 
         private static void pumpMessages(final Collection<NetworkInterface> tunnel) {
             for (final NetworkInterface source : tunnel) {
-                int byteBudget = BYTES_PER_TICK;
+                final EthernetLink link = LINKS.get(source);
+                if (link == null) {
+                    continue;
+                }
+
+                link.tick();
                 byte[] frame;
-                while ((frame = source.readEthernetFrame()) != null && byteBudget > 0) {
-                    byteBudget -= Math.max(frame.length, MIN_ETHERNET_FRAME_SIZE); // Avoid bogus packets messing with us.
+                while (link.canSend() && (frame = source.readEthernetFrame()) != null) {
+                    // Queue frames in the destinations' ports like any other network traffic, so
+                    // they are delivered in the fabric's batch and show up in its statistics.
+                    boolean delivered = false;
                     for (final NetworkInterface destination : tunnel) {
                         if (destination != source) {
-                            destination.writeEthernetFrame(source, frame, 1);
+                            delivered |= EthernetFabric.getPort(destination).offer(source, frame, 1);
                         }
                     }
+                    link.record(frame, delivered);
                 }
             }
         }
@@ -0,0 +1,197 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.command;
+
+import com.mojang.authlib.GameProfile;
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import li.cil.oc2.api.API;
+import li.cil.oc2.common.Config;
+import li.cil.oc2.common.Constants;
+import li.cil.oc2.common.ethernet.EthernetFabric;
+import li.cil.oc2.common.ethernet.EthernetLink;
+import li.cil.oc2.common.ethernet.EthernetPort;
+import li.cil.oc2.common.vm.AbstractVirtualMachine;
+import li.cil.oc2.common.vm.Allocator;
+import li.cil.oc2.common.vm.VMMetrics;
+import li.cil.oc2.common.vm.VMProfiler;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Administrative commands, available under {@code /oc2}.
+ */
+@Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class ModCommands {
+    private static final int ADMIN_PERMISSION_LEVEL = 2;
+    private static final int DEFAULT_TOP_COUNT = 10;
+    private static final int MAX_TOP_COUNT = 100;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @SubscribeEvent
+    public static void handleRegisterCommands(final RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(API.MOD_ID)
+            .requires(source -> source.hasPermission(ADMIN_PERMISSION_LEVEL))
+            .then(createVirtualMachineCommand())
+            .then(createNetworkCommand())
+            .then(createMemoryCommand()));
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static LiteralArgumentBuilder<CommandSourceStack> createVirtualMachineCommand() {
+        return Commands.literal("vm")
+            .then(Commands.literal("top")
+                .executes(context -> listTopVirtualMachines(context.getSource(), DEFAULT_TOP_COUNT))
+                .then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_TOP_COUNT))
+                    .executes(context -> listTopVirtualMachines(context.getSource(), IntegerArgumentType.getInteger(context, "count")))));
+    }
+
+    private static LiteralArgumentBuilder<CommandSourceStack> createNetworkCommand() {
+        return Commands.literal("network")
+            .then(Commands.literal("top")
+                .executes(context -> listTopNetworkPorts(context.getSource(), DEFAULT_TOP_COUNT))
+                .then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_TOP_COUNT))
+                    .executes(context -> listTopNetworkPorts(context.getSource(), IntegerArgumentType.getInteger(context, "count")))))
+            .then(Commands.literal("links")
+                .executes(context -> listTopNetworkLinks(context.getSource(), DEFAULT_TOP_COUNT))
+                .then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_TOP_COUNT))
+                    .executes(context -> listTopNetworkLinks(context.getSource(), IntegerArgumentType.getInteger(context, "count")))));
+    }
+
+    private static LiteralArgumentBuilder<CommandSourceStack> createMemoryCommand() {
+        return Commands.literal("memory")
+            .executes(context -> listMemoryUsage(context.getSource(), DEFAULT_TOP_COUNT))
+            .then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_TOP_COUNT))
+                .executes(context -> listMemoryUsage(context.getSource(), IntegerArgumentType.getInteger(context, "count"))));
+    }
+
+    private static int listTopVirtualMachines(final CommandSourceStack source, final int count) {
+        final List<AbstractVirtualMachine> virtualMachines = VMProfiler.getTopByHostTime(count);
+        if (virtualMachines.isEmpty()) {
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_VM_TOP_EMPTY), false);
+            return 0;
+        }
+
+        source.sendSuccess(new TranslatableComponent(Constants.COMMAND_VM_TOP_HEADER, virtualMachines.size(), VMProfiler.getRunningCount()), false);
+        for (int i = 0; i < virtualMachines.size(); i++) {
+            final AbstractVirtualMachine virtualMachine = virtualMachines.get(i);
+            final VMMetrics metrics = virtualMachine.metrics;
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_VM_TOP_ENTRY,
+                i + 1,
+                virtualMachine.getDescription(),
+                String.format("%.2f", metrics.getAverageBusyNanosPerTick() / 1_000_000.0),
+                String.format("%.2f", metrics.getAverageCyclesPerTick() * Constants.SECONDS_TO_TICKS / 1_000_000.0),
+                metrics.getOverrunSliceCount(),
+                metrics.getRpcMessageCount(),
+                metrics.getUartBytesIn(),
+                metrics.getUartBytesOut()), false);
+        }
+
+        return virtualMachines.size();
+    }
+
+    private static int listTopNetworkPorts(final CommandSourceStack source, final int count) {
+        final List<EthernetPort> ports = EthernetFabric.getTopByDroppedFrames(count);
+        if (ports.isEmpty()) {
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_TOP_EMPTY), false);
+            return 0;
+        }
+
+        source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_TOP_HEADER, ports.size(), EthernetFabric.getPortCount()), false);
+        for (int i = 0; i < ports.size(); i++) {
+            final EthernetPort port = ports.get(i);
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_TOP_ENTRY,
+                i + 1,
+                port.getDescription(),
+                port.getQueuedFrameCount(),
+                port.getCapacity(),
+                port.getDeliveredFrameCount(),
+                port.getDroppedFrameCount()), false);
+        }
+
+        return ports.size();
+    }
+
+    private static int listTopNetworkLinks(final CommandSourceStack source, final int count) {
+        final List<EthernetLink> links = EthernetFabric.getTopBySentBytes(count);
+        if (links.isEmpty()) {
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_LINKS_EMPTY), false);
+            return 0;
+        }
+
+        source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_LINKS_HEADER, links.size(), EthernetFabric.getLinkCount()), false);
+        for (int i = 0; i < links.size(); i++) {
+            final EthernetLink link = links.get(i);
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_NETWORK_LINKS_ENTRY,
+                i + 1,
+                link.getDescription(),
+                link.getSentFrameCount(),
+                link.getSentByteCount(),
+                link.getDroppedFrameCount(),
+                link.getDroppedByteCount()), false);
+        }
+
+        return links.size();
+    }
+
+    private static int listMemoryUsage(final CommandSourceStack source, final int count) {
+        source.sendSuccess(new TranslatableComponent(Constants.COMMAND_MEMORY_TOTAL,
+            toMegabytes(Allocator.getAllocated()),
+            toMegabytes(Config.maxAllocatedMemory)), false);
+
+        final Map<ResourceKey<Level>, Long> byDimension = Allocator.getAllocatedByDimension();
+        if (!byDimension.isEmpty()) {
+            listTopMemoryUsage(source, Constants.COMMAND_MEMORY_DIMENSIONS_HEADER, byDimension, count,
+                dimension -> dimension.location().toString(), Config.maxAllocatedMemoryPerDimension);
+        }
+
+        final Map<UUID, Long> byOwner = Allocator.getAllocatedByOwner();
+        if (!byOwner.isEmpty()) {
+            listTopMemoryUsage(source, Constants.COMMAND_MEMORY_OWNERS_HEADER, byOwner, count,
+                owner -> source.getServer().getProfileCache().get(owner).map(GameProfile::getName).orElse(owner.toString()),
+                Config.maxAllocatedMemoryPerOwner);
+        }
+
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static <T> void listTopMemoryUsage(final CommandSourceStack source, final String header, final Map<T, Long> allocated,
+                                               final int count, final Function<T, String> nameGetter, final long limit) {
+        final List<Map.Entry<T, Long>> entries = allocated.entrySet().stream()
+            .sorted(Map.Entry.<T, Long>comparingByValue(Comparator.reverseOrder()))
+            .limit(count)
+            .toList();
+
+        // Non-positive limits mean only the global limit applies.
+        final String limitInMegabytes = toMegabytes(limit > 0 ? limit : Config.maxAllocatedMemory);
+
+        source.sendSuccess(new TranslatableComponent(header, entries.size(), allocated.size()), false);
+        for (int i = 0; i < entries.size(); i++) {
+            final Map.Entry<T, Long> entry = entries.get(i);
+            source.sendSuccess(new TranslatableComponent(Constants.COMMAND_MEMORY_ENTRY,
+                i + 1,
+                nameGetter.apply(entry.getKey()),
+                toMegabytes(entry.getValue()),
+                limitInMegabytes), false);
+        }
+    }
+
+    private static String toMegabytes(final long bytes) {
+        return String.format("%.1f", bytes / (double) Constants.MEGABYTE);
+    }
+}
@@ -36,6 +36,7 @@ import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TranslatableComponent;
 import net.minecraft.network.protocol.Packet;
 import net.minecraft.network.syncher.EntityDataAccessor;
 import net.minecraft.network.syncher.EntityDataSerializers;
@@ -95,6 +96,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
     private static final String COMMAND_PROCESSOR_TAG_NAME = "commands";
     private static final String INVENTORY_TAG_NAME = "inventory";
     private static final String SELECTED_SLOT_TAG_NAME = "selected_slot";
+    private static final String OWNER_TAG_NAME = "owner";
 
     private static final int MAX_QUEUED_ACTIONS = 16;
     private static final int MAX_QUEUED_RESULTS = 16;
@@ -114,6 +116,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
     private final AnimationState animationState = new AnimationState();
     private final RobotActionProcessor actionProcessor = new RobotActionProcessor();
     private final Terminal terminal = new Terminal();
+    private final RobotTerminalSynchronizer terminalSynchronizer = new RobotTerminalSynchronizer(terminal);
     private final RobotVirtualMachine virtualMachine;
     private final RobotBusElement busElement = new RobotBusElement();
     private final RobotItemStackHandlers deviceItems = new RobotItemStackHandlers();
@@ -121,6 +124,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
     private final ItemStackHandler inventory = new FixedSizeItemStackHandler(INVENTORY_SIZE);
     private final Set<Player> terminalUsers = Collections.newSetFromMap(new WeakHashMap<>());
     private long lastPistonMovement;
+    @Nullable private UUID owner;
 
     ///////////////////////////////////////////////////////////////////
 
@@ -153,6 +157,10 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
         return deviceItems;
     }
 
+    public void setOwner(@Nullable final UUID value) {
+        owner = value;
+    }
+
     @Override
     public ItemStackHandler getInventory() {
         return inventory;
@@ -272,6 +280,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
 
         if (!isClient) {
             virtualMachine.tick();
+            terminalSynchronizer.tick(terminalUsers);
         }
 
         actionProcessor.tick();
@@ -422,6 +431,9 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
         tag.put(ENERGY_TAG_NAME, energy.serializeNBT());
         tag.put(INVENTORY_TAG_NAME, inventory.serializeNBT());
         tag.putByte(SELECTED_SLOT_TAG_NAME, getEntityData().get(SELECTED_SLOT));
+        if (owner != null) {
+            tag.putUUID(OWNER_TAG_NAME, owner);
+        }
     }
 
     @Override
@@ -435,6 +447,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
         energy.deserializeNBT(tag.getCompound(ENERGY_TAG_NAME));
         inventory.deserializeNBT(tag.getCompound(INVENTORY_TAG_NAME));
         setSelectedSlot(tag.getByte(SELECTED_SLOT_TAG_NAME));
+        owner = tag.hasUUID(OWNER_TAG_NAME) ? tag.getUUID(OWNER_TAG_NAME) : null;
     }
 
     @Override
@@ -794,8 +807,29 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
         }
 
         @Override
-        protected void sendTerminalUpdateToClient(final ByteBuffer output) {
-            Network.sendToClientsTrackingEntity(new RobotTerminalOutputMessage(Robot.this, output), Robot.this);
+        protected void putTerminalOutput(final ByteBuffer output) {
+            terminalSynchronizer.putOutput(output);
+        }
+    }
+
+    private final class RobotTerminalSynchronizer extends TerminalSynchronizer {
+        public RobotTerminalSynchronizer(final Terminal terminal) {
+            super(terminal);
+        }
+
+        @Override
+        protected void sendOutput(final ByteBuffer output, final Collection<ServerPlayer> players) {
+            Network.sendToClients(new RobotTerminalOutputMessage(Robot.this, output), players);
+        }
+
+        @Override
+        protected void sendState(final CompoundTag state, final Collection<ServerPlayer> players) {
+            Network.sendToClients(new RobotTerminalStateMessage(Robot.this, state), players);
+        }
+
+        @Override
+        protected void sendLines(final ByteBuffer lines) {
+            Network.sendToClientsTrackingEntity(new RobotTerminalLinesMessage(Robot.this, lines), Robot.this);
         }
     }
 
@@ -805,6 +839,16 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
             state.vmAdapter.setBaseAddressProvider(deviceItems::getDeviceAddressBase);
         }
 
+        @Override
+        public Component getDescription() {
+            return new TranslatableComponent(COMMAND_VM_DESCRIPTION, Robot.this.getDisplayName(), blockPosition().toShortString(), level.dimension().location().toString());
+        }
+
+        @Override
+        protected Allocator.Account getMemoryAccount() {
+            return new Allocator.Account(level.dimension(), owner);
+        }
+
         @Override
         protected boolean consumeEnergy(final int amount, final boolean simulate) {
             if (!Config.robotsUseEnergy()) {
@@ -823,8 +867,7 @@ public final class Robot extends Entity implements li.cil.oc2.api.capabilities.R
         protected void stopRunnerAndReset() {
             super.stopRunnerAndReset();
 
-            TerminalUtils.resetTerminal(terminal, output -> Network.sendToClientsTrackingEntity(
-                new RobotTerminalOutputMessage(Robot.this, output), Robot.this));
+            TerminalUtils.resetTerminal(terminalSynchronizer);
 
             actionProcessor.clear();
         }
@@ -0,0 +1,60 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import li.cil.oc2.api.capabilities.NetworkInterface;
+import net.minecraft.network.chat.Component;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * A network interface that connects other network interfaces, such as network hubs and network
+ * connectors.
+ * <p>
+ * Connected bridges form a {@link NetworkSegment}, which delivers frames directly to all non-bridge
+ * network interfaces in the segment, instead of bridges forwarding frames to each other.
+ */
+public interface EthernetBridge extends NetworkInterface {
+    /**
+     * Passes all network interfaces directly connected to this bridge to the specified consumer.
+     * This includes other bridges.
+     *
+     * @param consumer the consumer to pass connected network interfaces to.
+     */
+    void collectConnectedInterfaces(Consumer<NetworkInterface> consumer);
+
+    /**
+     * A description of this bridge, e.g. its location, used to identify the ports of network
+     * interfaces connected to it.
+     *
+     * @return the description of this bridge.
+     */
+    Component getDescription();
+
+    /**
+     * The segment this bridge was last assigned to, if any. May be invalid.
+     *
+     * @return the segment of this bridge.
+     */
+    @Nullable
+    NetworkSegment getSegment();
+
+    /**
+     * Assigns this bridge to a segment. Called when building a segment.
+     *
+     * @param segment the segment this bridge is now part of.
+     */
+    void setSegment(NetworkSegment segment);
+
+    /**
+     * Invalidates the segment this bridge is part of. Must be called whenever the interfaces
+     * connected to this bridge change.
+     */
+    default void invalidateSegment() {
+        final NetworkSegment segment = getSegment();
+        if (segment != null) {
+            segment.invalidate();
+        }
+    }
+}
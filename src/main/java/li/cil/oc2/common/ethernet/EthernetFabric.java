@@ -0,0 +1,136 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import li.cil.oc2.api.API;
+import li.cil.oc2.api.capabilities.NetworkInterface;
+import li.cil.oc2.common.Config;
+import net.minecraft.network.chat.Component;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Delivers ethernet frames to network interfaces in a batch, once per server tick.
+ * <p>
+ * Frames sent through the network are queued in the {@link EthernetPort} of their destination
+ * interface, and delivered at the end of the server tick. This way, sending a frame only has to
+ * queue it, so forwarding frames does not add to the tick time of the block entity doing so.
+ * <p>
+ * Ports are created on demand and kept for as long as their network interface exists, so that the
+ * statistics of a port survive changes in the network topology.
+ * <p>
+ * The fabric also keeps track of the {@link EthernetLink}s frames are sent into the network through,
+ * so their statistics can be inspected.
+ */
+@Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class EthernetFabric {
+    private static final WeakHashMap<NetworkInterface, EthernetPort> PORTS = new WeakHashMap<>();
+    private static final ArrayDeque<EthernetPort> PENDING_PORTS = new ArrayDeque<>();
+    private static final Set<EthernetLink> LINKS = Collections.newSetFromMap(new WeakHashMap<>());
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the port of the specified network interface, creating it if necessary.
+     *
+     * @param networkInterface the network interface to get the port for.
+     * @return the port of the network interface.
+     */
+    public static EthernetPort getPort(final NetworkInterface networkInterface) {
+        return PORTS.computeIfAbsent(networkInterface, unused ->
+            new EthernetPort(networkInterface, Math.max(1, Config.ethernetPortQueueCapacity)));
+    }
+
+    /**
+     * Creates a new, bandwidth limited link frames can be sent into the network through.
+     *
+     * @param bytesPerSecond the rate the link's bandwidth is refilled at, in bytes per second.
+     * @param burstBytes     the maximum number of bytes that may be sent in a burst.
+     * @param description    a description of the link, for display purposes.
+     * @return the new link.
+     */
+    public static EthernetLink createLink(final IntSupplier bytesPerSecond, final IntSupplier burstBytes, final Supplier<Component> description) {
+        final EthernetLink link = new EthernetLink(bytesPerSecond, burstBytes, description);
+        LINKS.add(link);
+        return link;
+    }
+
+    /**
+     * Gets the links with the most sent bytes.
+     *
+     * @param count the maximum number of links to return.
+     * @return the list of links, in descending order of sent bytes.
+     */
+    public static List<EthernetLink> getTopBySentBytes(final int count) {
+        final ArrayList<EthernetLink> links = new ArrayList<>(LINKS);
+        links.sort(Comparator.comparingLong(EthernetLink::getSentByteCount).reversed());
+        return links.subList(0, Math.min(count, links.size()));
+    }
+
+    /**
+     * The number of links currently in use.
+     *
+     * @return the number of links.
+     */
+    public static int getLinkCount() {
+        return LINKS.size();
+    }
+
+    /**
+     * Gets the ports with the most dropped frames.
+     *
+     * @param count the maximum number of ports to return.
+     * @return the list of ports, in descending order of dropped frames.
+     */
+    public static List<EthernetPort> getTopByDroppedFrames(final int count) {
+        final ArrayList<EthernetPort> ports = new ArrayList<>(PORTS.values());
+        ports.sort(Comparator.comparingLong(EthernetPort::getDroppedFrameCount).reversed());
+        return ports.subList(0, Math.min(count, ports.size()));
+    }
+
+    /**
+     * The number of ports currently attached to the fabric.
+     *
+     * @return the number of ports.
+     */
+    public static int getPortCount() {
+        return PORTS.size();
+    }
+
+    @SubscribeEvent
+    public static void handleServerTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            deliverPendingFrames();
+        }
+    }
+
+    @SubscribeEvent
+    public static void handleServerStopped(final ServerStoppedEvent event) {
+        PENDING_PORTS.clear();
+        PORTS.clear();
+        LINKS.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    static void schedule(final EthernetPort port) {
+        PENDING_PORTS.add(port);
+    }
+
+    private static void deliverPendingFrames() {
+        // Delivering frames may cause new frames to be queued, e.g. when the destination is
+        // a bridge, so only deliver what was pending when we started. The rest goes next tick,
+        // ports with newly queued frames schedule themselves again.
+        final ArrayList<EthernetPort> ports = new ArrayList<>(PENDING_PORTS);
+        PENDING_PORTS.clear();
+        for (final EthernetPort port : ports) {
+            port.deliver();
+        }
+    }
+}
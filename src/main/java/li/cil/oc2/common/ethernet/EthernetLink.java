@@ -0,0 +1,118 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import li.cil.oc2.common.Constants;
+import net.minecraft.network.chat.Component;
+
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A bandwidth limited link through which frames are sent into the network.
+ * <p>
+ * Bandwidth is limited using a token bucket. The bucket is refilled at the configured rate every
+ * tick, up to the configured burst size. Frames may be sent as long as the bucket is not empty. The
+ * size of a frame is only known after reading it, so sending a frame may overdraw the bucket, which
+ * is then paid back by subsequent refills. This way, no frames have to be dropped due to a lack of
+ * bandwidth; they simply stay in their source until there is bandwidth again.
+ * <p>
+ * Links count the frames and bytes sent through them, and those that were dropped by the network,
+ * e.g. because all their destinations were congested.
+ */
+public final class EthernetLink {
+    private static final int MIN_ETHERNET_FRAME_SIZE = 42;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final IntSupplier bytesPerSecond;
+    private final IntSupplier burstBytes;
+    private final Supplier<Component> description;
+
+    // Stored in bytes times ticks per second, so fractional per-tick rates do not need rounding.
+    private long tokens;
+
+    private long sentFrameCount, sentByteCount;
+    private long droppedFrameCount, droppedByteCount;
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new link.
+     *
+     * @param bytesPerSecond the rate the link's bandwidth is refilled at, in bytes per second.
+     * @param burstBytes     the maximum number of bytes that may be sent in a burst.
+     * @param description    a description of the link, for display purposes.
+     */
+    EthernetLink(final IntSupplier bytesPerSecond, final IntSupplier burstBytes, final Supplier<Component> description) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        this.description = description;
+        this.tokens = getCapacity();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Refills the link's bandwidth. Must be called once per tick.
+     */
+    public void tick() {
+        tokens = Math.min(getCapacity(), tokens + Math.max(0, bytesPerSecond.getAsInt()));
+    }
+
+    /**
+     * Whether there is bandwidth left to send another frame this tick.
+     *
+     * @return {@code true} if another frame may be sent; {@code false} otherwise.
+     */
+    public boolean canSend() {
+        return tokens > 0;
+    }
+
+    /**
+     * Consumes bandwidth for a frame read from the source of this link, and records whether it was
+     * accepted by the network.
+     *
+     * @param frame     the frame that was sent.
+     * @param delivered {@code true} if the network accepted the frame; {@code false} if it was dropped.
+     */
+    public void record(final byte[] frame, final boolean delivered) {
+        // Avoid bogus packets messing with us.
+        tokens -= (long) Math.max(frame.length, MIN_ETHERNET_FRAME_SIZE) * Constants.SECONDS_TO_TICKS;
+
+        if (delivered) {
+            sentFrameCount++;
+            sentByteCount += frame.length;
+        } else {
+            droppedFrameCount++;
+            droppedByteCount += frame.length;
+        }
+    }
+
+    public Component getDescription() {
+        return description.get();
+    }
+
+    public long getSentFrameCount() {
+        return sentFrameCount;
+    }
+
+    public long getSentByteCount() {
+        return sentByteCount;
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    public long getDroppedByteCount() {
+        return droppedByteCount;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private long getCapacity() {
+        // Always allow at least one full tick's worth, so a burst size below the rate has no effect.
+        return (long) Math.max(Math.max(0, burstBytes.getAsInt()), bytesPerSecond.getAsInt() / Constants.SECONDS_TO_TICKS) * Constants.SECONDS_TO_TICKS;
+    }
+}
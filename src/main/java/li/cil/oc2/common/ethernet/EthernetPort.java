@@ -0,0 +1,131 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import li.cil.oc2.api.capabilities.NetworkInterface;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TextComponent;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * The receiving end of a network interface attached to the {@link EthernetFabric}.
+ * <p>
+ * Frames sent to a network interface are not written to it immediately. Instead, they are queued
+ * in a fixed-size ring buffer in the interface's port, and delivered in a batch by the fabric. When
+ * the ring buffer is full, i.e. the interface is not keeping up, further frames are dropped. The
+ * number of delivered and dropped frames is tracked, so congested ports can be identified.
+ * <p>
+ * Frames are not copied when queued, so the same frame may be queued in many ports at once. This
+ * is safe, since frames are never modified after having been sent.
+ */
+public final class EthernetPort {
+    private final WeakReference<NetworkInterface> destination;
+    private final NetworkInterface[] sources;
+    private final byte[][] frames;
+    private final int[] timesToLive;
+    private int head, count;
+    private boolean isScheduled;
+
+    private Component description = TextComponent.EMPTY;
+    private long deliveredFrameCount;
+    private long droppedFrameCount;
+
+    ///////////////////////////////////////////////////////////////////
+
+    EthernetPort(final NetworkInterface destination, final int capacity) {
+        this.destination = new WeakReference<>(destination);
+        this.sources = new NetworkInterface[capacity];
+        this.frames = new byte[capacity][];
+        this.timesToLive = new int[capacity];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Queues a frame for delivery to the network interface of this port.
+     *
+     * @param source     the interface that forwarded the frame.
+     * @param frame      the frame to deliver.
+     * @param timeToLive the remaining time to live of the frame.
+     * @return {@code true} if the frame was queued; {@code false} if the queue was full and the
+     * frame was dropped.
+     */
+    public boolean offer(final NetworkInterface source, final byte[] frame, final int timeToLive) {
+        if (count == frames.length) {
+            droppedFrameCount++;
+            return false;
+        }
+
+        final int tail = (head + count) % frames.length;
+        sources[tail] = source;
+        frames[tail] = frame;
+        timesToLive[tail] = timeToLive;
+        count++;
+        if (!isScheduled) {
+            isScheduled = true;
+            EthernetFabric.schedule(this);
+        }
+
+        return true;
+    }
+
+    /**
+     * A description of where this port is attached to the network, for display purposes.
+     *
+     * @return the description of this port.
+     */
+    public Component getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the description of where this port is attached to the network.
+     *
+     * @param description the description of this port.
+     */
+    public void setDescription(final Component description) {
+        this.description = description;
+    }
+
+    public int getQueuedFrameCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    public long getDeliveredFrameCount() {
+        return deliveredFrameCount;
+    }
+
+    public long getDroppedFrameCount() {
+        return droppedFrameCount;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    void deliver() {
+        // Frames queued while delivering, e.g. by a bridge forwarding back to us, schedule us again.
+        isScheduled = false;
+
+        final NetworkInterface destination = this.destination.get();
+        for (int remaining = count; remaining > 0; remaining--) {
+            final NetworkInterface source = sources[head];
+            final byte[] frame = frames[head];
+            final int timeToLive = timesToLive[head];
+            sources[head] = null;
+            frames[head] = null;
+            head = (head + 1) % frames.length;
+            count--;
+
+            if (destination != null) {
+                destination.writeEthernetFrame(source, frame, timeToLive);
+                deliveredFrameCount++;
+            } else {
+                droppedFrameCount++;
+            }
+        }
+    }
+}
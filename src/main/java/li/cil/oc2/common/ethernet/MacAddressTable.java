@@ -0,0 +1,149 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * A bounded table of learned MAC addresses, as used by learning bridges.
+ * <p>
+ * Source addresses of frames are associated with the port the frame arrived on. Frames addressed
+ * to a known address can then be forwarded only out of that port, instead of flooding them out of
+ * all ports. Entries expire after not having been seen for a while. When the table is full, the
+ * least recently seen entry is replaced.
+ *
+ * @param <T> the type of the ports frames are received on.
+ */
+public final class MacAddressTable<T> {
+    private static final int MAC_ADDRESS_SIZE = 6;
+    private static final int DESTINATION_OFFSET = 0;
+    private static final int SOURCE_OFFSET = 6;
+    private static final int MIN_FRAME_SIZE = SOURCE_OFFSET + MAC_ADDRESS_SIZE;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final Long2ObjectLinkedOpenHashMap<Entry<T>> entries = new Long2ObjectLinkedOpenHashMap<>();
+    private final int capacity;
+    private final long maxAge;
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new table.
+     *
+     * @param capacity the maximum number of addresses to remember.
+     * @param maxAge   the time after which an address that has not been seen is forgotten.
+     */
+    public MacAddressTable(final int capacity, final long maxAge) {
+        this.capacity = capacity;
+        this.maxAge = maxAge;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Learns the source address of the specified frame.
+     * <p>
+     * An address is only moved to a different port if it was not already seen at the same time.
+     * This way copies of a flooded frame travelling back to us through a loop in the network do
+     * not overwrite the port we saw the frame on first.
+     *
+     * @param frame the frame to learn from.
+     * @param port  the port the frame arrived on.
+     * @param time  the current time.
+     */
+    public void learn(final byte[] frame, final T port, final long time) {
+        if (frame.length < MIN_FRAME_SIZE || isMulticast(frame, SOURCE_OFFSET)) {
+            return;
+        }
+
+        final long address = getAddress(frame, SOURCE_OFFSET);
+        final Entry<T> entry = entries.getAndMoveToLast(address);
+        if (entry != null) {
+            if (entry.port != port && entry.lastSeen == time) {
+                return;
+            }
+            entry.port = port;
+            entry.lastSeen = time;
+            return;
+        }
+
+        if (entries.size() >= capacity) {
+            entries.removeFirst();
+        }
+        entries.putAndMoveToLast(address, new Entry<>(port, time));
+    }
+
+    /**
+     * Looks up the port to forward the specified frame to.
+     * <p>
+     * Returns {@code null} if the frame should be flooded, i.e. if it is a broadcast or multicast
+     * frame, or its destination is unknown.
+     *
+     * @param frame the frame to look up the port for.
+     * @param time  the current time.
+     * @return the port to forward the frame to, or {@code null} if it should be flooded.
+     */
+    @Nullable
+    public T lookup(final byte[] frame, final long time) {
+        if (frame.length < MIN_FRAME_SIZE || isMulticast(frame, DESTINATION_OFFSET)) {
+            return null;
+        }
+
+        final long address = getAddress(frame, DESTINATION_OFFSET);
+        final Entry<T> entry = entries.get(address);
+        if (entry == null) {
+            return null;
+        }
+
+        if (time - entry.lastSeen > maxAge || time < entry.lastSeen) {
+            entries.remove(address);
+            return null;
+        }
+
+        return entry.port;
+    }
+
+    /**
+     * Forgets all addresses learned for the specified port.
+     *
+     * @param port the port to forget.
+     */
+    public void remove(final T port) {
+        entries.values().removeIf(entry -> entry.port == port);
+    }
+
+    /**
+     * Forgets all learned addresses.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static boolean isMulticast(final byte[] frame, final int offset) {
+        // Also covers the broadcast address, which has all bits set.
+        return (frame[offset] & 1) != 0;
+    }
+
+    private static long getAddress(final byte[] frame, final int offset) {
+        long address = 0;
+        for (int i = 0; i < MAC_ADDRESS_SIZE; i++) {
+            address = (address << 8) | (frame[offset + i] & 0xFF);
+        }
+        return address;
+    }
+
+    private static final class Entry<T> {
+        public T port;
+        public long lastSeen;
+
+        public Entry(final T port, final long lastSeen) {
+            this.port = port;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.ethernet;
+
+import it.unimi.dsi.fastutil.objects.Reference2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import li.cil.oc2.api.capabilities.NetworkInterface;
+import li.cil.oc2.common.util.TickUtils;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+
+/**
+ * A set of connected {@link EthernetBridge}s and the network interfaces attached to them.
+ * <p>
+ * Segments are built by a breadth-first search over connected bridges, which visits each bridge
+ * exactly once. This yields a loop-free spanning tree of the segment, regardless of how the bridges
+ * are wired. Frames sent into the segment are then delivered to attached interfaces in a single
+ * pass, so each interface receives a frame at most once, even if bridges are connected in cycles.
+ * <p>
+ * The segment learns which interface addresses belong to, so unicast frames are only delivered to
+ * their destination once it is known. Broadcast, multicast and frames to unknown destinations are
+ * delivered to all attached interfaces.
+ * <p>
+ * Frames are not written to interfaces directly, but queued in their {@link EthernetPort}, to be
+ * delivered by the {@link EthernetFabric}.
+ * <p>
+ * Segments are cached by their bridges. When the connections of any bridge change, it invalidates
+ * its segment, and the segment is rebuilt the next time a frame is sent into it.
+ */
+public final class NetworkSegment {
+    private static final int TTL_COST = 1;
+    private static final int MAC_ADDRESS_TABLE_CAPACITY = 1024;
+    private static final int MAC_ADDRESS_MAX_AGE = TickUtils.toTicks(Duration.ofMinutes(5));
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final EthernetPort[] ports;
+    private final Reference2ObjectOpenHashMap<NetworkInterface, EthernetPort> portsByInterface;
+    private final MacAddressTable<NetworkInterface> macAddressTable = new MacAddressTable<>(MAC_ADDRESS_TABLE_CAPACITY, MAC_ADDRESS_MAX_AGE);
+    private boolean isValid = true;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private NetworkSegment(final Reference2ObjectLinkedOpenHashMap<NetworkInterface, EthernetPort> ports) {
+        this.ports = ports.values().toArray(EthernetPort[]::new);
+        this.portsByInterface = new Reference2ObjectOpenHashMap<>(ports);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Gets the valid segment the specified bridge is part of, building it if necessary.
+     *
+     * @param bridge the bridge to get the segment for.
+     * @return the segment of the bridge.
+     */
+    public static NetworkSegment get(final EthernetBridge bridge) {
+        final NetworkSegment segment = bridge.getSegment();
+        if (segment != null && segment.isValid) {
+            return segment;
+        }
+        return build(bridge);
+    }
+
+    /**
+     * Marks this segment as invalid, so it gets rebuilt the next time it is used.
+     */
+    public void invalidate() {
+        isValid = false;
+    }
+
+    /**
+     * The number of non-bridge network interfaces attached to this segment.
+     *
+     * @return the number of attached interfaces.
+     */
+    public int getInterfaceCount() {
+        return ports.length;
+    }
+
+    /**
+     * Queues a frame for delivery to the interfaces attached to this segment.
+     *
+     * @param bridge     the bridge the frame entered the segment through.
+     * @param source     the interface the frame originated from. Will not receive the frame.
+     * @param frame      the frame to deliver.
+     * @param timeToLive the remaining time to live of the frame.
+     * @param time       the current game time, used for aging learned addresses.
+     * @return {@code true} if the frame was queued for at least one interface; {@code false} if it
+     * was dropped.
+     */
+    public boolean send(final EthernetBridge bridge, final NetworkInterface source, final byte[] frame, final int timeToLive, final long time) {
+        if (timeToLive <= 0) {
+            return false;
+        }
+
+        final EthernetPort sourcePort = portsByInterface.get(source);
+        if (sourcePort != null) {
+            macAddressTable.learn(frame, source, time);
+        }
+
+        final NetworkInterface destination = macAddressTable.lookup(frame, time);
+        if (destination != null) {
+            return destination != source && portsByInterface.get(destination).offer(bridge, frame, timeToLive - TTL_COST);
+        }
+
+        boolean queued = false;
+        for (final EthernetPort port : ports) {
+            if (port != sourcePort) {
+                queued |= port.offer(bridge, frame, timeToLive - TTL_COST);
+            }
+        }
+
+        return queued;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static NetworkSegment build(final EthernetBridge root) {
+        final ReferenceOpenHashSet<EthernetBridge> bridges = new ReferenceOpenHashSet<>();
+        final Reference2ObjectLinkedOpenHashMap<NetworkInterface, EthernetPort> ports = new Reference2ObjectLinkedOpenHashMap<>();
+        final ArrayDeque<EthernetBridge> queue = new ArrayDeque<>();
+
+        bridges.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            final EthernetBridge current = queue.poll();
+            current.collectConnectedInterfaces(connectedInterface -> {
+                if (connectedInterface instanceof final EthernetBridge bridge) {
+                    if (bridges.add(bridge)) {
+                        queue.add(bridge);
+                    }
+                } else if (!ports.containsKey(connectedInterface)) {
+                    final EthernetPort port = EthernetFabric.getPort(connectedInterface);
+                    port.setDescription(current.getDescription());
+                    ports.put(connectedInterface, port);
+                }
+            });
+        }
+
+        final NetworkSegment segment = new NetworkSegment(ports);
+        for (final EthernetBridge bridge : bridges) {
+            bridge.invalidateSegment();
+            bridge.setSegment(segment);
+        }
+
+        return segment;
+    }
+}
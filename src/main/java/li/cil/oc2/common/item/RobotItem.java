@@ -93,6 +93,9 @@ public final class RobotItem extends ModItem {
         if (!level.isClientSide()) {
             RobotActions.initializeData(robot);
             robot.importFromItemStack(context.getItemInHand());
+            if (context.getPlayer() != null) {
+                robot.setOwner(context.getPlayer().getUUID());
+            }
 
             level.addFreshEntity(robot);
             LevelUtils.playSound(level, new BlockPos(position), SoundType.METAL, SoundType::getPlaceSound);
@@ -6,6 +6,7 @@ import li.cil.oc2.api.API;
 import li.cil.oc2.common.network.message.*;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.SectionPos;
+import net.minecraft.network.Connection;
 import net.minecraft.network.FriendlyByteBuf;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.MinecraftServer;
@@ -19,6 +20,9 @@ import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.network.simple.SimpleChannel;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Function;
 
 public final class Network {
@@ -39,6 +43,8 @@ public final class Network {
 
     public static void initialize() {
         registerMessage(ComputerTerminalOutputMessage.class, ComputerTerminalOutputMessage::new, NetworkDirection.PLAY_TO_CLIENT);
+        registerMessage(ComputerTerminalLinesMessage.class, ComputerTerminalLinesMessage::new, NetworkDirection.PLAY_TO_CLIENT);
+        registerMessage(ComputerTerminalStateMessage.class, ComputerTerminalStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(ComputerTerminalInputMessage.class, ComputerTerminalInputMessage::new, NetworkDirection.PLAY_TO_SERVER);
         registerMessage(ComputerRunStateMessage.class, ComputerRunStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(ComputerBusStateMessage.class, ComputerBusStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
@@ -50,6 +56,8 @@ public final class Network {
         registerMessage(NetworkConnectorConnectionsMessage.class, NetworkConnectorConnectionsMessage::new, NetworkDirection.PLAY_TO_CLIENT);
 
         registerMessage(RobotTerminalOutputMessage.class, RobotTerminalOutputMessage::new, NetworkDirection.PLAY_TO_CLIENT);
+        registerMessage(RobotTerminalLinesMessage.class, RobotTerminalLinesMessage::new, NetworkDirection.PLAY_TO_CLIENT);
+        registerMessage(RobotTerminalStateMessage.class, RobotTerminalStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(RobotTerminalInputMessage.class, RobotTerminalInputMessage::new, NetworkDirection.PLAY_TO_SERVER);
         registerMessage(RobotRunStateMessage.class, RobotRunStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
         registerMessage(RobotBusStateMessage.class, RobotBusStateMessage::new, NetworkDirection.PLAY_TO_CLIENT);
@@ -95,6 +103,18 @@ public final class Network {
         Network.INSTANCE.send(PacketDistributor.PLAYER.with(() -> player), message);
     }
 
+    /**
+     * Sends a message to multiple players. The message is only serialized once, and the resulting
+     * packet is shared by all connections.
+     */
+    public static <T> void sendToClients(final T message, final Collection<ServerPlayer> players) {
+        final List<Connection> connections = new ArrayList<>(players.size());
+        for (final ServerPlayer player : players) {
+            connections.add(player.connection.connection);
+        }
+        Network.INSTANCE.send(PacketDistributor.NMLIST.with(() -> connections), message);
+    }
+
     public static <T> void sendToClientsTrackingChunk(final T message, final LevelChunk chunk) {
         Network.INSTANCE.send(PacketDistributor.TRACKING_CHUNK.with(() -> chunk), message);
     }
@@ -0,0 +1,126 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network;
+
+import li.cil.oc2.common.Config;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.function.IntSupplier;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the encoded frames of a single projector for sending them to clients.
+ * <p>
+ * Frames are compressed as one continuous stream, so later frames can refer to data in earlier
+ * ones. The stream is restarted on every keyframe, since that is where clients that just started
+ * watching a projector join in. Clients use a {@link ProjectorFrameDecompressor} to undo this.
+ * <p>
+ * Encoded frames are mostly entropy coded already, so compression is done using a configurable
+ * level, see {@link Config#projectorCompressionLevel}, which defaults to the fastest one. When the
+ * data does not compress well, compression is turned off until the next keyframe.
+ */
+public final class ProjectorFrameCompressor {
+    static final byte FLAG_RESET = 1; // Stream was restarted, i.e. this is the first frame after a keyframe.
+    static final byte FLAG_COMPRESSED = 2; // Frame data is compressed.
+
+    // When the compressed size is above this percentage of the original size, compression is turned off.
+    private static final int MAX_USEFUL_RATIO_PERCENT = 90;
+    // Minimum number of bytes to compress before deciding whether compression is useful.
+    private static final int MIN_SAMPLE_BYTES = 16 * 1024;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final IntSupplier compressionLevel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private boolean isCompressing;
+    private long inputByteCount, outputByteCount;
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a new compressor.
+     *
+     * @param compressionLevel the compression level to use, read on every keyframe. Zero disables compression.
+     */
+    public ProjectorFrameCompressor(final IntSupplier compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Checks whether a compressed frame is the start of a new stream, i.e. whether clients can
+     * start decompressing frames from it.
+     *
+     * @param frame the compressed frame.
+     * @return {@code true} if the frame starts a new stream; {@code false} otherwise.
+     */
+    static boolean isStreamStart(final byte[] frame) {
+        return frame.length > 0 && (frame[0] & FLAG_RESET) != 0;
+    }
+
+    /**
+     * Compresses an encoded frame into the specified buffer.
+     * <p>
+     * If this returns {@code null}, the compression stream is in an undefined state, and the next
+     * frame must be a keyframe.
+     *
+     * @param frameData the encoded frame.
+     * @param keyFrame  whether the frame is a keyframe.
+     * @param output    the buffer to write the compressed frame to.
+     * @return the flipped output buffer, or {@code null} if the output buffer was too small.
+     */
+    @Nullable
+    public ByteBuffer compress(final ByteBuffer frameData, final boolean keyFrame, final ByteBuffer output) {
+        byte flags = 0;
+        if (keyFrame) {
+            final int level = Math.min(Deflater.BEST_COMPRESSION, compressionLevel.getAsInt());
+            isCompressing = level > Deflater.NO_COMPRESSION;
+            if (isCompressing) {
+                deflater.reset();
+                deflater.setLevel(level);
+            }
+            inputByteCount = 0;
+            outputByteCount = 0;
+            flags |= FLAG_RESET;
+        }
+
+        if (!isCompressing) {
+            if (output.remaining() < 1 + frameData.remaining()) {
+                return null;
+            }
+
+            output.put(flags);
+            output.put(frameData);
+            output.flip();
+            return output;
+        }
+
+        if (!output.hasRemaining()) {
+            return null;
+        }
+
+        output.put((byte) (flags | FLAG_COMPRESSED));
+        final int frameSize = frameData.remaining();
+        final int start = output.position();
+        deflater.setInput(frameData);
+        do {
+            // May return early after the level changed, so keep going until all input is consumed.
+            deflater.deflate(output, Deflater.SYNC_FLUSH);
+        } while (!deflater.needsInput() && output.hasRemaining());
+        if (!output.hasRemaining()) {
+            // Ran out of space, or may not have flushed everything.
+            return null;
+        }
+
+        inputByteCount += frameSize;
+        outputByteCount += output.position() - start;
+        if (inputByteCount >= MIN_SAMPLE_BYTES && outputByteCount * 100 > inputByteCount * MAX_USEFUL_RATIO_PERCENT) {
+            isCompressing = false;
+        }
+
+        output.flip();
+        return output;
+    }
+}
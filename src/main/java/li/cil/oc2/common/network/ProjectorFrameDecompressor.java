@@ -0,0 +1,66 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses the frames of a single projector compressed by a {@link ProjectorFrameCompressor}.
+ * <p>
+ * Since frames are compressed as one continuous stream, frames can only be decompressed after the
+ * start of the stream has been seen. Until then, and after errors, frames are skipped until the
+ * stream is restarted, which happens on the next keyframe.
+ */
+public final class ProjectorFrameDecompressor {
+    private final Inflater inflater = new Inflater();
+    private boolean isInSync;
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Decompresses a frame into the specified buffer.
+     *
+     * @param frame  the received frame.
+     * @param output the buffer to decompress the frame into, if it is compressed.
+     * @return the encoded frame, or {@code null} if the frame cannot be decompressed.
+     */
+    @Nullable
+    public ByteBuffer decompress(final ByteBuffer frame, final ByteBuffer output) {
+        if (!frame.hasRemaining()) {
+            return null;
+        }
+
+        final byte flags = frame.get();
+        if ((flags & ProjectorFrameCompressor.FLAG_RESET) != 0) {
+            inflater.reset();
+            isInSync = true;
+        }
+
+        if (!isInSync) {
+            return null;
+        }
+
+        if ((flags & ProjectorFrameCompressor.FLAG_COMPRESSED) == 0) {
+            return frame;
+        }
+
+        try {
+            output.clear();
+            inflater.setInput(frame);
+            inflater.inflate(output);
+            if (!inflater.needsInput()) {
+                // Output buffer too small, we lost data.
+                isInSync = false;
+                return null;
+            }
+            output.flip();
+            return output;
+        } catch (final DataFormatException ignored) {
+            isInSync = false;
+            return null;
+        }
+    }
+}
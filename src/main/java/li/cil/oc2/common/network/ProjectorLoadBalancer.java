@@ -13,18 +13,21 @@ import net.minecraftforge.event.TickEvent;
 import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Supplier;
 
 /**
  * Mostly round-robin load balancer for allowing projectors to send data to clients.
@@ -42,11 +45,49 @@ import java.util.function.Supplier;
  * To achieve this, there's a global budget and a per-projector skip count. The global budget
  * controls overall data sent from the server. The skip counts modulate the round-robin behaviour
  * of the load balancer. For example, projectors further away from their closest player will get
- * a penalty, as will projectors with a large number of players watching them.
+ * a penalty.
+ * <p>
+ * Projectors are told how large their next frame should be, based on their share of the budget,
+ * the number of players watching them and the time since they last sent a frame, so they can adapt
+ * their quality. Frames exceeding that size are penalized with additional rounds to skip, which
+ * lowers the frame rate of projectors that cannot reduce their frame size any further.
+ * <p>
+ * Frames are encoded on a bounded pool of worker threads, so multiple projectors can encode their
+ * frames in parallel. The number of workers is read from {@link Config#projectorEncoderThreadCount}
+ * when the first frame is encoded. A value of zero means half the available cores. Each worker owns
+ * the buffers frames are encoded into, so these are shared by all projectors instead of each
+ * projector holding its own.
+ * <p>
+ * Frames are sent from the server thread once encoded. Each frame is serialized once and the same
+ * packet is sent to all players watching the projector. The frames since the last keyframe are kept,
+ * so players starting to watch a projector can catch up by getting these, instead of all players
+ * getting a new keyframe.
  */
 @Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public final class ProjectorLoadBalancer {
+    @FunctionalInterface
+    public interface FrameEncoder {
+        /**
+         * Encodes the next frame of a projector.
+         *
+         * @param encoderBuffer   the buffer to use for intermediate encoding results.
+         * @param outputBuffer    the buffer to write the final, compressed frame data to.
+         * @param targetFrameSize the size in bytes the frame should ideally not exceed.
+         * @return the frame data to send, or {@code null} if there is nothing to send.
+         */
+        @Nullable
+        ByteBuffer encode(ByteBuffer encoderBuffer, ByteBuffer outputBuffer, int targetFrameSize);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
     private static final long CACHE_EXPIRES_AFTER = 2000; /* In milliseconds */
+    private static final int ENCODER_BUFFER_SIZE = 1024 * 1024;
+    private static final long MAX_FRAME_INTERVAL = 1000; /* In milliseconds */
+    private static final int MAX_OVERSIZE_SKIP_COUNT = 20;
+    private static final int MAX_CACHED_FRAMES_SIZE = 1024 * 1024;
 
     /**
      * Maps projectors to their specific info, i.e. players watching them and sending state.
@@ -76,6 +117,17 @@ public final class ProjectorLoadBalancer {
      */
     @Nullable private static ProjectorInfo lastSender;
 
+    /**
+     * Buffers used by encoder workers. Frames are serialized into network packets when sent, so the
+     * output buffer can be reused as soon as the frame has been sent to all watching players.
+     */
+    private static final ThreadLocal<EncoderBuffers> ENCODER_BUFFERS = ThreadLocal.withInitial(EncoderBuffers::new);
+
+    private static final AtomicInteger RUNNING_ENCODE_COUNT = new AtomicInteger();
+    private static final AtomicInteger WORKER_INDEX = new AtomicInteger();
+    @Nullable private static ExecutorService encoderWorkers;
+    private static int encoderThreadCount;
+
     ///////////////////////////////////////////////////////////////////
 
     /**
@@ -84,7 +136,7 @@ public final class ProjectorLoadBalancer {
     public static void updateWatcher(final ProjectorBlockEntity projector, final ServerPlayer player) {
         PROJECTOR_INFO
             .computeIfAbsent(projector, ProjectorLoadBalancer::addProjectorInfo)
-            .handleWatchedBy(player);
+            .handleWatchedBy(projector, player);
     }
 
     /**
@@ -92,23 +144,31 @@ public final class ProjectorLoadBalancer {
      * <p>
      * Ignored if there are no players watching the projector.
      */
-    public static void offerFrame(final ProjectorBlockEntity projector, final Supplier<ByteBuffer> messageSupplier) {
+    public static void offerFrame(final ProjectorBlockEntity projector, final FrameEncoder encoder) {
         final ProjectorInfo info = PROJECTOR_INFO.get(projector);
         if (info != null) {
-            info.nextFrameSupplier = messageSupplier;
+            info.nextFrameEncoder = encoder;
         }
     }
 
     /**
-     * Expires cached values. Checks if we can send something, and if so starts async
-     * generation of the package to send.
+     * Expires cached values and sends frames that finished encoding. Checks if we can send
+     * something, and if so starts async generation of packages to send, up to one per encoder
+     * worker.
      */
     @SubscribeEvent
     public static void handleServerTick(final TickEvent.ServerTickEvent event) {
         updateCache();
 
-        if (BUDGET.updateAndGet(ProjectorLoadBalancer::replenishBudget) > 0) {
-            sendNextReadyPacket();
+        for (final ProjectorInfo info : PROJECTOR_INFO.values()) {
+            info.sendEncodedFrame();
+        }
+
+        BUDGET.updateAndGet(ProjectorLoadBalancer::replenishBudget);
+        while (BUDGET.get() > 0 && RUNNING_ENCODE_COUNT.get() < getEncoderThreadCount()) {
+            if (!sendNextReadyPacket()) {
+                break;
+            }
         }
     }
 
@@ -146,7 +206,6 @@ public final class ProjectorLoadBalancer {
     }
 
     private static ProjectorInfo addProjectorInfo(final ProjectorBlockEntity projector) {
-        projector.setRequiresKeyframe(); // When first watcher starts, immediately request keyframe.
         final ProjectorInfo info = new ProjectorInfo(projector.getBlockPos());
         if (lastSender == null) {
             // No sender yet, start the circle.
@@ -171,18 +230,54 @@ public final class ProjectorLoadBalancer {
         info.remove();
     }
 
-    private static void sendNextReadyPacket() {
+    private static boolean sendNextReadyPacket() {
         if (lastSender == null) {
-            return;
+            return false;
         }
 
         final ProjectorInfo start = lastSender;
         do {
             lastSender = lastSender.next;
             if (lastSender.sendIfReady()) {
-                return;
+                return true;
             }
         } while (lastSender != start);
+
+        return false;
+    }
+
+    private static synchronized ExecutorService getEncoderWorkers() {
+        if (encoderWorkers == null) {
+            encoderThreadCount = getEncoderThreadCount();
+            encoderWorkers = Executors.newFixedThreadPool(encoderThreadCount, r -> {
+                final Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("Projector Frame Encoder #" + WORKER_INDEX.incrementAndGet());
+                return thread;
+            });
+
+            LOGGER.info("Encoding projector frames on {} worker thread(s).", encoderThreadCount);
+        }
+
+        return encoderWorkers;
+    }
+
+    private static synchronized int getEncoderThreadCount() {
+        if (encoderWorkers != null) {
+            return encoderThreadCount;
+        }
+
+        return Config.projectorEncoderThreadCount > 0
+            ? Config.projectorEncoderThreadCount
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private record EncoderBuffers(ByteBuffer encoderBuffer, ByteBuffer outputBuffer) {
+        public EncoderBuffers() {
+            this(ByteBuffer.allocateDirect(ENCODER_BUFFER_SIZE), ByteBuffer.allocateDirect(ENCODER_BUFFER_SIZE));
+        }
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -193,13 +288,6 @@ public final class ProjectorLoadBalancer {
      * for the round-robin load-balancing more comfortable.
      */
     private static class ProjectorInfo {
-        private static final ExecutorService ENCODER_WORKERS = Executors.newCachedThreadPool(r -> {
-            final Thread thread = new Thread(r);
-            thread.setDaemon(true);
-            thread.setName("Projector Frame Encoder");
-            return thread;
-        });
-
         /**
          * Pointers to next and previous entries in linked list. May point to this if it's the only entry.
          */
@@ -220,8 +308,29 @@ public final class ProjectorLoadBalancer {
          */
         private int skipCount;
 
-        @Nullable private Supplier<ByteBuffer> nextFrameSupplier;
-        @Nullable private Future<?> runningEncode;
+        /**
+         * Additional rounds to skip, because the last frame exceeded its target size.
+         */
+        private int oversizeSkipCount;
+
+        /**
+         * When the last frame was sent, to determine the budget accrued for the next frame.
+         */
+        private long lastSentAt;
+
+        /**
+         * The target size of the frame currently being encoded.
+         */
+        private int targetFrameSize;
+
+        /**
+         * The frames sent since the last keyframe, for players starting to watch the projector.
+         */
+        private final ArrayList<byte[]> cachedFrames = new ArrayList<>();
+        private int cachedFramesSize;
+
+        @Nullable private FrameEncoder nextFrameEncoder;
+        @Nullable private Future<byte[]> runningEncode;
 
         public ProjectorInfo(final BlockPos projectorPos) {
             next = previous = this;
@@ -247,8 +356,22 @@ public final class ProjectorLoadBalancer {
             next = null;
         }
 
-        public void handleWatchedBy(final ServerPlayer player) {
-            players.put(player, System.currentTimeMillis());
+        public void handleWatchedBy(final ProjectorBlockEntity projector, final ServerPlayer player) {
+            if (players.put(player, System.currentTimeMillis()) != null) {
+                return;
+            }
+
+            // New watcher. Let them catch up using the frames since the last keyframe, if we have them.
+            // Frames currently being encoded will be sent to them once done, so they arrive in order.
+            if (cachedFrames.isEmpty()) {
+                projector.setRequiresKeyframe();
+                return;
+            }
+
+            for (final byte[] frame : cachedFrames) {
+                Network.sendToClient(new ProjectorFramebufferMessage(projectorPos, ByteBuffer.wrap(frame)), player);
+            }
+            BUDGET.accumulateAndGet(cachedFramesSize, (budget, cost) -> budget - cost);
         }
 
         public void removeExpiredPlayers() {
@@ -265,7 +388,7 @@ public final class ProjectorLoadBalancer {
                 return false;
             }
 
-            final boolean isReady = !players.isEmpty() && nextFrameSupplier != null && (runningEncode == null || runningEncode.isDone());
+            final boolean isReady = !players.isEmpty() && nextFrameEncoder != null && runningEncode == null;
             if (isReady) {
                 sendAsync();
                 updateSkipCount();
@@ -275,34 +398,104 @@ public final class ProjectorLoadBalancer {
         }
 
         private void sendAsync() {
-            assert nextFrameSupplier != null;
-            final Supplier<ByteBuffer> frameSupplier = nextFrameSupplier;
-            nextFrameSupplier = null;
-
-            assert runningEncode == null || runningEncode.isDone();
-            runningEncode = ENCODER_WORKERS.submit(() -> {
-                final ByteBuffer frame = frameSupplier.get();
-                if (frame == null) {
-                    return;
+            assert nextFrameEncoder != null;
+            final FrameEncoder frameEncoder = nextFrameEncoder;
+            nextFrameEncoder = null;
+
+            final int targetFrameSize = computeTargetFrameSize();
+            this.targetFrameSize = targetFrameSize;
+
+            assert runningEncode == null;
+            RUNNING_ENCODE_COUNT.incrementAndGet();
+            runningEncode = getEncoderWorkers().submit(() -> {
+                try {
+                    final EncoderBuffers buffers = ENCODER_BUFFERS.get();
+                    buffers.encoderBuffer().clear();
+                    buffers.outputBuffer().clear();
+                    final ByteBuffer frame = frameEncoder.encode(buffers.encoderBuffer(), buffers.outputBuffer(), targetFrameSize);
+                    if (frame == null) {
+                        return null;
+                    }
+
+                    // Copy out of the worker's buffer, since it is reused for the next encode.
+                    final byte[] frameData = new byte[frame.remaining()];
+                    frame.get(frameData);
+                    return frameData;
+                } finally {
+                    RUNNING_ENCODE_COUNT.decrementAndGet();
                 }
+            });
+        }
 
-                final int budgetCost = frame.limit() * players.size();
-                BUDGET.accumulateAndGet(budgetCost, (budget, cost) -> budget - cost);
+        public void sendEncodedFrame() {
+            if (runningEncode == null || !runningEncode.isDone()) {
+                return;
+            }
 
-                final ProjectorFramebufferMessage message = new ProjectorFramebufferMessage(projectorPos, frame);
-                for (final ServerPlayer player : players.keySet()) {
-                    Network.sendToClient(message, player);
-                }
-            });
+            final byte[] frame;
+            try {
+                frame = runningEncode.get();
+            } catch (final InterruptedException | ExecutionException e) {
+                LOGGER.error("Failed encoding projector frame.", e);
+                // Cached frames are incomplete now, have new watchers request a keyframe.
+                cachedFrames.clear();
+                cachedFramesSize = 0;
+                return;
+            } finally {
+                runningEncode = null;
+            }
+
+            if (frame == null) {
+                return;
+            }
+
+            cacheFrame(frame);
+
+            oversizeSkipCount = Math.max(0, Math.min(MAX_OVERSIZE_SKIP_COUNT, frame.length / targetFrameSize - 1));
+
+            final int budgetCost = frame.length * players.size();
+            BUDGET.accumulateAndGet(budgetCost, (budget, cost) -> budget - cost);
+
+            Network.sendToClients(new ProjectorFramebufferMessage(projectorPos, ByteBuffer.wrap(frame)), players.keySet());
+        }
+
+        private void cacheFrame(final byte[] frame) {
+            if (ProjectorFrameCompressor.isStreamStart(frame)) {
+                cachedFrames.clear();
+                cachedFramesSize = 0;
+            } else if (cachedFrames.isEmpty()) {
+                // No keyframe to start from, so these frames are of no use to new watchers.
+                return;
+            }
+
+            if (cachedFramesSize + frame.length > MAX_CACHED_FRAMES_SIZE) {
+                // New watchers will request a new keyframe instead.
+                cachedFrames.clear();
+                cachedFramesSize = 0;
+                return;
+            }
+
+            cachedFrames.add(frame);
+            cachedFramesSize += frame.length;
+        }
+
+        private int computeTargetFrameSize() {
+            final long now = System.currentTimeMillis();
+            final long elapsed = Math.min(MAX_FRAME_INTERVAL, now - lastSentAt);
+            lastSentAt = now;
+
+            final long bytesPerSecond = Config.projectorAverageMaxBytesPerSecond / Math.max(1, PROJECTOR_INFO.size()) / Math.max(1, players.size());
+            return (int) Math.max(1, bytesPerSecond * elapsed / 1000);
         }
 
         private void updateSkipCount() {
-            skipCount = 0;
+            // Penalty of the previous frame, since the current one is still being encoded. The number
+            // of watchers is accounted for by the target frame size, so no extra penalty for them.
+            skipCount = oversizeSkipCount;
 
             double closestPlayerDistanceSqr = Double.MAX_VALUE;
             final Vec3 blockCenter = Vec3.atCenterOf(projectorPos);
             for (final ServerPlayer player : players.keySet()) {
-                skipCount++;
                 final double distance = player.distanceToSqr(blockCenter);
                 closestPlayerDistanceSqr = Math.min(closestPlayerDistanceSqr, distance);
             }
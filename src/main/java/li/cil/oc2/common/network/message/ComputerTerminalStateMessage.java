@@ -0,0 +1,52 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network.message;
+
+import li.cil.oc2.common.blockentity.ComputerBlockEntity;
+import li.cil.oc2.common.network.MessageUtils;
+import li.cil.oc2.common.serialization.NBTSerialization;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+public final class ComputerTerminalStateMessage extends AbstractMessage {
+    private BlockPos pos;
+    private CompoundTag terminal;
+
+    ///////////////////////////////////////////////////////////////////
+
+    public ComputerTerminalStateMessage(final ComputerBlockEntity computer, final CompoundTag terminal) {
+        this.pos = computer.getBlockPos();
+        this.terminal = terminal;
+    }
+
+    public ComputerTerminalStateMessage(final FriendlyByteBuf buffer) {
+        super(buffer);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Override
+    public void fromBytes(final FriendlyByteBuf buffer) {
+        pos = buffer.readBlockPos();
+        terminal = buffer.readNbt();
+    }
+
+    @Override
+    public void toBytes(final FriendlyByteBuf buffer) {
+        buffer.writeBlockPos(pos);
+        buffer.writeNbt(terminal);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Override
+    protected void handleMessage(final NetworkEvent.Context context) {
+        MessageUtils.withClientBlockEntityAt(pos, ComputerBlockEntity.class,
+            computer -> {
+                NBTSerialization.deserialize(terminal, computer.getTerminal());
+                computer.getTerminal().markAllLinesChanged();
+            });
+    }
+}
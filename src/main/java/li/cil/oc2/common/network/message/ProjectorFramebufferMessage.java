@@ -30,16 +30,16 @@ public final class ProjectorFramebufferMessage extends AbstractMessage {
     @Override
     public void fromBytes(final FriendlyByteBuf buffer) {
         pos = buffer.readBlockPos();
-        frame = ByteBuffer.allocateDirect(buffer.readVarInt());
-        buffer.readBytes(frame);
-        frame.flip();
+        final byte[] data = new byte[buffer.readVarInt()];
+        buffer.readBytes(data);
+        frame = ByteBuffer.wrap(data);
     }
 
     @Override
     public void toBytes(final FriendlyByteBuf buffer) {
         buffer.writeBlockPos(pos);
         buffer.writeVarInt(frame.limit());
-        buffer.writeBytes(frame);
+        buffer.writeBytes(frame.duplicate());
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -0,0 +1,28 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network.message;
+
+import li.cil.oc2.common.entity.Robot;
+import li.cil.oc2.common.network.MessageUtils;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+import java.nio.ByteBuffer;
+
+public final class RobotTerminalLinesMessage extends AbstractTerminalEntityMessage {
+    public RobotTerminalLinesMessage(final Robot robot, final ByteBuffer data) {
+        super(robot, data);
+    }
+
+    public RobotTerminalLinesMessage(final FriendlyByteBuf buffer) {
+        super(buffer);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Override
+    protected void handleMessage(final NetworkEvent.Context context) {
+        MessageUtils.withClientEntity(entityId, Robot.class,
+            robot -> robot.getTerminal().putLines(ByteBuffer.wrap(data)));
+    }
+}
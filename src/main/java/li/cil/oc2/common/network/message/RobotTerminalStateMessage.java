@@ -0,0 +1,51 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.network.message;
+
+import li.cil.oc2.common.entity.Robot;
+import li.cil.oc2.common.network.MessageUtils;
+import li.cil.oc2.common.serialization.NBTSerialization;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraftforge.network.NetworkEvent;
+
+public final class RobotTerminalStateMessage extends AbstractMessage {
+    private int entityId;
+    private CompoundTag terminal;
+
+    ///////////////////////////////////////////////////////////////////
+
+    public RobotTerminalStateMessage(final Robot robot, final CompoundTag terminal) {
+        this.entityId = robot.getId();
+        this.terminal = terminal;
+    }
+
+    public RobotTerminalStateMessage(final FriendlyByteBuf buffer) {
+        super(buffer);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Override
+    public void fromBytes(final FriendlyByteBuf buffer) {
+        entityId = buffer.readVarInt();
+        terminal = buffer.readNbt();
+    }
+
+    @Override
+    public void toBytes(final FriendlyByteBuf buffer) {
+        buffer.writeVarInt(entityId);
+        buffer.writeNbt(terminal);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Override
+    protected void handleMessage(final NetworkEvent.Context context) {
+        MessageUtils.withClientEntity(entityId, Robot.class,
+            robot -> {
+                NBTSerialization.deserialize(terminal, robot.getTerminal());
+                robot.getTerminal().markAllLinesChanged();
+            });
+    }
+}
@@ -18,6 +18,8 @@ import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -25,6 +27,9 @@ import java.util.concurrent.CompletableFuture;
 
 /**
  * This class facilitates storing binary chunks of data in an efficient, parallelized fashion.
+ * <p>
+ * Blobs are raw files by default. Users only ever writing parts of a large blob may use the
+ * {@link SparseBlob} format instead, so that unwritten data does not take up any space.
  */
 @Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public final class BlobStorage {
@@ -33,7 +38,9 @@ public final class BlobStorage {
     ///////////////////////////////////////////////////////////////////
 
     private static final LevelResource BLOBS_FOLDER_NAME = new LevelResource(API.MOD_ID + "-blobs");
+    private static final String REPLACEMENT_SUFFIX = ".new";
     private static final Map<UUID, FileChannel> BLOBS = new HashMap<>();
+    private static final Map<UUID, FileChannel> REPLACEMENTS = new HashMap<>();
 
     private static Path dataDirectory; // Directory blobs get saved to.
 
@@ -68,8 +75,16 @@ public final class BlobStorage {
                 LOGGER.error(e);
             }
         }
+        for (final FileChannel replacement : REPLACEMENTS.values()) {
+            try {
+                replacement.close();
+            } catch (final IOException e) {
+                LOGGER.error(e);
+            }
+        }
 
         BLOBS.clear();
+        REPLACEMENTS.clear();
     }
 
     /**
@@ -118,6 +133,58 @@ public final class BlobStorage {
         return blob;
     }
 
+    /**
+     * Creates an empty replacement for the blob with the specified handle.
+     * <p>
+     * The replacement is written separately from the blob, and only replaces it when calling
+     * {@link #commitReplacement(UUID)}. Until then, the blob keeps its previous contents, even if
+     * the process dies while writing the replacement.
+     *
+     * @param handle the handle of the blob to create a replacement for.
+     * @return the file channel to write the replacement to.
+     * @throws IOException if creating the replacement fails.
+     */
+    public static synchronized FileChannel createReplacement(final UUID handle) throws IOException {
+        final FileChannel previous = REPLACEMENTS.remove(handle);
+        if (previous != null) {
+            previous.close();
+        }
+
+        final FileChannel replacement = FileChannel.open(getReplacementPath(handle),
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        REPLACEMENTS.put(handle, replacement);
+        return replacement;
+    }
+
+    /**
+     * Atomically replaces the blob with the specified handle with its replacement.
+     * <p>
+     * File channels previously obtained for the blob are closed.
+     *
+     * @param handle the handle of the blob to replace.
+     * @return the file channel for the new contents of the blob.
+     * @throws IOException if replacing the blob fails.
+     */
+    public static synchronized FileChannel commitReplacement(final UUID handle) throws IOException {
+        final FileChannel replacement = REPLACEMENTS.remove(handle);
+        if (replacement == null) {
+            throw new IllegalStateException("No replacement was created for this blob.");
+        }
+
+        replacement.force(true);
+        replacement.close();
+
+        final FileChannel blob = BLOBS.remove(handle);
+        if (blob != null) {
+            blob.close();
+        }
+
+        Files.move(getReplacementPath(handle), dataDirectory.resolve(handle.toString()),
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        return getOrOpen(handle);
+    }
+
     /**
      * Closes the blob with the specified handle.
      *
@@ -129,6 +196,10 @@ public final class BlobStorage {
             if (blob != null) {
                 blob.close();
             }
+            final FileChannel replacement = REPLACEMENTS.remove(handle);
+            if (replacement != null) {
+                replacement.close();
+            }
         } catch (final IOException e) {
             LOGGER.error(e);
         }
@@ -143,9 +214,11 @@ public final class BlobStorage {
         close(handle);
 
         final Path path = dataDirectory.resolve(handle.toString());
+        final Path replacementPath = getReplacementPath(handle);
         CompletableFuture.runAsync(() -> {
             try {
                 Files.deleteIfExists(path);
+                Files.deleteIfExists(replacementPath);
             } catch (final Throwable e) {
                 LOGGER.error(e);
             }
@@ -163,4 +236,10 @@ public final class BlobStorage {
     public static void handleServerStopped(final ServerStoppedEvent event) {
         BlobStorage.close();
     }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static Path getReplacementPath(final UUID handle) {
+        return dataDirectory.resolve(handle + REPLACEMENT_SUFFIX);
+    }
 }
@@ -0,0 +1,273 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.serialization;
+
+import com.google.gson.*;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Converts between JSON trees and their <a href="https://msgpack.org">MessagePack</a> encoding.
+ * <p>
+ * This is used by the binary RPC protocol, so that the same type adapters can be used as for the
+ * JSON protocol. Binary data ({@code bin} types) is read as arrays of unsigned bytes, extension
+ * types are not supported.
+ */
+public final class MessagePackJsonConverter {
+    private static final int MAX_DEPTH = 64;
+
+    private static final int NIL = 0xc0;
+    private static final int FALSE = 0xc2;
+    private static final int TRUE = 0xc3;
+    private static final int BIN8 = 0xc4;
+    private static final int BIN16 = 0xc5;
+    private static final int BIN32 = 0xc6;
+    private static final int FLOAT32 = 0xca;
+    private static final int FLOAT64 = 0xcb;
+    private static final int UINT8 = 0xcc;
+    private static final int UINT16 = 0xcd;
+    private static final int UINT32 = 0xce;
+    private static final int UINT64 = 0xcf;
+    private static final int INT8 = 0xd0;
+    private static final int INT16 = 0xd1;
+    private static final int INT32 = 0xd2;
+    private static final int INT64 = 0xd3;
+    private static final int STR8 = 0xd9;
+    private static final int STR16 = 0xda;
+    private static final int STR32 = 0xdb;
+    private static final int ARRAY16 = 0xdc;
+    private static final int ARRAY32 = 0xdd;
+    private static final int MAP16 = 0xde;
+    private static final int MAP32 = 0xdf;
+
+    ///////////////////////////////////////////////////////////////////
+
+    public static JsonElement read(final ByteBuffer buffer) {
+        try {
+            return read(buffer, 0);
+        } catch (final BufferUnderflowException e) {
+            throw new JsonParseException("unexpected end of message");
+        }
+    }
+
+    public static void write(final JsonElement json, final DataOutput output) throws IOException {
+        if (json.isJsonNull()) {
+            output.writeByte(NIL);
+        } else if (json.isJsonPrimitive()) {
+            writePrimitive(json.getAsJsonPrimitive(), output);
+        } else if (json.isJsonArray()) {
+            final JsonArray array = json.getAsJsonArray();
+            writeHeader(array.size(), 0x90, 16, ARRAY16, ARRAY32, output);
+            for (final JsonElement element : array) {
+                write(element, output);
+            }
+        } else {
+            final JsonObject object = json.getAsJsonObject();
+            writeHeader(object.size(), 0x80, 16, MAP16, MAP32, output);
+            for (final Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(entry.getKey(), output);
+                write(entry.getValue(), output);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static JsonElement read(final ByteBuffer buffer, final int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new JsonParseException("message nested too deeply");
+        }
+
+        final int type = buffer.get() & 0xFF;
+        if (type <= 0x7f) {
+            return new JsonPrimitive(type);
+        } else if (type <= 0x8f) {
+            return readMap(buffer, type & 0x0f, depth);
+        } else if (type <= 0x9f) {
+            return readArray(buffer, type & 0x0f, depth);
+        } else if (type <= 0xbf) {
+            return readString(buffer, type & 0x1f);
+        } else if (type >= 0xe0) {
+            return new JsonPrimitive((byte) type);
+        }
+
+        return switch (type) {
+            case NIL -> JsonNull.INSTANCE;
+            case FALSE -> new JsonPrimitive(false);
+            case TRUE -> new JsonPrimitive(true);
+            case BIN8 -> readBinary(buffer, buffer.get() & 0xFF);
+            case BIN16 -> readBinary(buffer, buffer.getShort() & 0xFFFF);
+            case BIN32 -> readBinary(buffer, buffer.getInt());
+            case FLOAT32 -> new JsonPrimitive(buffer.getFloat());
+            case FLOAT64 -> new JsonPrimitive(buffer.getDouble());
+            case UINT8 -> new JsonPrimitive(buffer.get() & 0xFF);
+            case UINT16 -> new JsonPrimitive(buffer.getShort() & 0xFFFF);
+            case UINT32 -> new JsonPrimitive(buffer.getInt() & 0xFFFFFFFFL);
+            case UINT64 -> {
+                final long value = buffer.getLong();
+                yield value >= 0 ? new JsonPrimitive(value) : new JsonPrimitive(new BigInteger(Long.toUnsignedString(value)));
+            }
+            case INT8 -> new JsonPrimitive(buffer.get());
+            case INT16 -> new JsonPrimitive(buffer.getShort());
+            case INT32 -> new JsonPrimitive(buffer.getInt());
+            case INT64 -> new JsonPrimitive(buffer.getLong());
+            case STR8 -> readString(buffer, buffer.get() & 0xFF);
+            case STR16 -> readString(buffer, buffer.getShort() & 0xFFFF);
+            case STR32 -> readString(buffer, buffer.getInt());
+            case ARRAY16 -> readArray(buffer, buffer.getShort() & 0xFFFF, depth);
+            case ARRAY32 -> readArray(buffer, buffer.getInt(), depth);
+            case MAP16 -> readMap(buffer, buffer.getShort() & 0xFFFF, depth);
+            case MAP32 -> readMap(buffer, buffer.getInt(), depth);
+            default -> throw new JsonParseException("unsupported type");
+        };
+    }
+
+    private static JsonArray readArray(final ByteBuffer buffer, final int length, final int depth) {
+        // Every element takes at least one byte, so this also guards against bogus lengths.
+        checkLength(buffer, length);
+        final JsonArray array = new JsonArray(length);
+        for (int i = 0; i < length; i++) {
+            array.add(read(buffer, depth + 1));
+        }
+        return array;
+    }
+
+    private static JsonObject readMap(final ByteBuffer buffer, final int length, final int depth) {
+        checkLength(buffer, length);
+        final JsonObject object = new JsonObject();
+        for (int i = 0; i < length; i++) {
+            final JsonElement key = read(buffer, depth + 1);
+            if (!key.isJsonPrimitive() || !key.getAsJsonPrimitive().isString()) {
+                throw new JsonParseException("map keys must be strings");
+            }
+            object.add(key.getAsString(), read(buffer, depth + 1));
+        }
+        return object;
+    }
+
+    private static JsonPrimitive readString(final ByteBuffer buffer, final int length) {
+        checkLength(buffer, length);
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new JsonPrimitive(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static JsonArray readBinary(final ByteBuffer buffer, final int length) {
+        checkLength(buffer, length);
+        final JsonArray array = new JsonArray(length);
+        for (int i = 0; i < length; i++) {
+            array.add(buffer.get() & 0xFF);
+        }
+        return array;
+    }
+
+    private static void checkLength(final ByteBuffer buffer, final int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new JsonParseException("unexpected end of message");
+        }
+    }
+
+    private static void writePrimitive(final JsonPrimitive primitive, final DataOutput output) throws IOException {
+        if (primitive.isBoolean()) {
+            output.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+        } else if (primitive.isString()) {
+            writeString(primitive.getAsString(), output);
+        } else {
+            writeNumber(primitive.getAsNumber(), output);
+        }
+    }
+
+    private static void writeNumber(final Number number, final DataOutput output) throws IOException {
+        if (number instanceof Byte || number instanceof Short || number instanceof Integer || number instanceof Long) {
+            writeInteger(number.longValue(), output);
+        } else if (number instanceof final BigInteger value && value.bitLength() < Long.SIZE) {
+            writeInteger(value.longValue(), output);
+        } else if (number instanceof Float) {
+            output.writeByte(FLOAT32);
+            output.writeFloat(number.floatValue());
+        } else if (number instanceof Double || number instanceof BigInteger) {
+            output.writeByte(FLOAT64);
+            output.writeDouble(number.doubleValue());
+        } else {
+            // Lazily parsed numbers and big decimals: keep integers integers.
+            try {
+                writeInteger(new BigDecimal(number.toString()).longValueExact(), output);
+            } catch (final ArithmeticException | NumberFormatException e) {
+                output.writeByte(FLOAT64);
+                output.writeDouble(number.doubleValue());
+            }
+        }
+    }
+
+    private static void writeInteger(final long value, final DataOutput output) throws IOException {
+        if (value >= 0) {
+            if (value <= 0x7f) {
+                output.writeByte((int) value);
+            } else if (value <= 0xff) {
+                output.writeByte(UINT8);
+                output.writeByte((int) value);
+            } else if (value <= 0xffff) {
+                output.writeByte(UINT16);
+                output.writeShort((int) value);
+            } else if (value <= 0xffffffffL) {
+                output.writeByte(UINT32);
+                output.writeInt((int) value);
+            } else {
+                output.writeByte(UINT64);
+                output.writeLong(value);
+            }
+        } else {
+            if (value >= -32) {
+                output.writeByte((int) value);
+            } else if (value >= Byte.MIN_VALUE) {
+                output.writeByte(INT8);
+                output.writeByte((int) value);
+            } else if (value >= Short.MIN_VALUE) {
+                output.writeByte(INT16);
+                output.writeShort((int) value);
+            } else if (value >= Integer.MIN_VALUE) {
+                output.writeByte(INT32);
+                output.writeInt((int) value);
+            } else {
+                output.writeByte(INT64);
+                output.writeLong(value);
+            }
+        }
+    }
+
+    private static void writeString(final String value, final DataOutput output) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 32) {
+            output.writeByte(0xa0 | bytes.length);
+        } else if (bytes.length <= 0xff) {
+            output.writeByte(STR8);
+            output.writeByte(bytes.length);
+        } else if (bytes.length <= 0xffff) {
+            output.writeByte(STR16);
+            output.writeShort(bytes.length);
+        } else {
+            output.writeByte(STR32);
+            output.writeInt(bytes.length);
+        }
+        output.write(bytes);
+    }
+
+    private static void writeHeader(final int length, final int fixType, final int fixLimit, final int type16, final int type32, final DataOutput output) throws IOException {
+        if (length < fixLimit) {
+            output.writeByte(fixType | length);
+        } else if (length <= 0xffff) {
+            output.writeByte(type16);
+            output.writeShort(length);
+        } else {
+            output.writeByte(type32);
+            output.writeInt(length);
+        }
+    }
+}
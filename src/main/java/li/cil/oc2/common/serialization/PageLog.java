@@ -0,0 +1,393 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.serialization;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An append-only log of compressed pages, for incrementally persisting paged data in blobs from the
+ * {@link BlobStorage}.
+ * <p>
+ * Each snapshot appends the pages changed since the previous snapshot, followed by a commit record.
+ * When opening the log, all committed snapshots are replayed in order, so the latest committed
+ * version of each page wins. Data written after the last commit, e.g. due to a crash while writing,
+ * is discarded. Once the log has grown sufficiently larger than the data it describes, it should be
+ * compacted by writing a full snapshot, which replaces the contents of the log. Full snapshots are
+ * written to a replacement, which is only swapped in once it has been committed, so the previous
+ * log stays intact if writing the snapshot fails.
+ * <p>
+ * Pages are compressed using {@link Deflater#BEST_SPEED}. Pages containing only zeros are stored as
+ * an empty record, pages that do not compress are stored as-is.
+ */
+public final class PageLog {
+    private static final int MAGIC = 0x4F433250; // OC2P
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int COMMIT_MARKER = -1;
+
+    private static final int COMPACTION_RATIO = 2;
+    private static final int MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    ///////////////////////////////////////////////////////////////////
+
+    @FunctionalInterface
+    public interface PageConsumer {
+        void accept(int index, @Nullable byte[] data);
+    }
+
+    /**
+     * The storage a page log is kept in.
+     */
+    public interface Storage {
+        /**
+         * Gets the channel containing the current log.
+         *
+         * @return the channel of the current log.
+         * @throws IOException if opening the channel fails.
+         */
+        FileChannel getChannel() throws IOException;
+
+        /**
+         * Creates an empty replacement for the current log.
+         *
+         * @return the channel to write the replacement to.
+         * @throws IOException if creating the replacement fails.
+         */
+        FileChannel createReplacement() throws IOException;
+
+        /**
+         * Atomically replaces the current log with the last created replacement.
+         *
+         * @return the channel of the new current log.
+         * @throws IOException if replacing the log fails.
+         */
+        FileChannel commitReplacement() throws IOException;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final Storage storage;
+    @Nullable private FileChannel channel; // Null until the first snapshot of a new log is written.
+    private final int pageSize;
+    private final int[] recordSizes; // Size of the latest record for each page.
+    private long liveSize;
+    private long size;
+    private volatile boolean shouldCompact;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private PageLog(final Storage storage, @Nullable final FileChannel channel, final int pageSize, final int pageCount) {
+        this.storage = storage;
+        this.channel = channel;
+        this.pageSize = pageSize;
+        this.recordSizes = new int[pageCount];
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Checks whether the specified file channel contains a page log.
+     *
+     * @param channel the channel to check.
+     * @return {@code true} if the channel contains a page log; {@code false} otherwise.
+     * @throws IOException if reading from the channel fails.
+     */
+    public static boolean isPageLog(final FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+
+        final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0) {
+                return false;
+            }
+        }
+        return magic.flip().getInt() == MAGIC;
+    }
+
+    /**
+     * Initializes a new, empty page log in the specified storage.
+     * <p>
+     * Any data in the storage is only replaced once the first snapshot has been written, which
+     * is always written as a full snapshot.
+     *
+     * @param storage   the storage to keep the page log in.
+     * @param pageSize  the size of a single page, in bytes.
+     * @param pageCount the number of pages in the data stored in the page log.
+     * @return the new page log.
+     */
+    public static PageLog create(final Storage storage, final int pageSize, final int pageCount) {
+        if (pageSize <= 0 || pageCount < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        final PageLog log = new PageLog(storage, null, pageSize, pageCount);
+        log.shouldCompact = true;
+        return log;
+    }
+
+    /**
+     * Opens an existing page log kept in the specified storage, replaying all committed snapshots
+     * in it.
+     *
+     * @param storage   the storage containing the page log.
+     * @param pageSize  the expected size of a single page, in bytes.
+     * @param pageCount the expected number of pages.
+     * @param consumer  the consumer to pass the contents of stored pages to. A {@code null} page
+     *                  represents a page containing only zeros.
+     * @return the page log.
+     * @throws IOException if reading from the channel fails or it does not contain a valid page log.
+     */
+    public static PageLog open(final Storage storage, final int pageSize, final int pageCount, final PageConsumer consumer) throws IOException {
+        final FileChannel channel = storage.getChannel();
+        final PageLog log = new PageLog(storage, channel, pageSize, pageCount);
+
+        channel.position(0);
+        final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a page log.");
+        }
+        if (input.readInt() != VERSION) {
+            throw new IOException("Unsupported page log version.");
+        }
+        if (input.readInt() != pageSize || input.readInt() != pageCount) {
+            throw new IOException("Page log layout does not match.");
+        }
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            final ArrayList<PageRecord> pending = new ArrayList<>();
+            final int[] pendingSizes = new int[pageCount];
+            final byte[] compressed = new byte[pageSize];
+            long committedSize = HEADER_SIZE;
+            long position = HEADER_SIZE;
+            while (true) {
+                final int index, length;
+                try {
+                    index = input.readInt();
+                    length = input.readInt();
+                } catch (final EOFException e) {
+                    break;
+                }
+                position += RECORD_HEADER_SIZE;
+
+                if (index == COMMIT_MARKER) {
+                    if (length != pending.size()) {
+                        break;
+                    }
+                    for (final PageRecord record : pending) {
+                        consumer.accept(record.index(), record.data());
+                        log.setRecordSize(record.index(), pendingSizes[record.index()]);
+                    }
+                    pending.clear();
+                    committedSize = position;
+                    continue;
+                }
+
+                // Valid lengths: zero for empty pages, less than a page for compressed pages and
+                // exactly the negated page size for raw pages. Anything else is corrupted.
+                if (index < 0 || index >= pageCount || (length != -pageSize && (length < 0 || length >= pageSize))) {
+                    break;
+                }
+
+                final byte[] data;
+                try {
+                    input.readFully(compressed, 0, Math.abs(length));
+                } catch (final EOFException e) {
+                    break;
+                }
+                position += Math.abs(length);
+
+                if (length == 0) {
+                    data = null;
+                } else if (length < 0) {
+                    data = compressed.clone();
+                } else {
+                    data = new byte[pageSize];
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, length);
+                    if (inflater.inflate(data) != pageSize) {
+                        break;
+                    }
+                }
+
+                pending.add(new PageRecord(index, data));
+                pendingSizes[index] = RECORD_HEADER_SIZE + Math.abs(length);
+            }
+
+            // Drop anything after the last commit, it belongs to an incomplete snapshot.
+            channel.truncate(committedSize);
+            log.size = committedSize;
+            log.updateShouldCompact();
+        } catch (final DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+
+        return log;
+    }
+
+    /**
+     * Whether the log has grown enough compared to the data it describes for it to be compacted.
+     * <p>
+     * When this returns {@code true}, the next call to {@link #write(int[], byte[][], boolean)}
+     * should be a full snapshot.
+     * <p>
+     * May be called from any thread.
+     *
+     * @return {@code true} if the next snapshot should be a full snapshot.
+     */
+    public boolean shouldCompact() {
+        return shouldCompact;
+    }
+
+    /**
+     * Writes a snapshot to the log.
+     * <p>
+     * If this is a full snapshot, the contents of the log are replaced, and all pages not contained
+     * in the snapshot are considered to contain only zeros. Otherwise, the pages are appended to the
+     * log. The first snapshot of a new log is always a full snapshot.
+     *
+     * @param indices the indices of the pages in the snapshot.
+     * @param pages   the contents of the pages in the snapshot. {@code null} entries represent pages
+     *                containing only zeros.
+     * @param full    whether this is a full snapshot.
+     * @throws IOException if writing to the channel fails.
+     */
+    public void write(final int[] indices, final byte[][] pages, final boolean full) throws IOException {
+        if (full || channel == null) {
+            writeReplacement(indices, pages);
+        } else {
+            size = writeSnapshot(channel, size, indices, pages);
+        }
+
+        updateShouldCompact();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private record PageRecord(int index, @Nullable byte[] data) { }
+
+    private void writeReplacement(final int[] indices, final byte[][] pages) throws IOException {
+        final int[] previousRecordSizes = recordSizes.clone();
+        final long previousLiveSize = liveSize;
+        Arrays.fill(recordSizes, 0);
+        liveSize = 0;
+
+        try {
+            final FileChannel replacement = storage.createReplacement();
+            writeHeader(replacement);
+            final long replacementSize = writeSnapshot(replacement, HEADER_SIZE, indices, pages);
+            channel = storage.commitReplacement();
+            size = replacementSize;
+        } catch (final IOException e) {
+            // The current log is still intact, keep tracking it.
+            System.arraycopy(previousRecordSizes, 0, recordSizes, 0, recordSizes.length);
+            liveSize = previousLiveSize;
+            throw e;
+        }
+    }
+
+    private void writeHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(pageSize);
+        header.putInt(recordSizes.length);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private long writeSnapshot(final FileChannel channel, final long position, final int[] indices, final byte[][] pages) throws IOException {
+        channel.position(position);
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+
+        long size = position;
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            final byte[] compressed = new byte[pageSize];
+            for (int i = 0; i < indices.length; i++) {
+                final int index = indices[i];
+                final byte[] page = pages[i];
+
+                final int length;
+                if (page == null || isZero(page)) {
+                    length = 0;
+                    output.writeInt(index);
+                    output.writeInt(length);
+                } else {
+                    deflater.reset();
+                    deflater.setInput(page);
+                    deflater.finish();
+                    final int compressedLength = deflater.deflate(compressed);
+                    if (deflater.finished() && compressedLength < pageSize) {
+                        length = compressedLength;
+                        output.writeInt(index);
+                        output.writeInt(length);
+                        output.write(compressed, 0, length);
+                    } else {
+                        length = -pageSize;
+                        output.writeInt(index);
+                        output.writeInt(length);
+                        output.write(page, 0, pageSize);
+                    }
+                }
+
+                setRecordSize(index, RECORD_HEADER_SIZE + Math.abs(length));
+                size += RECORD_HEADER_SIZE + Math.abs(length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        // The pages must be on disk before the commit record referencing them, and the commit
+        // record must be on disk before the snapshot is considered written.
+        output.flush();
+        channel.force(false);
+
+        output.writeInt(COMMIT_MARKER);
+        output.writeInt(indices.length);
+        output.flush();
+        channel.force(false);
+
+        return size + RECORD_HEADER_SIZE;
+    }
+
+    private void setRecordSize(final int index, final int recordSize) {
+        liveSize += recordSize - recordSizes[index];
+        recordSizes[index] = recordSize;
+    }
+
+    private void updateShouldCompact() {
+        final long logSize = size - HEADER_SIZE;
+        shouldCompact = logSize > MIN_COMPACTION_SIZE && logSize > liveSize * COMPACTION_RATIO;
+    }
+
+    private static boolean isZero(final byte[] page) {
+        for (final byte value : page) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
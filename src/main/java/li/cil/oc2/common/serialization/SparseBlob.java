@@ -0,0 +1,252 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.serialization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A sparse, block addressed storage format for blobs from the {@link BlobStorage}.
+ * <p>
+ * Only blocks that have been allocated take up space in the underlying file. The file starts with
+ * a fixed size header, followed by an index mapping each logical block to its slot in the data
+ * section, which follows the index. Slots are allocated in order, by appending to the file.
+ * <p>
+ * The header stores an arbitrary tag, which can be used to identify the data the sparse blob was
+ * created for, e.g. the base image of a copy-on-write overlay.
+ */
+public final class SparseBlob {
+    private static final int MAGIC = 0x4F433253; // OC2S
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = 4;
+    private static final int UNALLOCATED = 0;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long tag;
+    private final int[] index; // Slot + 1 for each block; UNALLOCATED if not allocated.
+    private final long dataOffset;
+    private int allocatedBlockCount;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private SparseBlob(final FileChannel channel, final int blockSize, final long tag, final int[] index) {
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.tag = tag;
+        this.index = index;
+
+        final long indexEnd = HEADER_SIZE + (long) index.length * INDEX_ENTRY_SIZE;
+        this.dataOffset = (indexEnd + blockSize - 1) / blockSize * blockSize;
+
+        for (final int slot : index) {
+            if (slot != UNALLOCATED) {
+                allocatedBlockCount++;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Checks whether the specified file channel contains a sparse blob.
+     *
+     * @param channel the channel to check.
+     * @return {@code true} if the channel contains a sparse blob; {@code false} otherwise.
+     * @throws IOException if reading from the channel fails.
+     */
+    public static boolean isSparseBlob(final FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+
+        final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, magic, 0);
+        return magic.flip().getInt() == MAGIC;
+    }
+
+    /**
+     * Initializes a new, empty sparse blob in the specified file channel.
+     * <p>
+     * Any data in the channel will be discarded.
+     *
+     * @param channel    the channel to store the sparse blob in.
+     * @param blockSize  the size of a single block, in bytes.
+     * @param blockCount the number of blocks the sparse blob can store.
+     * @param tag        the tag identifying the data stored in the sparse blob.
+     * @return the new sparse blob.
+     * @throws IOException if writing to the channel fails.
+     */
+    public static SparseBlob create(final FileChannel channel, final int blockSize, final int blockCount, final long tag) throws IOException {
+        if (blockSize <= 0 || blockCount < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        channel.truncate(0);
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(blockSize);
+        header.putInt(blockCount);
+        header.putLong(tag);
+        writeFully(channel, header.clear(), 0);
+
+        // Leave the index as a hole, it gets filled in as blocks are allocated.
+        final SparseBlob blob = new SparseBlob(channel, blockSize, tag, new int[blockCount]);
+        writeFully(channel, ByteBuffer.allocate(1), blob.dataOffset - 1);
+
+        return blob;
+    }
+
+    /**
+     * Opens an existing sparse blob stored in the specified file channel.
+     *
+     * @param channel the channel containing the sparse blob.
+     * @return the sparse blob.
+     * @throws IOException if reading from the channel fails or it does not contain a valid sparse blob.
+     */
+    public static SparseBlob open(final FileChannel channel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a sparse blob.");
+        }
+        if (header.getInt() != VERSION) {
+            throw new IOException("Unsupported sparse blob version.");
+        }
+
+        final int blockSize = header.getInt();
+        final int blockCount = header.getInt();
+        final long tag = header.getLong();
+        if (blockSize <= 0 || blockCount < 0) {
+            throw new IOException("Corrupted sparse blob header.");
+        }
+        // Don't trust the block count to allocate the index, the blob may be truncated or corrupted.
+        if (blockCount > Integer.MAX_VALUE / INDEX_ENTRY_SIZE ||
+            HEADER_SIZE + (long) blockCount * INDEX_ENTRY_SIZE > channel.size()) {
+            throw new IOException("Corrupted sparse blob header.");
+        }
+
+        final ByteBuffer indexData = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+        readFully(channel, indexData, HEADER_SIZE);
+        final int[] index = new int[blockCount];
+        indexData.flip().asIntBuffer().get(index);
+
+        final SparseBlob blob = new SparseBlob(channel, blockSize, tag, index);
+        final long slotCount = (channel.size() - blob.dataOffset) / blockSize;
+        for (final int slot : index) {
+            if (slot < UNALLOCATED || slot > slotCount) {
+                throw new IOException("Corrupted sparse blob index.");
+            }
+        }
+
+        return blob;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return index.length;
+    }
+
+    public int getAllocatedBlockCount() {
+        return allocatedBlockCount;
+    }
+
+    public long getTag() {
+        return tag;
+    }
+
+    public boolean isAllocated(final int block) {
+        return index[block] != UNALLOCATED;
+    }
+
+    /**
+     * Reads data from an allocated block.
+     *
+     * @param block  the block to read from.
+     * @param offset the offset into the block to start reading at.
+     * @param dst    the buffer to read into. Will be filled up to its limit.
+     * @throws IOException if reading fails.
+     */
+    public void read(final int block, final int offset, final ByteBuffer dst) throws IOException {
+        readFully(channel, dst, getPosition(block, offset, dst.remaining()));
+    }
+
+    /**
+     * Writes data into an allocated block.
+     *
+     * @param block  the block to write to.
+     * @param offset the offset into the block to start writing at.
+     * @param src    the data to write. Will be written up to its limit.
+     * @throws IOException if writing fails.
+     */
+    public void write(final int block, final int offset, final ByteBuffer src) throws IOException {
+        writeFully(channel, src, getPosition(block, offset, src.remaining()));
+    }
+
+    /**
+     * Allocates a block and initializes it with the specified data.
+     *
+     * @param block the block to allocate. Must not be allocated yet.
+     * @param data  the initial data of the block. Must contain exactly one block of data.
+     * @throws IOException if writing fails.
+     */
+    public void allocate(final int block, final ByteBuffer data) throws IOException {
+        if (isAllocated(block)) {
+            throw new IllegalStateException("Block already allocated.");
+        }
+        if (data.remaining() != blockSize) {
+            throw new IllegalArgumentException("Data size does not match block size.");
+        }
+
+        final int slot = allocatedBlockCount;
+        writeFully(channel, data, dataOffset + (long) slot * blockSize);
+
+        // Write the index entry only after the data, so a partial write never references garbage.
+        final ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putInt(slot + 1);
+        writeFully(channel, entry.flip(), HEADER_SIZE + (long) block * INDEX_ENTRY_SIZE);
+
+        index[block] = slot + 1;
+        allocatedBlockCount++;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private long getPosition(final int block, final int offset, final int length) {
+        final int slot = index[block] - 1;
+        if (slot < 0) {
+            throw new IllegalStateException("Block not allocated.");
+        }
+        if (offset < 0 || length > blockSize - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        return dataOffset + (long) slot * blockSize + offset;
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            final int count = channel.read(dst, position);
+            if (count < 0) {
+                throw new IOException("Unexpected end of sparse blob.");
+            }
+            position += count;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+}
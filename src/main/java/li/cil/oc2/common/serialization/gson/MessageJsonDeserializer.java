@@ -17,9 +17,11 @@ public final class MessageJsonDeserializer implements JsonDeserializer<RPCDevice
             case RPCDeviceBusAdapter.Message.MESSAGE_TYPE_LIST -> null;
             case RPCDeviceBusAdapter.Message.MESSAGE_TYPE_METHODS -> UUID.fromString(jsonObject.getAsJsonPrimitive("data").getAsString());
             case RPCDeviceBusAdapter.Message.MESSAGE_TYPE_INVOKE_METHOD -> context.deserialize(jsonObject.getAsJsonObject("data"), RPCDeviceBusAdapter.MethodInvocation.class);
+            case RPCDeviceBusAdapter.Message.MESSAGE_TYPE_BATCH -> jsonObject.getAsJsonArray("data");
+            case RPCDeviceBusAdapter.Message.MESSAGE_TYPE_PROTOCOL -> jsonObject.getAsJsonPrimitive("data").getAsString();
             default -> throw new JsonParseException(RPCDeviceBusAdapter.ERROR_UNKNOWN_MESSAGE_TYPE);
         };
 
-        return new RPCDeviceBusAdapter.Message(messageType, messageData);
+        return new RPCDeviceBusAdapter.Message(messageType, messageData, jsonObject.get("id"));
     }
 }
@@ -2,10 +2,9 @@
 
 package li.cil.oc2.common.util;
 
-import li.cil.oc2.common.vm.Terminal;
+import li.cil.oc2.common.vm.TerminalSynchronizer;
 
 import java.nio.ByteBuffer;
-import java.util.function.Consumer;
 
 public final class TerminalUtils {
     private static final ByteBuffer TERMINAL_RESET_SEQUENCE = ByteBuffer.wrap(new byte[]{
@@ -17,11 +16,8 @@ public final class TerminalUtils {
 
     ///////////////////////////////////////////////////////////////////
 
-    public static void resetTerminal(final Terminal terminal, final Consumer<ByteBuffer> packetSender) {
+    public static void resetTerminal(final TerminalSynchronizer terminal) {
         TERMINAL_RESET_SEQUENCE.clear();
         terminal.putOutput(TERMINAL_RESET_SEQUENCE);
-
-        TERMINAL_RESET_SEQUENCE.flip();
-        packetSender.accept(TERMINAL_RESET_SEQUENCE);
     }
 }
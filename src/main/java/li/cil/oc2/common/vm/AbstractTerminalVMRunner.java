@@ -17,6 +17,9 @@ public abstract class AbstractTerminalVMRunner extends VMRunner {
     private final ByteArrayFIFOQueue outputBuffer = new ByteArrayFIFOQueue(1024);
     private final ByteArrayFIFOQueue inputBuffer = new ByteArrayFIFOQueue(32);
 
+    // Reused for passing output on, so runs do not allocate a new buffer each time.
+    private ByteBuffer output = ByteBuffer.allocate(1024);
+
     ///////////////////////////////////////////////////////////////////
 
     public AbstractTerminalVMRunner(final AbstractVirtualMachine virtualMachine, final Terminal terminal) {
@@ -27,7 +30,14 @@ public abstract class AbstractTerminalVMRunner extends VMRunner {
 
     ///////////////////////////////////////////////////////////////////
 
-    protected abstract void sendTerminalUpdateToClient(final ByteBuffer output);
+    /**
+     * Applies output produced during a run to the terminal, and queues it for sending to clients.
+     * <p>
+     * The passed buffer is reused for subsequent runs, so its contents must be copied if needed.
+     *
+     * @param output the output produced during the run.
+     */
+    protected abstract void putTerminalOutput(final ByteBuffer output);
 
     ///////////////////////////////////////////////////////////////////
 
@@ -35,10 +45,12 @@ public abstract class AbstractTerminalVMRunner extends VMRunner {
     protected void handleBeforeRun() {
         super.handleBeforeRun();
 
-        int value;
+        int value, count = 0;
         while ((value = terminal.readInput()) != -1) {
             inputBuffer.enqueue((byte) value);
+            count++;
         }
+        metrics.recordUartInput(count);
     }
 
     @Override
@@ -60,7 +72,18 @@ public abstract class AbstractTerminalVMRunner extends VMRunner {
     protected void handleAfterRun() {
         super.handleAfterRun();
 
-        final ByteBuffer output = ByteBuffer.allocate(outputBuffer.size());
+        final int size = outputBuffer.size();
+        metrics.recordUartOutput(size);
+
+        if (size == 0) {
+            return;
+        }
+
+        if (output.capacity() < size) {
+            output = ByteBuffer.allocate(size);
+        }
+
+        output.clear();
         while (!outputBuffer.isEmpty()) {
             output.put(outputBuffer.dequeueByte());
         }
@@ -68,15 +91,4 @@ public abstract class AbstractTerminalVMRunner extends VMRunner {
         output.flip();
         putTerminalOutput(output);
     }
-
-    ///////////////////////////////////////////////////////////////////
-
-    private void putTerminalOutput(final ByteBuffer output) {
-        if (output.hasRemaining()) {
-            terminal.putOutput(output);
-
-            output.flip();
-            sendTerminalUpdateToClient(output);
-        }
-    }
 }
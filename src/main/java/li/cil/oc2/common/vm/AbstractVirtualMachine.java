@@ -56,6 +56,7 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
     }
 
     public final SerializedState state = new SerializedState();
+    public final VMMetrics metrics = new VMMetrics();
     public AbstractTerminalVMRunner runner;
     private VMRunState runState = VMRunState.STOPPED;
     @Nullable private Component bootError;
@@ -71,7 +72,7 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
         busController.onDevicesRemoved.add(this::handleDevicesRemoved);
 
         state.board = new R5Board();
-        state.context = new GlobalVMContext(state.board);
+        state.context = new GlobalVMContext(state.board, this::getMemoryAccount);
         state.builtinDevices = new BuiltinDevices(state.context);
         state.rpcAdapter = new RPCDeviceBusAdapter(state.builtinDevices.rpcSerialDevice);
         state.vmAdapter = new VMDeviceBusAdapter(state.context);
@@ -84,12 +85,14 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
     ///////////////////////////////////////////////////////////////////
 
     public void dispose() {
+        VMProfiler.unregister(this);
         joinWorkerThread();
         state.context.invalidate();
         busController.dispose();
     }
 
     public void suspend() {
+        VMProfiler.unregister(this);
         joinWorkerThread();
         state.vmAdapter.unmountDevices();
         state.rpcAdapter.unmountDevices();
@@ -230,10 +233,28 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
 
     ///////////////////////////////////////////////////////////////////
 
+    /**
+     * A short description of this virtual machine and where it is, used in diagnostics.
+     *
+     * @return the description of this virtual machine.
+     */
+    public abstract Component getDescription();
+
     protected abstract AbstractTerminalVMRunner createRunner();
 
     protected abstract boolean consumeEnergy(final int amount, final boolean simulate);
 
+    /**
+     * The account memory claimed by devices of this virtual machine is accounted to.
+     * <p>
+     * Queried when devices are loaded, so the returned account may change over time.
+     *
+     * @return the account to claim memory for.
+     */
+    protected Allocator.Account getMemoryAccount() {
+        return Allocator.Account.UNASSIGNED;
+    }
+
     protected void handleBusStateChanged(final CommonDeviceBusController.BusState value) {
     }
 
@@ -255,6 +276,7 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
     }
 
     protected void stopRunnerAndReset() {
+        VMProfiler.unregister(this);
         joinWorkerThread();
         setRunState(VMRunState.STOPPED);
 
@@ -331,6 +353,7 @@ public abstract class AbstractVirtualMachine implements VirtualMachine {
         state.rpcAdapter.mountDevices();
 
         setRunState(VMRunState.RUNNING);
+        VMProfiler.register(this);
 
         // Only start running next tick. Doing so gives loaded devices one tick to do async
         // initialization. This is used by devices to restore data from disk, for example.
@@ -4,15 +4,16 @@ package li.cil.oc2.common.vm;
 
 import li.cil.oc2.api.API;
 import li.cil.oc2.common.Config;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
 import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.UUID;
+import javax.annotation.Nullable;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -20,6 +21,11 @@ import java.util.stream.Collectors;
  * <p>
  * Call sites must be cooperative and only free claimed memory when actually being sure the
  * allocated memory associated with the claim will be garbage collected.
+ * <p>
+ * Memory is claimed for an {@link Account}, i.e. the dimension a virtual machine is in and
+ * the player owning it. A claim must fit into the global limit, the limit for its dimension
+ * and the limit for its owner. This way a single player or dimension cannot use up all memory
+ * available on a server.
  */
 @Mod.EventBusSubscriber(modid = API.MOD_ID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public final class Allocator {
@@ -27,7 +33,24 @@ public final class Allocator {
 
     ///////////////////////////////////////////////////////////////////
 
+    /**
+     * What claimed memory is accounted to.
+     *
+     * @param dimension the dimension the memory is used in, if known.
+     * @param owner     the player owning the memory, if known.
+     */
+    public record Account(@Nullable ResourceKey<Level> dimension, @Nullable UUID owner) {
+        /**
+         * Account for memory only counting towards the global limit.
+         */
+        public static final Account UNASSIGNED = new Account(null, null);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
     private static final HashMap<UUID, Allocation> ALLOCATIONS = new HashMap<>();
+    private static final HashMap<ResourceKey<Level>, Long> ALLOCATED_BY_DIMENSION = new HashMap<>();
+    private static final HashMap<UUID, Long> ALLOCATED_BY_OWNER = new HashMap<>();
     private static long allocated;
 
     ///////////////////////////////////////////////////////////////////
@@ -46,17 +69,24 @@ public final class Allocator {
      * <p>
      * Claimed memory <em>must</em> be returned using {@link #freeMemory(UUID)} to prevent leaks.
      *
-     * @param handle the handle to use for claiming memory.
-     * @param size   the amount of memory to claim.
+     * @param handle  the handle to use for claiming memory.
+     * @param size    the amount of memory to claim.
+     * @param account the account to claim the memory for.
      * @return {@code true} if the memory was successfully claimed; {@code false} otherwise.
      */
-    public static boolean claimMemory(final UUID handle, final int size) {
-        if (!checkArgs(handle, size)) {
+    public static boolean claimMemory(final UUID handle, final int size, final Account account) {
+        if (!checkArgs(handle, size, account)) {
             return false;
         }
         if (size != 0) {
-            ALLOCATIONS.put(handle, new Allocation(size));
+            ALLOCATIONS.put(handle, new Allocation(size, account));
             allocated += size;
+            if (account.dimension() != null) {
+                ALLOCATED_BY_DIMENSION.merge(account.dimension(), (long) size, Long::sum);
+            }
+            if (account.owner() != null) {
+                ALLOCATED_BY_OWNER.merge(account.owner(), (long) size, Long::sum);
+            }
         }
         return true;
     }
@@ -73,22 +103,64 @@ public final class Allocator {
         final Allocation allocation = ALLOCATIONS.remove(handle);
         if (allocation != null) {
             allocated -= allocation.size;
+            if (allocation.account.dimension() != null) {
+                release(ALLOCATED_BY_DIMENSION, allocation.account.dimension(), allocation.size);
+            }
+            if (allocation.account.owner() != null) {
+                release(ALLOCATED_BY_OWNER, allocation.account.owner(), allocation.size);
+            }
         }
     }
 
     /**
-     * Clears all remaining allocations and logs their stack traces.
+     * The total amount of memory currently claimed.
+     *
+     * @return the claimed memory, in bytes.
+     */
+    public static long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * The amount of memory currently claimed in each dimension, for dimensions with claimed memory.
+     *
+     * @return the claimed memory per dimension, in bytes.
+     */
+    public static Map<ResourceKey<Level>, Long> getAllocatedByDimension() {
+        return new HashMap<>(ALLOCATED_BY_DIMENSION);
+    }
+
+    /**
+     * The amount of memory currently claimed by each owner, for owners with claimed memory.
+     *
+     * @return the claimed memory per owner, in bytes.
+     */
+    public static Map<UUID, Long> getAllocatedByOwner() {
+        return new HashMap<>(ALLOCATED_BY_OWNER);
+    }
+
+    /**
+     * Clears all remaining allocations and logs them.
+     * <p>
+     * Where the leaked allocations were made is only logged if
+     * {@link Config#trackMemoryAllocationStackTraces} is enabled.
      */
     public static void resetAndCheckLeaks() {
         if (allocated > 0) {
             for (final Allocation allocation : ALLOCATIONS.values()) {
-                // Skip first three: Allocator::claimMemory, Allocation::new, Throwable::getStacktrace
-                LOGGER.error(Arrays.stream(allocation.stacktrace).skip(3).map(StackTraceElement::toString)
-                    .collect(Collectors.joining("\n  ", "Leaked memory allocation:\n  ", "")));
+                if (allocation.stacktrace != null) {
+                    // Skip first three: Allocator::claimMemory, Allocation::new, Throwable::getStacktrace
+                    LOGGER.error(Arrays.stream(allocation.stacktrace).skip(3).map(StackTraceElement::toString)
+                        .collect(Collectors.joining("\n  ", "Leaked memory allocation:\n  ", "")));
+                } else {
+                    LOGGER.error("Leaked memory allocation of {} bytes for {}.", allocation.size, allocation.account);
+                }
             }
         }
 
         ALLOCATIONS.clear();
+        ALLOCATED_BY_DIMENSION.clear();
+        ALLOCATED_BY_OWNER.clear();
         allocated = 0;
     }
 
@@ -101,23 +173,45 @@ public final class Allocator {
 
     ///////////////////////////////////////////////////////////////////
 
-    private static boolean checkArgs(final UUID handle, final int size) {
+    private static boolean checkArgs(final UUID handle, final int size, final Account account) {
         if (ALLOCATIONS.containsKey(handle)) {
             throw new IllegalStateException("Handle is already in use. It must be freed before it can be reused.");
         }
         if (size < 0) {
             throw new IllegalArgumentException();
         }
-        return Config.maxAllocatedMemory - size >= allocated;
+        if (Config.maxAllocatedMemory - size < allocated) {
+            return false;
+        }
+        if (account.dimension() != null && !fitsLimit(Config.maxAllocatedMemoryPerDimension,
+            ALLOCATED_BY_DIMENSION.getOrDefault(account.dimension(), 0L), size)) {
+            return false;
+        }
+        if (account.owner() != null && !fitsLimit(Config.maxAllocatedMemoryPerOwner,
+            ALLOCATED_BY_OWNER.getOrDefault(account.owner(), 0L), size)) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean fitsLimit(final long limit, final long allocated, final int size) {
+        // Non-positive limits mean there is no limit besides the global one.
+        return limit <= 0 || limit - size >= allocated;
+    }
+
+    private static <T> void release(final HashMap<T, Long> allocatedByKey, final T key, final int size) {
+        allocatedByKey.computeIfPresent(key, (unused, value) -> value > size ? value - size : null);
     }
 
     private static final class Allocation {
         public final int size;
-        private final StackTraceElement[] stacktrace;
+        public final Account account;
+        @Nullable private final StackTraceElement[] stacktrace;
 
-        private Allocation(final int size) {
+        private Allocation(final int size, final Account account) {
             this.size = size;
-            this.stacktrace = new Throwable().getStackTrace();
+            this.account = account;
+            this.stacktrace = Config.trackMemoryAllocationStackTraces ? new Throwable().getStackTrace() : null;
         }
     }
 }
@@ -0,0 +1,80 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Detects whether a hart is parked in a {@code WFI} instruction.
+ * <p>
+ * The CPU implementation does not expose this state, so we look up its internal flag once per
+ * CPU type. The CPU clears this flag by itself as soon as an enabled interrupt is raised, be it
+ * by the timer, the UART, the RPC serial device or any VirtIO device. This means a hart that is
+ * reported as waiting has no interrupts pending that it could handle.
+ * <p>
+ * If the flag cannot be found, harts are never reported as idle, which is the old behaviour.
+ */
+public final class HartIdleDetector {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final String WAITING_FOR_INTERRUPT_FIELD_NAME = "waitingForInterrupt";
+
+    private static final ClassValue<Optional<MethodHandle>> GETTERS = new ClassValue<>() {
+        @Override
+        protected Optional<MethodHandle> computeValue(final Class<?> type) {
+            return findGetter(type);
+        }
+    };
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Creates a supplier that reports whether the specified hart is currently waiting for an
+     * interrupt.
+     *
+     * @param cpu the CPU to create the detector for.
+     * @return a supplier returning {@code true} while the hart is parked.
+     */
+    public static BooleanSupplier create(final Object cpu) {
+        final Optional<MethodHandle> getter = GETTERS.get(cpu.getClass());
+        if (getter.isEmpty()) {
+            return () -> false;
+        }
+
+        final MethodHandle boundGetter = getter.get().bindTo(cpu);
+        return () -> {
+            try {
+                return (boolean) boundGetter.invokeExact();
+            } catch (final Throwable e) {
+                return false;
+            }
+        };
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static Optional<MethodHandle> findGetter(final Class<?> cpuType) {
+        for (Class<?> type = cpuType; type != null; type = type.getSuperclass()) {
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+                final MethodHandle getter = lookup.findGetter(type, WAITING_FOR_INTERRUPT_FIELD_NAME, boolean.class);
+                return Optional.of(getter.asType(MethodType.methodType(boolean.class, Object.class)));
+            } catch (final NoSuchFieldException ignored) {
+            } catch (final IllegalAccessException | SecurityException e) {
+                break;
+            }
+        }
+
+        LOGGER.warn("Failed finding wait-for-interrupt state of CPU type [{}], idle harts will keep being stepped.", cpuType.getName());
+        return Optional.empty();
+    }
+}
@@ -2,15 +2,17 @@
 
 package li.cil.oc2.common.vm;
 
+import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.*;
 import com.mojang.math.Matrix4f;
 import it.unimi.dsi.fastutil.bytes.ByteArrayFIFOQueue;
 import li.cil.ceres.api.Serialized;
 import li.cil.oc2.api.API;
+import li.cil.oc2.client.renderer.ModShaders;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.ShaderInstance;
+import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.resources.sounds.SimpleSoundInstance;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.block.state.properties.NoteBlockInstrument;
@@ -25,6 +27,8 @@ import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.util.Objects.requireNonNull;
+
 // VT100 emulation: https://vt100.net/docs/vt100-ug/chapter3.html
 @Serialized
 public final class Terminal {
@@ -33,6 +37,7 @@ public final class Terminal {
     public static final int CHAR_HEIGHT = 16;
 
     private static final int TAB_WIDTH = 4;
+    private static final int ALL_LINES_MASK = (1 << HEIGHT) - 1;
 
     @SuppressWarnings("unused")
     private static final class Color {
@@ -116,6 +121,9 @@ public final class Terminal {
     private transient boolean displayOnly; // Set on client to not send responses to status requests.
     private transient boolean hasPendingBell;
 
+    // Tracks changed lines on the server, for sending only those to clients displaying the terminal.
+    @Nullable private transient ChangeTracker changeTracker;
+
     ///////////////////////////////////////////////////////////////////
 
     public Terminal() {
@@ -161,6 +169,76 @@ public final class Terminal {
         }
     }
 
+    /**
+     * Gets the lines that changed since the last call to this method. The first call starts
+     * tracking changes, and reports all lines as changed.
+     *
+     * @return a mask where bit {@code i} is set if line {@code i} changed.
+     */
+    public synchronized int takeChangedLines() {
+        if (changeTracker == null) {
+            changeTracker = new ChangeTracker();
+            renderers.add(changeTracker);
+        }
+
+        return changeTracker.getDirtyMask().getAndSet(0) & ALL_LINES_MASK;
+    }
+
+    /**
+     * Writes the contents of the specified lines and the cursor position into a new buffer, so they
+     * can be applied to another terminal using {@link #putLines(ByteBuffer)}.
+     *
+     * @param lineMask a mask where bit {@code i} is set if line {@code i} should be written.
+     * @return the buffer containing the lines.
+     */
+    public synchronized ByteBuffer getLines(final int lineMask) {
+        final int mask = lineMask & ALL_LINES_MASK;
+        final ByteBuffer data = ByteBuffer.allocate(Integer.BYTES + 2 + Integer.bitCount(mask) * WIDTH * 3);
+        data.putInt(mask);
+        data.put((byte) x);
+        data.put((byte) y);
+        for (int line = 0; line < HEIGHT; line++) {
+            if ((mask & (1 << line)) != 0) {
+                data.put(buffer, line * WIDTH, WIDTH);
+                data.put(colors, line * WIDTH, WIDTH);
+                data.put(styles, line * WIDTH, WIDTH);
+            }
+        }
+
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Replaces lines and the cursor position with data written by {@link #getLines(int)}.
+     * <p>
+     * This only updates what is displayed, not the state of the escape sequence parser, so this
+     * is meant for terminals that are only used to display the contents of another terminal.
+     *
+     * @param data the buffer containing the lines.
+     */
+    public synchronized void putLines(final ByteBuffer data) {
+        final int mask = data.getInt() & ALL_LINES_MASK;
+        x = data.get();
+        y = data.get();
+        for (int line = 0; line < HEIGHT; line++) {
+            if ((mask & (1 << line)) != 0) {
+                data.get(buffer, line * WIDTH, WIDTH);
+                data.get(colors, line * WIDTH, WIDTH);
+                data.get(styles, line * WIDTH, WIDTH);
+            }
+        }
+
+        renderers.forEach(model -> model.getDirtyMask().accumulateAndGet(mask, (left, right) -> left | right));
+    }
+
+    /**
+     * Marks all lines as changed, e.g. after the state of this terminal was deserialized.
+     */
+    public void markAllLinesChanged() {
+        renderers.forEach(model -> model.getDirtyMask().set(-1));
+    }
+
     public synchronized int readInput() {
         if (input.isEmpty()) {
             return -1;
@@ -682,40 +760,31 @@ public final class Terminal {
         void close();
     }
 
+    private static final class ChangeTracker implements RendererModel {
+        private final AtomicInteger dirty = new AtomicInteger(-1);
+
+        @Override
+        public AtomicInteger getDirtyMask() {
+            return dirty;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     @OnlyIn(Dist.CLIENT)
     private static final class Renderer implements RendererModel, RendererView {
         private static final ResourceLocation LOCATION_FONT_TEXTURE = new ResourceLocation(API.MOD_ID, "textures/font/terminus.png");
-        private static final int TEXTURE_RESOLUTION = 256;
-        private static final float ONE_OVER_TEXTURE_RESOLUTION = 1.0f / (float) TEXTURE_RESOLUTION;
-        private static final int TEXTURE_COLUMNS = 16;
-        private static final int TEXTURE_BOLD_SHIFT = TEXTURE_COLUMNS; // Bold chars are in right half of texture.
-
-        private static final int[] COLORS = {
-            0x010101, // Black
-            0xEE3322, // Red
-            0x33DD44, // Green
-            0xFFCC11, // Yellow
-            0x1188EE, // Blue
-            0xDD33CC, // Magenta
-            0x22CCDD, // Cyan
-            0xEEEEEE, // White
-        };
-
-        private static final int[] DIM_COLORS = {
-            0x010101, // Black
-            0x772211, // Red
-            0x116622, // Green
-            0x886611, // Yellow
-            0x115588, // Blue
-            0x771177, // Magenta
-            0x116677, // Cyan
-            0x777777, // White
-        };
 
         ///////////////////////////////////////////////////////////////
 
         private final Terminal terminal;
-        private final VertexBuffer[] lines = new VertexBuffer[HEIGHT];
+
+        // One pixel per cell: character in red, colors in green and style in blue. Glyphs are
+        // looked up from this in the terminal shader, so the whole terminal is a single quad.
+        @Nullable private DynamicTexture cells;
+        @Nullable private VertexBuffer quad;
 
         private final AtomicInteger dirty = new AtomicInteger(-1);
 
@@ -729,12 +798,23 @@ public final class Terminal {
 
         @Override
         public void render(final PoseStack stack, final Matrix4f projectionMatrix) {
-            validateLineCache();
-            renderBuffer(stack, projectionMatrix);
-
-            if ((System.currentTimeMillis() + terminal.hashCode()) % 1000 > 500) {
-                renderCursor(stack);
+            final ShaderInstance shader = ModShaders.getTerminalShader();
+            if (shader == null) {
+                return;
             }
+
+            validateCells();
+            validateQuad();
+
+            final boolean isCursorVisible = (System.currentTimeMillis() + terminal.hashCode()) % 1000 > 500;
+            ModShaders.configureTerminalShader(cells, isCursorVisible ? terminal.x : -1, isCursorVisible ? terminal.y : -1);
+
+            RenderSystem.depthMask(false);
+            RenderSystem.setShaderTexture(0, LOCATION_FONT_TEXTURE);
+
+            quad.drawWithShader(stack.last().pose(), projectionMatrix, shader);
+
+            RenderSystem.depthMask(true);
         }
 
         @Override
@@ -744,208 +824,68 @@ public final class Terminal {
 
         @Override
         public void close() {
-            for (int i = 0; i < lines.length; i++) {
-                final VertexBuffer line = lines[i];
-                if (line != null) {
-                    line.close();
-                    lines[i] = null;
-                }
+            if (cells != null) {
+                cells.close();
+                cells = null;
             }
+            if (quad != null) {
+                quad.close();
+                quad = null;
+            }
+            dirty.set(-1);
         }
 
         ///////////////////////////////////////////////////////////////
 
-        private void renderBuffer(final PoseStack stack, final Matrix4f projectionMatrix) {
-            final ShaderInstance shader = GameRenderer.getPositionColorTexShader();
-            if (shader == null) {
-                return;
-            }
-
-            RenderSystem.depthMask(false);
-            RenderSystem.setShaderTexture(0, LOCATION_FONT_TEXTURE);
-
-            for (final VertexBuffer line : lines) {
-                line.drawWithShader(stack.last().pose(), projectionMatrix, shader);
+        private void validateCells() {
+            if (cells == null) {
+                cells = new DynamicTexture(WIDTH, HEIGHT, false);
+                dirty.set(-1);
             }
 
-            RenderSystem.depthMask(true);
-        }
-
-        private void validateLineCache() {
-            if (dirty.get() == 0) {
+            final int mask = dirty.getAndSet(0);
+            if (mask == 0) {
                 return;
             }
 
-            final BufferBuilder builder = Tesselator.getInstance().getBuilder();
-
-            final int mask = dirty.getAndSet(0);
-            for (int row = 0; row < lines.length; row++) {
+            final NativeImage image = requireNonNull(cells.getPixels());
+            for (int row = 0; row < HEIGHT; row++) {
                 if ((mask & (1 << row)) == 0) {
                     continue;
                 }
 
-                final Matrix4f matrix = Matrix4f.createTranslateMatrix(0, row * CHAR_HEIGHT, 0);
-
-                builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR_TEX);
-
-                renderBackground(matrix, builder, row);
-                renderForeground(matrix, builder, row);
-
-                builder.end();
-
-                if (lines[row] == null) {
-                    lines[row] = new VertexBuffer();
+                for (int col = 0, index = row * WIDTH; col < WIDTH; col++, index++) {
+                    // NativeImage pixels are ABGR.
+                    image.setPixelRGBA(col, row, 0xFF000000 |
+                        (terminal.styles[index] & 0xFF) << 16 |
+                        (terminal.colors[index] & 0xFF) << 8 |
+                        (terminal.buffer[index] & 0xFF));
                 }
-
-                lines[row].upload(builder);
-            }
-        }
-
-        private void renderBackground(final Matrix4f matrix, final BufferBuilder buffer, final int row) {
-            // State tracking for drawing background quads spanning multiple characters.
-            float backgroundStartX = -1;
-            int backgroundColor = 0;
-
-            float tx = 0f;
-            for (int col = 0, index = row * WIDTH; col < WIDTH; col++, index++) {
-                final byte colors = terminal.colors[index];
-                final byte style = terminal.styles[index];
-
-                if ((style & STYLE_HIDDEN_MASK) != 0) continue;
-
-                final int[] palette = (style & STYLE_DIM_MASK) != 0 ? DIM_COLORS : COLORS;
-
-                final int foregroundIndex = (colors >> COLOR_FOREGROUND_SHIFT) & COLOR_MASK;
-                final int backgroundIndex = colors & COLOR_MASK;
-                final int background = palette[(style & STYLE_INVERT_MASK) == 0 ? backgroundIndex : foregroundIndex];
-
-                final boolean hadBackground = backgroundStartX >= 0;
-                final boolean hasBackground = background != palette[0];
-                if (!hadBackground && hasBackground) {
-                    backgroundStartX = tx;
-                    backgroundColor = background;
-                } else if (hadBackground && (!hasBackground || backgroundColor != background)) {
-                    renderBackground(matrix, buffer, backgroundStartX, tx, backgroundColor);
-
-                    if (hasBackground) {
-                        backgroundStartX = tx;
-                        backgroundColor = background;
-                    } else {
-                        backgroundStartX = -1;
-                    }
-                }
-
-                tx += CHAR_WIDTH;
-            }
-
-            if (backgroundStartX >= 0) {
-                renderBackground(matrix, buffer, backgroundStartX, tx, backgroundColor);
-            }
-        }
-
-        private void renderBackground(final Matrix4f matrix, final BufferBuilder buffer, final float x0, final float x1, final int color) {
-            final float r = ((color >> 16) & 0xFF) / 255f;
-            final float g = ((color >> 8) & 0xFF) / 255f;
-            final float b = (color & 0xFF) / 255f;
-
-            final float ulu = (TEXTURE_RESOLUTION - 1) / (float) TEXTURE_RESOLUTION;
-            final float ulv = 1 / (float) TEXTURE_RESOLUTION;
-
-            buffer.vertex(matrix, x0, CHAR_HEIGHT, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-            buffer.vertex(matrix, x1, CHAR_HEIGHT, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-            buffer.vertex(matrix, x1, 0, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-            buffer.vertex(matrix, x0, 0, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-        }
-
-        private void renderForeground(final Matrix4f matrix, final BufferBuilder buffer, final int row) {
-            float tx = 0f;
-            for (int col = 0, index = row * WIDTH; col < WIDTH; col++, index++) {
-                final byte colors = terminal.colors[index];
-                final byte style = terminal.styles[index];
-
-                if ((style & STYLE_HIDDEN_MASK) != 0) continue;
-
-                final int[] palette = (style & STYLE_DIM_MASK) != 0 ? DIM_COLORS : COLORS;
-
-                final int foregroundIndex = (colors >> COLOR_FOREGROUND_SHIFT) & COLOR_MASK;
-                final int backgroundIndex = colors & COLOR_MASK;
-                final int foreground = palette[(style & STYLE_INVERT_MASK) == 0 ? foregroundIndex : backgroundIndex];
-
-                final int character = terminal.buffer[index] & 0xFF;
-
-                renderForeground(matrix, buffer, tx, character, foreground, style);
-
-                tx += CHAR_WIDTH;
             }
-        }
-
-        private void renderForeground(final Matrix4f matrix, final BufferBuilder buffer, final float offset, final int character, final int color, final byte style) {
-            final float r = ((color >> 16) & 0xFF) / 255f;
-            final float g = ((color >> 8) & 0xFF) / 255f;
-            final float b = (color & 0xFF) / 255f;
-
-            if (isPrintableCharacter((char) character)) {
-                final int x = character % TEXTURE_COLUMNS + ((style & STYLE_BOLD_MASK) != 0 ? TEXTURE_BOLD_SHIFT : 0);
-                final int y = character / TEXTURE_COLUMNS;
-                final float u0 = x * (CHAR_WIDTH * ONE_OVER_TEXTURE_RESOLUTION);
-                final float u1 = (x + 1) * (CHAR_WIDTH * ONE_OVER_TEXTURE_RESOLUTION);
-                final float v0 = y * (CHAR_HEIGHT * ONE_OVER_TEXTURE_RESOLUTION);
-                final float v1 = (y + 1) * (CHAR_HEIGHT * ONE_OVER_TEXTURE_RESOLUTION);
 
-                buffer.vertex(matrix, offset, CHAR_HEIGHT, 0).color(r, g, b, 1).uv(u0, v1).endVertex();
-                buffer.vertex(matrix, offset + CHAR_WIDTH, CHAR_HEIGHT, 0).color(r, g, b, 1).uv(u1, v1).endVertex();
-                buffer.vertex(matrix, offset + CHAR_WIDTH, 0, 0).color(r, g, b, 1).uv(u1, v0).endVertex();
-                buffer.vertex(matrix, offset, 0, 0).color(r, g, b, 1).uv(u0, v0).endVertex();
-            }
-
-            if ((style & STYLE_UNDERLINE_MASK) != 0) {
-                final float ulu = (TEXTURE_RESOLUTION - 1) / (float) TEXTURE_RESOLUTION;
-                final float ulv = 1 / (float) TEXTURE_RESOLUTION;
-
-                buffer.vertex(matrix, offset, CHAR_HEIGHT - 3, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-                buffer.vertex(matrix, offset + CHAR_WIDTH, CHAR_HEIGHT - 3, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-                buffer.vertex(matrix, offset + CHAR_WIDTH, CHAR_HEIGHT - 2, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-                buffer.vertex(matrix, offset, CHAR_HEIGHT - 2, 0).color(r, g, b, 1).uv(ulu, ulv).endVertex();
-            }
+            cells.upload();
         }
 
-        private void renderCursor(final PoseStack stack) {
-            if (terminal.x < 0 || terminal.x >= WIDTH || terminal.y < 0 || terminal.y >= HEIGHT) {
+        private void validateQuad() {
+            if (quad != null) {
                 return;
             }
 
-            RenderSystem.depthMask(false);
-            RenderSystem.setShader(GameRenderer::getPositionColorShader);
-
-            stack.pushPose();
-            stack.translate(terminal.x * CHAR_WIDTH, terminal.y * CHAR_HEIGHT, 0);
+            final float width = WIDTH * CHAR_WIDTH;
+            final float height = HEIGHT * CHAR_HEIGHT;
 
-            final Matrix4f matrix = stack.last().pose();
-            final BufferBuilder buffer = Tesselator.getInstance().getBuilder();
-            buffer.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_COLOR);
-
-            final int foreground = COLORS[Color.WHITE];
-            final float r = ((foreground >> 16) & 0xFF) / 255f;
-            final float g = ((foreground >> 8) & 0xFF) / 255f;
-            final float b = ((foreground) & 0xFF) / 255f;
-
-            buffer.vertex(matrix, 0, CHAR_HEIGHT, 0).color(r, g, b, 1).endVertex();
-            buffer.vertex(matrix, CHAR_WIDTH, CHAR_HEIGHT, 0).color(r, g, b, 1).endVertex();
-            buffer.vertex(matrix, CHAR_WIDTH, 0, 0).color(r, g, b, 1).endVertex();
-            buffer.vertex(matrix, 0, 0, 0).color(r, g, b, 1).endVertex();
-
-            buffer.end();
-            BufferUploader.end(buffer);
+            final BufferBuilder builder = Tesselator.getInstance().getBuilder();
+            builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
 
-            stack.popPose();
+            builder.vertex(0, height, 0).uv(0, 1).endVertex();
+            builder.vertex(width, height, 0).uv(1, 1).endVertex();
+            builder.vertex(width, 0, 0).uv(1, 0).endVertex();
+            builder.vertex(0, 0, 0).uv(0, 0).endVertex();
 
-            RenderSystem.depthMask(true);
-        }
+            builder.end();
 
-        private static boolean isPrintableCharacter(final char ch) {
-            return ch == 0 ||
-                (ch > ' ' && ch <= '~') ||
-                ch >= 177;
+            quad = new VertexBuffer();
+            quad.upload(builder);
         }
     }
 }
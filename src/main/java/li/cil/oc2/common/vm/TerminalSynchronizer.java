@@ -0,0 +1,140 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import li.cil.oc2.common.serialization.NBTSerialization;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Keeps the terminals on clients in sync with a terminal on the server.
+ * <p>
+ * Players using the terminal, i.e. having its screen open, receive the raw output of the virtual
+ * machine, so their terminal behaves exactly like the one on the server. When a player starts
+ * using the terminal, they first receive the full state of the terminal to continue from.
+ * <p>
+ * All clients tracking the terminal host receive the lines that changed during the last tick.
+ * This way, the traffic for clients merely displaying the terminal is limited to one screen
+ * worth of lines per tick, no matter how much output the virtual machine produces. For clients
+ * that also received the raw output, these lines match what they already have.
+ * <p>
+ * Output may be added from any thread. Updates are sent once per tick from the server thread.
+ */
+public abstract class TerminalSynchronizer {
+    // Pending raw output exceeding this is dropped, and users receive the full state instead.
+    private static final int MAX_PENDING_OUTPUT_SIZE = 16 * 1024;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final Terminal terminal;
+
+    // Guarded by the terminal, which is also locked while it processes output.
+    private final Set<ServerPlayer> outputReceivers = new HashSet<>();
+    private final ByteBuffer pendingOutput = ByteBuffer.allocate(MAX_PENDING_OUTPUT_SIZE);
+    private boolean hasPendingOutputOverflowed;
+
+    ///////////////////////////////////////////////////////////////////
+
+    protected TerminalSynchronizer(final Terminal terminal) {
+        this.terminal = terminal;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Applies output to the terminal, and queues it for sending to players using the terminal.
+     *
+     * @param output the output to apply.
+     */
+    public void putOutput(final ByteBuffer output) {
+        synchronized (terminal) {
+            final int position = output.position();
+            terminal.putOutput(output);
+
+            if (outputReceivers.isEmpty() || hasPendingOutputOverflowed) {
+                return;
+            }
+
+            output.position(position);
+            if (output.remaining() > pendingOutput.remaining()) {
+                hasPendingOutputOverflowed = true;
+                pendingOutput.clear();
+            } else {
+                pendingOutput.put(output);
+            }
+        }
+    }
+
+    /**
+     * Sends pending output to players using the terminal, and changed lines to all tracking clients.
+     * <p>
+     * Must be called once per tick on the server thread.
+     *
+     * @param users the players currently using the terminal.
+     */
+    public void tick(final Iterable<Player> users) {
+        final Set<ServerPlayer> currentUsers = new HashSet<>();
+        for (final Player user : users) {
+            if (user instanceof final ServerPlayer serverPlayer) {
+                currentUsers.add(serverPlayer);
+            }
+        }
+
+        final List<ServerPlayer> receivers = new ArrayList<>();
+        final List<ServerPlayer> newUsers = new ArrayList<>();
+        ByteBuffer output = null;
+        CompoundTag state = null;
+        ByteBuffer lines = null;
+
+        synchronized (terminal) {
+            outputReceivers.retainAll(currentUsers);
+            if (hasPendingOutputOverflowed) {
+                // Output was lost, so everyone has to start over from the full state.
+                hasPendingOutputOverflowed = false;
+                outputReceivers.clear();
+            }
+
+            if (pendingOutput.position() > 0 && !outputReceivers.isEmpty()) {
+                output = ByteBuffer.wrap(Arrays.copyOf(pendingOutput.array(), pendingOutput.position()));
+                receivers.addAll(outputReceivers);
+            }
+            pendingOutput.clear();
+
+            for (final ServerPlayer user : currentUsers) {
+                if (outputReceivers.add(user)) {
+                    newUsers.add(user);
+                }
+            }
+            if (!newUsers.isEmpty()) {
+                state = NBTSerialization.serialize(terminal);
+            }
+
+            final int changedLines = terminal.takeChangedLines();
+            if (changedLines != 0) {
+                lines = terminal.getLines(changedLines);
+            }
+        }
+
+        if (output != null) {
+            sendOutput(output, receivers);
+        }
+        if (state != null) {
+            sendState(state, newUsers);
+        }
+        if (lines != null) {
+            sendLines(lines);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    protected abstract void sendOutput(final ByteBuffer output, final Collection<ServerPlayer> players);
+
+    protected abstract void sendState(final CompoundTag state, final Collection<ServerPlayer> players);
+
+    protected abstract void sendLines(final ByteBuffer lines);
+}
@@ -0,0 +1,106 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution statistics of a single virtual machine.
+ * <p>
+ * Counters are written by the thread running the virtual machine and may be read from any
+ * thread. Per-tick averages are updated in {@link #tick()}, which must be called from the server
+ * thread once per tick while the virtual machine is running.
+ */
+public final class VMMetrics {
+    // Weight of the latest tick in the moving averages. Roughly averages over the last five seconds.
+    private static final double AVERAGE_WEIGHT = 0.01;
+
+    ///////////////////////////////////////////////////////////////////
+
+    private final AtomicLong cycles = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong slices = new AtomicLong();
+    private final AtomicLong overrunSlices = new AtomicLong();
+    private final AtomicLong rpcMessages = new AtomicLong();
+    private final AtomicLong uartBytesIn = new AtomicLong();
+    private final AtomicLong uartBytesOut = new AtomicLong();
+    private volatile long lastSliceNanos;
+
+    private long lastTickCycles, lastTickBusyNanos;
+    private volatile double averageCyclesPerTick, averageBusyNanosPerTick;
+
+    ///////////////////////////////////////////////////////////////////
+
+    public void recordSlice(final long cycles, final long nanos, final boolean overran) {
+        this.cycles.addAndGet(cycles);
+        busyNanos.addAndGet(nanos);
+        slices.incrementAndGet();
+        if (overran) {
+            overrunSlices.incrementAndGet();
+        }
+        lastSliceNanos = nanos;
+    }
+
+    public void recordRpcMessages(final long count) {
+        rpcMessages.addAndGet(count);
+    }
+
+    public void recordUartInput(final int bytes) {
+        uartBytesIn.addAndGet(bytes);
+    }
+
+    public void recordUartOutput(final int bytes) {
+        uartBytesOut.addAndGet(bytes);
+    }
+
+    public void tick() {
+        final long cycles = getCycles();
+        final long busyNanos = getBusyNanos();
+
+        averageCyclesPerTick += ((cycles - lastTickCycles) - averageCyclesPerTick) * AVERAGE_WEIGHT;
+        averageBusyNanosPerTick += ((busyNanos - lastTickBusyNanos) - averageBusyNanosPerTick) * AVERAGE_WEIGHT;
+
+        lastTickCycles = cycles;
+        lastTickBusyNanos = busyNanos;
+    }
+
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    public long getSliceCount() {
+        return slices.get();
+    }
+
+    public long getOverrunSliceCount() {
+        return overrunSlices.get();
+    }
+
+    public long getLastSliceNanos() {
+        return lastSliceNanos;
+    }
+
+    public long getRpcMessageCount() {
+        return rpcMessages.get();
+    }
+
+    public long getUartBytesIn() {
+        return uartBytesIn.get();
+    }
+
+    public long getUartBytesOut() {
+        return uartBytesOut.get();
+    }
+
+    public double getAverageCyclesPerTick() {
+        return averageCyclesPerTick;
+    }
+
+    public double getAverageBusyNanosPerTick() {
+        return averageBusyNanosPerTick;
+    }
+}
@@ -0,0 +1,52 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import java.util.*;
+
+/**
+ * Keeps track of running virtual machines, so their {@link VMMetrics} can be inspected.
+ * <p>
+ * Virtual machines are only referenced weakly, so forgetting to unregister one will not leak it.
+ */
+public final class VMProfiler {
+    private static final Set<AbstractVirtualMachine> VIRTUAL_MACHINES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    ///////////////////////////////////////////////////////////////////
+
+    public static void register(final AbstractVirtualMachine virtualMachine) {
+        VIRTUAL_MACHINES.add(virtualMachine);
+    }
+
+    public static void unregister(final AbstractVirtualMachine virtualMachine) {
+        VIRTUAL_MACHINES.remove(virtualMachine);
+    }
+
+    /**
+     * Returns the number of currently running virtual machines.
+     *
+     * @return the number of running virtual machines.
+     */
+    public static int getRunningCount() {
+        synchronized (VIRTUAL_MACHINES) {
+            return (int) VIRTUAL_MACHINES.stream().filter(AbstractVirtualMachine::isRunning).count();
+        }
+    }
+
+    /**
+     * Returns the running virtual machines using the most host time, ordered by their average
+     * host time per tick, highest first.
+     *
+     * @param count the maximum number of virtual machines to return.
+     * @return the virtual machines using the most host time.
+     */
+    public static List<AbstractVirtualMachine> getTopByHostTime(final int count) {
+        synchronized (VIRTUAL_MACHINES) {
+            return VIRTUAL_MACHINES.stream()
+                .filter(AbstractVirtualMachine::isRunning)
+                .sorted(Comparator.comparingDouble((AbstractVirtualMachine vm) -> vm.metrics.getAverageBusyNanosPerTick()).reversed())
+                .limit(count)
+                .toList();
+        }
+    }
+}
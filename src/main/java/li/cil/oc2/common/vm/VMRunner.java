@@ -15,30 +15,30 @@ import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.TranslatableComponent;
 
 import javax.annotation.Nullable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
-public class VMRunner implements Runnable {
+public class VMRunner {
     private static final int TICKS_PER_SECOND = 20;
     private static final int TIMESLICE_IN_MS = 500 / TICKS_PER_SECOND;
+    private static final int MAX_SCHEDULING_WEIGHT = 4;
 
-    private static final ExecutorService VM_RUNNERS = Executors.newCachedThreadPool(r -> {
-        final Thread thread = new Thread(r);
-        thread.setDaemon(true);
-        thread.setName("VirtualMachine Runner");
-        return thread;
-    });
+    private static final int CYCLES_PER_STEP = 1_000;
+
+    // Cycles to let pass per step while the hart is waiting for an interrupt. This bounds how
+    // late a timer interrupt may be noticed by an idle hart, here 4ms at 25MHz.
+    private static final int IDLE_CYCLES_PER_STEP = 100_000;
 
     ///////////////////////////////////////////////////////////////////
 
     private final R5Board board;
     private final GlobalVMContext context;
     private final RPCDeviceBusAdapter rpcAdapter;
+    protected final VMMetrics metrics;
+    private final BooleanSupplier isHartIdle;
     private final AtomicInteger timeQuotaInMillis = new AtomicInteger();
-    private Future<?> lastSchedule;
+    private final VMScheduler.Task schedulerTask = new VMScheduler.Task(this);
+    private long lastRpcMessageCount;
 
     ///////////////////////////////////////////////////////////////////
 
@@ -55,6 +55,8 @@ public class VMRunner implements Runnable {
         this.board = virtualMachine.state.board;
         context = virtualMachine.state.context;
         rpcAdapter = virtualMachine.state.rpcAdapter;
+        metrics = virtualMachine.metrics;
+        isHartIdle = HartIdleDetector.create(board.getCpu());
     }
 
     ///////////////////////////////////////////////////////////////////
@@ -66,60 +68,93 @@ public class VMRunner implements Runnable {
 
     public void tick() {
         rpcAdapter.tick();
+        metrics.tick();
 
-        cycleLimit += getCyclesPerTick();
-
-        final int timeQuota = timeQuotaInMillis.updateAndGet(x -> Math.min(x + TIMESLICE_IN_MS, TIMESLICE_IN_MS));
-        final boolean needsScheduling = lastSchedule == null || lastSchedule.isDone() || lastSchedule.isCancelled();
-        if (cycleLimit > 0 && timeQuota > 0 && needsScheduling) {
-            lastSchedule = VM_RUNNERS.submit(this);
+        if (addTickBudget()) {
+            VMScheduler.schedule(schedulerTask);
         }
     }
 
     public void join() {
         context.postEvent(new VMSynchronizeEvent());
         firedResumedRunningEvent = false;
-        if (lastSchedule != null) {
-            try {
-                lastSchedule.get();
-            } catch (final InterruptedException e) {
-                // We do not mind this.
-            } catch (final ExecutionException e) {
-                throw new RuntimeException(e.getCause());
-            }
-        }
+        VMScheduler.join(schedulerTask);
     }
 
-    @Override
-    public void run() {
-        do {
-            final long start = System.currentTimeMillis();
+    ///////////////////////////////////////////////////////////////////
 
-            final int cycleBudget = getCyclesPerTick();
-            final int cyclesPerStep = 1_000;
-            final int maxSteps = cycleBudget / cyclesPerStep;
+    /**
+     * Adds the cycle budget and time quota for one more tick.
+     *
+     * @return {@code true} if there is budget to run; {@code false} otherwise.
+     */
+    boolean addTickBudget() {
+        cycleLimit += getCyclesPerTick();
 
-            handleBeforeRun();
+        final int timeQuota = timeQuotaInMillis.updateAndGet(x -> Math.min(x + TIMESLICE_IN_MS, TIMESLICE_IN_MS));
+        return cycleLimit > 0 && timeQuota > 0;
+    }
+
+    /**
+     * Runs the virtual machine for at most the specified amount of time, or until the remaining
+     * time quota or cycle budget is used up, whichever comes first.
+     *
+     * @param sliceInMillis the maximum time to run for.
+     * @return {@code true} if there is budget left to run another slice; {@code false} otherwise.
+     */
+    boolean runSlice(final int sliceInMillis) {
+        final long start = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final long startCycles = cycles;
+        final long sliceLength = Math.min(sliceInMillis, timeQuotaInMillis.get());
+
+        handleBeforeRun();
+
+        if (!board.isRunning()) {
+            return false;
+        }
+
+        while (cycles < cycleLimit) {
+            // A hart parked in WFI has nothing to execute until an interrupt arrives, so we only
+            // let time pass, in large steps. Devices and adapters are still stepped, so pending
+            // input gets delivered, which raises an interrupt and wakes the hart up again. This
+            // way idle machines finish their slice early, while their cycle count stays exact.
+            final int cyclesPerStep = isHartIdle.getAsBoolean()
+                ? (int) Math.min(cycleLimit - cycles, IDLE_CYCLES_PER_STEP)
+                : CYCLES_PER_STEP;
+
+            cycles += cyclesPerStep;
+            board.step(cyclesPerStep);
+            step(cyclesPerStep);
 
-            if (!board.isRunning()) {
+            if (System.currentTimeMillis() - start > sliceLength) {
                 break;
             }
+        }
 
-            for (int i = 0; i < maxSteps; i++) {
-                cycles += cyclesPerStep;
-                board.step(cyclesPerStep);
-                step(cyclesPerStep);
+        handleAfterRun();
 
-                if (System.currentTimeMillis() - start > timeQuotaInMillis.get()) {
-                    break;
-                }
-            }
+        final int elapsed = (int) (System.currentTimeMillis() - start);
+        final int remainingQuota = timeQuotaInMillis.addAndGet(-elapsed);
 
-            handleAfterRun();
+        metrics.recordSlice(cycles - startCycles, System.nanoTime() - startNanos, remainingQuota < 0);
+        final long rpcMessageCount = rpcAdapter.getProcessedMessageCount();
+        metrics.recordRpcMessages(rpcMessageCount - lastRpcMessageCount);
+        lastRpcMessageCount = rpcMessageCount;
+
+        return cycles < cycleLimit && remainingQuota > 0 && board.isRunning();
+    }
 
-            final int elapsed = (int) (System.currentTimeMillis() - start);
-            timeQuotaInMillis.addAndGet(-elapsed);
-        } while (cycles < cycleLimit && timeQuotaInMillis.get() > 0);
+    /**
+     * The weight of this runner in the scheduler's round-robin.
+     * <p>
+     * Runners lagging behind their cycle budget get longer slices, so they can catch up.
+     *
+     * @return the scheduling weight, at least one.
+     */
+    int getSchedulingWeight() {
+        final long backlog = cycleLimit - cycles;
+        return (int) Math.max(1, Math.min(MAX_SCHEDULING_WEIGHT, backlog / getCyclesPerTick()));
     }
 
     ///////////////////////////////////////////////////////////////////
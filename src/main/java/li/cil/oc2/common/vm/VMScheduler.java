@@ -0,0 +1,187 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm;
+
+import li.cil.oc2.common.Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link VMRunner}s on a fixed number of worker threads.
+ * <p>
+ * Runners are executed in slices. Each slice lasts at most a short quantum, scaled by the weight
+ * of the runner. When a runner still has work left after its slice, it is re-queued at the end
+ * of the run queue, so that all runners get a fair share of the workers (weighted round-robin).
+ * Runners that have no work left are parked, and will only be queued again when they get
+ * scheduled by their owner.
+ * <p>
+ * The number of worker threads is read from {@link Config#vmSchedulerThreadCount} when the
+ * scheduler is first used. A value of zero means one thread less than available cores.
+ */
+public final class VMScheduler {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static final int QUANTUM_IN_MS = 5;
+
+    private static final AtomicInteger WORKER_INDEX = new AtomicInteger();
+
+    ///////////////////////////////////////////////////////////////////
+
+    @Nullable private static ThreadPoolExecutor workers;
+
+    ///////////////////////////////////////////////////////////////////
+
+    /**
+     * Queues the specified task for execution, unless it is already queued.
+     * <p>
+     * If the task is currently running, it will be re-queued after its current slice.
+     *
+     * @param task the task to schedule.
+     */
+    public static void schedule(final Task task) {
+        synchronized (task) {
+            switch (task.state) {
+                case PARKED -> {
+                    task.state = State.QUEUED;
+                    getWorkers().execute(task);
+                }
+                case RUNNING -> task.isRescheduleRequested = true;
+            }
+        }
+    }
+
+    /**
+     * Removes the specified task from the run queue and waits for it to finish its current slice,
+     * if it is running.
+     * <p>
+     * After this returns the task is parked, until it is scheduled again.
+     *
+     * @param task the task to wait for.
+     * @throws RuntimeException if the last slice of the task threw an exception.
+     */
+    public static void join(final Task task) {
+        synchronized (task) {
+            task.isJoinRequested = true;
+            try {
+                while (task.state == State.RUNNING) {
+                    task.wait();
+                }
+            } catch (final InterruptedException e) {
+                // We do not mind this.
+            } finally {
+                task.isJoinRequested = false;
+            }
+
+            if (task.state == State.QUEUED) {
+                getWorkers().remove(task);
+                task.state = State.PARKED;
+            }
+
+            if (task.error != null) {
+                final Throwable error = task.error;
+                task.error = null;
+                throw new RuntimeException(error);
+            }
+        }
+    }
+
+    /**
+     * The number of worker threads used to run virtual machines.
+     *
+     * @return the number of worker threads.
+     */
+    public static int getWorkerCount() {
+        return getWorkers().getCorePoolSize();
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null) {
+            final int threadCount = Config.vmSchedulerThreadCount > 0
+                ? Config.vmSchedulerThreadCount
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+            workers = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount, r -> {
+                final Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("VirtualMachine Runner #" + WORKER_INDEX.incrementAndGet());
+                return thread;
+            });
+
+            LOGGER.info("Running virtual machines on {} worker thread(s).", threadCount);
+        }
+
+        return workers;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private enum State {
+        PARKED,
+        QUEUED,
+        RUNNING,
+    }
+
+    /**
+     * Scheduling state of a single {@link VMRunner}.
+     */
+    public static final class Task implements Runnable {
+        private final VMRunner runner;
+
+        private State state = State.PARKED;
+        private boolean isRescheduleRequested;
+        private boolean isJoinRequested;
+        @Nullable private Throwable error;
+
+        ///////////////////////////////////////////////////////////////////
+
+        Task(final VMRunner runner) {
+            this.runner = runner;
+        }
+
+        ///////////////////////////////////////////////////////////////////
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (state != State.QUEUED) {
+                    return;
+                }
+                state = State.RUNNING;
+            }
+
+            boolean hasMoreWork;
+            Throwable error = null;
+            try {
+                hasMoreWork = runner.runSlice(QUANTUM_IN_MS * runner.getSchedulingWeight());
+            } catch (final Throwable e) {
+                hasMoreWork = false;
+                error = e;
+            }
+
+            synchronized (this) {
+                if (error != null) {
+                    this.error = error;
+                }
+
+                if ((hasMoreWork || isRescheduleRequested) && !isJoinRequested && this.error == null) {
+                    state = State.QUEUED;
+                    getWorkers().execute(this);
+                } else {
+                    state = State.PARKED;
+                }
+
+                isRescheduleRequested = false;
+                notifyAll();
+            }
+        }
+    }
+}
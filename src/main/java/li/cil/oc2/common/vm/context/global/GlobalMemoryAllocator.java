@@ -7,12 +7,20 @@ import li.cil.oc2.common.vm.Allocator;
 
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 final class GlobalMemoryAllocator implements MemoryAllocator {
+    private final Supplier<Allocator.Account> accountSupplier;
     private final ArrayList<UUID> claimedMemory = new ArrayList<>();
 
     ///////////////////////////////////////////////////////////////////
 
+    public GlobalMemoryAllocator(final Supplier<Allocator.Account> accountSupplier) {
+        this.accountSupplier = accountSupplier;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
     public void invalidate() {
         for (final UUID handle : claimedMemory) {
             Allocator.freeMemory(handle);
@@ -24,7 +32,7 @@ final class GlobalMemoryAllocator implements MemoryAllocator {
     @Override
     public boolean claimMemory(final int size) {
         final UUID handle = Allocator.createHandle();
-        if (!Allocator.claimMemory(handle, size)) {
+        if (!Allocator.claimMemory(handle, size, accountSupplier.get())) {
             return false;
         }
 
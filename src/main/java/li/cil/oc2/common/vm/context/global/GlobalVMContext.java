@@ -4,6 +4,7 @@ package li.cil.oc2.common.vm.context.global;
 
 import li.cil.ceres.api.Serialized;
 import li.cil.oc2.api.bus.device.vm.context.*;
+import li.cil.oc2.common.vm.Allocator;
 import li.cil.oc2.common.vm.context.EventManager;
 import li.cil.oc2.common.vm.context.InterruptManager;
 import li.cil.oc2.common.vm.context.MemoryRangeManager;
@@ -13,6 +14,7 @@ import li.cil.sedna.api.device.InterruptController;
 import li.cil.sedna.api.memory.MemoryMap;
 
 import java.util.BitSet;
+import java.util.function.Supplier;
 
 public final class GlobalVMContext implements VMContext, VMContextManagerCollection {
     private final GlobalMemoryMap memoryMap;
@@ -21,6 +23,7 @@ public final class GlobalVMContext implements VMContext, VMContextManagerCollect
     private final GlobalInterruptController interruptController;
     private final GlobalMemoryAllocator memoryAllocator;
     private final GlobalEventBus eventBus;
+    private final Supplier<Allocator.Account> memoryAccountSupplier;
 
     ///////////////////////////////////////////////////////////////////
 
@@ -40,11 +43,16 @@ public final class GlobalVMContext implements VMContext, VMContextManagerCollect
     ///////////////////////////////////////////////////////////////////
 
     public GlobalVMContext(final Board board) {
+        this(board, () -> Allocator.Account.UNASSIGNED);
+    }
+
+    public GlobalVMContext(final Board board, final Supplier<Allocator.Account> memoryAccountSupplier) {
+        this.memoryAccountSupplier = memoryAccountSupplier;
         this.memoryMap = new GlobalMemoryMap(board.getMemoryMap());
         this.memoryRangeAllocator = new GlobalMemoryRangeAllocator(board, reservedMemoryRanges);
         this.interruptAllocator = new GlobalInterruptAllocator(board.getInterruptCount(), reservedInterrupts);
         this.interruptController = new GlobalInterruptController(board.getInterruptController(), interruptAllocator);
-        this.memoryAllocator = new GlobalMemoryAllocator();
+        this.memoryAllocator = new GlobalMemoryAllocator(memoryAccountSupplier);
         this.eventBus = new GlobalEventBus();
     }
 
@@ -58,6 +66,10 @@ public final class GlobalVMContext implements VMContext, VMContextManagerCollect
         reservedMemoryRanges.addAll(memoryRangeAllocator.getClaimedMemoryRanges());
     }
 
+    public Allocator.Account getMemoryAccount() {
+        return memoryAccountSupplier.get();
+    }
+
     public void postEvent(final Object event) {
         eventBus.post(event);
     }
@@ -7,13 +7,21 @@ import li.cil.oc2.common.vm.Allocator;
 
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 final class ManagedMemoryAllocator implements MemoryAllocator {
+    private final Supplier<Allocator.Account> accountSupplier;
     private final ArrayList<UUID> claimedMemory = new ArrayList<>();
     private boolean isFrozen;
 
     ///////////////////////////////////////////////////////////////////
 
+    public ManagedMemoryAllocator(final Supplier<Allocator.Account> accountSupplier) {
+        this.accountSupplier = accountSupplier;
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
     public void freeze() {
         isFrozen = true;
     }
@@ -33,7 +41,7 @@ final class ManagedMemoryAllocator implements MemoryAllocator {
         }
 
         final UUID handle = Allocator.createHandle();
-        if (!Allocator.claimMemory(handle, size)) {
+        if (!Allocator.claimMemory(handle, size, accountSupplier.get())) {
             return false;
         }
 
@@ -3,6 +3,7 @@
 package li.cil.oc2.common.vm.context.managed;
 
 import li.cil.oc2.api.bus.device.vm.context.*;
+import li.cil.oc2.common.vm.Allocator;
 import li.cil.oc2.common.vm.context.VMContextManagerCollection;
 import li.cil.sedna.api.device.InterruptController;
 import li.cil.sedna.api.memory.MemoryMap;
@@ -20,12 +21,12 @@ public final class ManagedVMContext implements VMContext {
 
     ///////////////////////////////////////////////////////////////////
 
-    public ManagedVMContext(final VMContext parent, final VMContextManagerCollection managers, final Supplier<OptionalLong> baseAddressSupplier) {
+    public ManagedVMContext(final VMContext parent, final VMContextManagerCollection managers, final Supplier<OptionalLong> baseAddressSupplier, final Supplier<Allocator.Account> memoryAccountSupplier) {
         this.memoryRangeAllocator = new ManagedMemoryRangeAllocator(parent.getMemoryRangeAllocator(), managers.getMemoryRangeManager(), baseAddressSupplier);
         this.interruptAllocator = new ManagedInterruptAllocator(parent.getInterruptAllocator(), managers.getInterruptManager());
         this.memoryMap = new ManagedMemoryMap(parent.getMemoryMap());
         this.interruptController = new ManagedInterruptController(parent.getInterruptController(), interruptAllocator);
-        this.memoryAllocator = new ManagedMemoryAllocator();
+        this.memoryAllocator = new ManagedMemoryAllocator(memoryAccountSupplier);
         this.eventBus = new ManagedEventBus(parent.getEventBus(), managers.getEventManager());
     }
 
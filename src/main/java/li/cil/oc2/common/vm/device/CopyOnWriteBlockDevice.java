@@ -0,0 +1,265 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm.device;
+
+import li.cil.oc2.common.serialization.SparseBlob;
+import li.cil.sedna.api.device.BlockDevice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A block device layering a writable overlay over a shared, read-only base device.
+ * <p>
+ * Reads fall through to the base device until a block is first written. At that point the block
+ * is copied into the overlay, and all further accesses to it are served from the overlay. This
+ * allows many devices to share the same base image, with each only storing the blocks it changed.
+ */
+public final class CopyOnWriteBlockDevice implements BlockDevice {
+    public static final int BLOCK_SIZE = 4 * 1024;
+
+    private static final Map<BlockDevice, Long> BASE_FINGERPRINTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    ///////////////////////////////////////////////////////////////
+
+    private final BlockDevice base;
+    private final SparseBlob overlay;
+    private final boolean readonly;
+    private final long capacity;
+    private final byte[] blockBuffer = new byte[BLOCK_SIZE];
+
+    ///////////////////////////////////////////////////////////////
+
+    public CopyOnWriteBlockDevice(final BlockDevice base, final SparseBlob overlay, final boolean readonly) {
+        if (overlay.getBlockSize() != BLOCK_SIZE || overlay.getBlockCount() != getBlockCount(base)) {
+            throw new IllegalArgumentException("Overlay layout does not match base device.");
+        }
+
+        this.base = base;
+        this.overlay = overlay;
+        this.readonly = readonly;
+        this.capacity = base.getCapacity();
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    /**
+     * Computes the number of blocks required to store an overlay for the specified base device.
+     *
+     * @param base the base device.
+     * @return the number of blocks in an overlay for the device.
+     */
+    public static int getBlockCount(final BlockDevice base) {
+        return (int) ((base.getCapacity() + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    /**
+     * Computes a fingerprint of the contents of the specified base device.
+     * <p>
+     * This is used to detect overlays being used with a base device they were not created for. The
+     * fingerprint is cached per base device, so this is only expensive for the first call.
+     *
+     * @param base the base device.
+     * @return the fingerprint of the device's contents.
+     * @throws IOException if reading the base device fails.
+     */
+    public static long getFingerprint(final BlockDevice base) throws IOException {
+        final Long cached = BASE_FINGERPRINTS.get(base);
+        if (cached != null) {
+            return cached;
+        }
+
+        final CRC32C checksum = new CRC32C();
+        final byte[] buffer = new byte[64 * 1024];
+        try (final InputStream stream = base.getInputStream(0)) {
+            int count;
+            while ((count = stream.read(buffer)) > 0) {
+                checksum.update(buffer, 0, count);
+            }
+        }
+
+        final long fingerprint = base.getCapacity() << 32 | checksum.getValue();
+        BASE_FINGERPRINTS.put(base, fingerprint);
+        return fingerprint;
+    }
+
+    @Override
+    public boolean isReadonly() {
+        return readonly;
+    }
+
+    @Override
+    public long getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public InputStream getInputStream(final long offset) {
+        if (offset < 0 || offset > capacity) {
+            throw new IllegalArgumentException();
+        }
+        return new OverlayInputStream(offset);
+    }
+
+    @Override
+    public OutputStream getOutputStream(final long offset) {
+        if (readonly) {
+            throw new UnsupportedOperationException();
+        }
+        if (offset < 0 || offset > capacity) {
+            throw new IllegalArgumentException();
+        }
+        return new OverlayOutputStream(offset);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        // The base device is shared, and the overlay's channel is owned by the blob storage.
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private int read(final long position, final byte[] b, int off, int len) throws IOException {
+        len = (int) Math.min(len, capacity - position);
+        if (len <= 0) {
+            return -1;
+        }
+
+        final int total = len;
+        long address = position;
+        while (len > 0) {
+            final int block = (int) (address / BLOCK_SIZE);
+            final int offsetInBlock = (int) (address % BLOCK_SIZE);
+            if (overlay.isAllocated(block)) {
+                final int count = Math.min(len, BLOCK_SIZE - offsetInBlock);
+                overlay.read(block, offsetInBlock, ByteBuffer.wrap(b, off, count));
+                off += count;
+                len -= count;
+                address += count;
+            } else {
+                // Read consecutive unmodified blocks from the base device in one go.
+                int count = BLOCK_SIZE - offsetInBlock;
+                for (int next = block + 1; count < len && !overlay.isAllocated(next); next++) {
+                    count += BLOCK_SIZE;
+                }
+                count = Math.min(count, len);
+                readBase(address, b, off, count);
+                off += count;
+                len -= count;
+                address += count;
+            }
+        }
+
+        return total;
+    }
+
+    private void write(final long position, final byte[] b, int off, int len) throws IOException {
+        if (len > capacity - position) {
+            throw new IOException("Write exceeds device capacity.");
+        }
+
+        long address = position;
+        while (len > 0) {
+            final int block = (int) (address / BLOCK_SIZE);
+            final int offsetInBlock = (int) (address % BLOCK_SIZE);
+            final int count = Math.min(len, BLOCK_SIZE - offsetInBlock);
+            if (overlay.isAllocated(block)) {
+                overlay.write(block, offsetInBlock, ByteBuffer.wrap(b, off, count));
+            } else if (count == BLOCK_SIZE) {
+                overlay.allocate(block, ByteBuffer.wrap(b, off, count));
+            } else {
+                final long blockAddress = (long) block * BLOCK_SIZE;
+                final int baseCount = (int) Math.min(BLOCK_SIZE, capacity - blockAddress);
+                readBase(blockAddress, blockBuffer, 0, baseCount);
+                Arrays.fill(blockBuffer, baseCount, BLOCK_SIZE, (byte) 0);
+                System.arraycopy(b, off, blockBuffer, offsetInBlock, count);
+                overlay.allocate(block, ByteBuffer.wrap(blockBuffer));
+            }
+
+            off += count;
+            len -= count;
+            address += count;
+        }
+    }
+
+    private void readBase(final long address, final byte[] b, final int off, final int len) throws IOException {
+        try (final InputStream stream = base.getInputStream(address)) {
+            if (stream.readNBytes(b, off, len) != len) {
+                throw new IOException("Unexpected end of base device.");
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private final class OverlayInputStream extends InputStream {
+        private final byte[] singleByte = new byte[1];
+        private long position;
+
+        public OverlayInputStream(final long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) > 0 ? singleByte[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            final int count = CopyOnWriteBlockDevice.this.read(position, b, off, len);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long count = Math.max(0, Math.min(n, capacity - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, capacity - position);
+        }
+    }
+
+    private final class OverlayOutputStream extends OutputStream {
+        private final byte[] singleByte = new byte[1];
+        private long position;
+
+        public OverlayOutputStream(final long position) {
+            this.position = position;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            singleByte[0] = (byte) b;
+            write(singleByte, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            CopyOnWriteBlockDevice.this.write(position, b, off, len);
+            position += len;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.util.BitSet;
 
 public final class SimpleFramebufferDevice implements MemoryMappedDevice {
     public static final int STRIDE = 2;
+    public static final int MACROBLOCK_SIZE = 16;
 
     private static final ThreadLocal<int[][]> conversionBuffer = ThreadLocal.withInitial(() -> new int[4][3]);
 
@@ -23,6 +24,8 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
     private final ByteBuffer buffer;
     private int length;
     private final BitSet dirtyLines;
+    private final int macroblockColumns;
+    private final BitSet dirtyMacroblocks;
 
     ///////////////////////////////////////////////////////////////
 
@@ -38,6 +41,11 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
         this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
         this.dirtyLines = new BitSet(height / 2);
         this.dirtyLines.set(0, height / 2);
+
+        this.macroblockColumns = (width + MACROBLOCK_SIZE - 1) / MACROBLOCK_SIZE;
+        final int macroblockCount = macroblockColumns * ((height + MACROBLOCK_SIZE - 1) / MACROBLOCK_SIZE);
+        this.dirtyMacroblocks = new BitSet(macroblockCount);
+        this.dirtyMacroblocks.set(0, macroblockCount);
     }
 
     ///////////////////////////////////////////////////////////////
@@ -46,6 +54,7 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
         synchronized (buffer) {
             length = 0;
             dirtyLines.clear();
+            dirtyMacroblocks.clear();
             DirectByteBufferUtils.release(buffer);
         }
     }
@@ -62,12 +71,26 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
         return !dirtyLines.isEmpty();
     }
 
-    public boolean applyChanges(final Picture picture) {
+    /**
+     * Converts all lines changed since the last call into the specified picture.
+     * <p>
+     * The indices of the {@link #MACROBLOCK_SIZE} sized blocks of the picture that were changed are
+     * added to the specified set, in raster order. This allows encoders to skip blocks that have not
+     * changed since the last frame.
+     *
+     * @param picture            the picture to convert changed lines into.
+     * @param changedMacroblocks the set to add the indices of changed blocks to.
+     * @return {@code true} if anything changed; {@code false} otherwise.
+     */
+    public boolean applyChanges(final Picture picture, final BitSet changedMacroblocks) {
         if (dirtyLines.isEmpty()) {
             return false;
         }
 
         synchronized (buffer) {
+            changedMacroblocks.or(dirtyMacroblocks);
+            dirtyMacroblocks.clear();
+
             final int[][] quadrant = conversionBuffer.get();
             final byte[][] pictureData = picture.getData();
             for (int halfRow = dirtyLines.nextSetBit(0); halfRow >= 0; halfRow = dirtyLines.nextSetBit(halfRow + 1)) {
@@ -128,7 +151,12 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
                 case 3 -> buffer.putLong(offset, value);
                 default -> throw new IllegalArgumentException();
             }
-            setDirty(offset);
+            // Take the lock changes are applied with, otherwise bits set while the encoder copies
+            // and clears them may be lost.
+            synchronized (buffer) {
+                setDirty(offset);
+                setDirty(offset + (1 << sizeLog2) - 1);
+            }
         }
     }
 
@@ -146,7 +174,9 @@ public final class SimpleFramebufferDevice implements MemoryMappedDevice {
     }
 
     private void setDirty(final int offset) {
+        final int pixelX = (offset % (width * STRIDE)) / STRIDE;
         final int pixelY = offset / (width * STRIDE);
         dirtyLines.set(pixelY / 2);
+        dirtyMacroblocks.set((pixelY / MACROBLOCK_SIZE) * macroblockColumns + pixelX / MACROBLOCK_SIZE);
     }
 }
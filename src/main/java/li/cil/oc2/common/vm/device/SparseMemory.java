@@ -0,0 +1,348 @@
+/* SPDX-License-Identifier: MIT */
+
+package li.cil.oc2.common.vm.device;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import li.cil.oc2.common.serialization.SparseBlob;
+import li.cil.sedna.api.device.PhysicalMemory;
+import li.cil.sedna.api.memory.MemoryAccessException;
+import li.cil.sedna.utils.DirectByteBufferUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Physical memory which only allocates pages once they are first written to.
+ * <p>
+ * Pages that have never been written to read as zero, and do not take up any space. Pages written
+ * to since the last snapshot are tracked, so that persisting the memory only has to write those
+ * pages.
+ * <p>
+ * Pages are stored in direct buffers, so like the memory mapped files memory used to be stored in,
+ * guest memory does not live on the Java heap.
+ */
+public final class SparseMemory extends PhysicalMemory {
+    public static final int PAGE_SIZE = 4 * 1024;
+
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_SIZE);
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    ///////////////////////////////////////////////////////////////
+
+    private final int size;
+    private final ByteBuffer[] pages;
+    private final BitSet dirtyPages;
+
+    ///////////////////////////////////////////////////////////////
+
+    public SparseMemory(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.size = size;
+        this.pages = new ByteBuffer[getPageCount(size)];
+        this.dirtyPages = new BitSet(pages.length);
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    /**
+     * Computes the number of pages used to store memory of the specified size.
+     *
+     * @param size the size of the memory, in bytes.
+     * @return the number of pages required for the memory.
+     */
+    public static int getPageCount(final int size) {
+        return (size + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+    }
+
+    /**
+     * The number of pages that have been written to and currently take up space.
+     *
+     * @return the number of allocated pages.
+     */
+    public int getAllocatedPageCount() {
+        int count = 0;
+        for (final ByteBuffer page : pages) {
+            if (page != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Loads the contents of this memory from the specified sparse blob.
+     * <p>
+     * This is used to convert memory persisted as a sparse blob. All pages loaded this way are
+     * marked as dirty.
+     *
+     * @param blob the blob to load from.
+     * @throws IOException if reading from the blob fails.
+     */
+    public void readFrom(final SparseBlob blob) throws IOException {
+        checkLayout(blob);
+
+        for (int index = 0; index < pages.length; index++) {
+            if (blob.isAllocated(index)) {
+                final ByteBuffer page = getPageForWrite(index);
+                blob.read(index, 0, page.clear());
+            } else {
+                releasePage(index);
+            }
+        }
+    }
+
+    /**
+     * Loads the contents of this memory from a file storing the memory as one contiguous block.
+     * <p>
+     * This is used to convert memory persisted before memory was stored sparsely. All pages
+     * loaded this way are marked as dirty.
+     *
+     * @param channel the channel to load from.
+     * @throws IOException if reading from the channel fails.
+     */
+    public void readFromContiguous(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        for (int index = 0; index < pages.length; index++) {
+            Arrays.fill(buffer.array(), (byte) 0);
+            buffer.clear();
+            long position = (long) index << PAGE_SHIFT;
+            while (buffer.hasRemaining() && position < channel.size()) {
+                final int count = channel.read(buffer, position);
+                if (count < 0) {
+                    break;
+                }
+                position += count;
+            }
+
+            if (isZero(buffer.array())) {
+                releasePage(index);
+            } else {
+                getPageForWrite(index).put(0, buffer.array());
+            }
+        }
+    }
+
+    /**
+     * Sets the contents of a page, e.g. when restoring persisted memory.
+     *
+     * @param index the index of the page.
+     * @param data  the contents of the page, or {@code null} for a page containing only zeros.
+     */
+    public void restore(final int index, @Nullable final byte[] data) {
+        if (data != null && data.length != PAGE_SIZE) {
+            throw new IllegalArgumentException();
+        }
+
+        if (data != null) {
+            getPageForWrite(index).put(0, data);
+        } else {
+            releasePage(index);
+        }
+        dirtyPages.clear(index);
+    }
+
+    /**
+     * Captures the pages changed since the last snapshot, or all pages for a full snapshot.
+     * <p>
+     * The captured pages are copies, so the snapshot remains valid while this memory continues to be
+     * written to. This way, only copying changed pages has to happen while the virtual machine is
+     * paused, persisting them can happen in the background.
+     *
+     * @param full whether to capture all pages instead of only changed ones.
+     * @return the snapshot.
+     */
+    public Snapshot snapshot(final boolean full) {
+        final IntArrayList indices = new IntArrayList();
+        final ArrayList<byte[]> data = new ArrayList<>();
+        for (int index = 0; index < pages.length; index++) {
+            index = full ? index : dirtyPages.nextSetBit(index);
+            if (index < 0) {
+                break;
+            }
+
+            final ByteBuffer page = pages[index];
+            if (page != null) {
+                final byte[] copy = new byte[PAGE_SIZE];
+                page.get(0, copy);
+                indices.add(index);
+                data.add(copy);
+            } else if (!full) {
+                indices.add(index);
+                data.add(null);
+            }
+        }
+
+        dirtyPages.clear();
+        return new Snapshot(indices.toIntArray(), data.toArray(byte[][]::new));
+    }
+
+    @Override
+    public int getLength() {
+        return size;
+    }
+
+    @Override
+    public long load(final int offset, final int sizeLog2) {
+        final int byteCount = 1 << sizeLog2;
+        if (offset < 0 || offset > size - byteCount) {
+            return 0;
+        }
+
+        final ByteBuffer page = pages[offset >>> PAGE_SHIFT];
+        final int pageOffset = offset & PAGE_MASK;
+        if (pageOffset > PAGE_SIZE - byteCount) {
+            return loadStraddling(offset, byteCount);
+        }
+        if (page == null) {
+            return 0;
+        }
+
+        return switch (sizeLog2) {
+            case 0 -> page.get(pageOffset);
+            case 1 -> page.getShort(pageOffset);
+            case 2 -> page.getInt(pageOffset);
+            case 3 -> page.getLong(pageOffset);
+            default -> throw new IllegalArgumentException();
+        };
+    }
+
+    @Override
+    public void store(final int offset, final long value, final int sizeLog2) {
+        final int byteCount = 1 << sizeLog2;
+        if (offset < 0 || offset > size - byteCount) {
+            return;
+        }
+
+        final int pageOffset = offset & PAGE_MASK;
+        if (pageOffset > PAGE_SIZE - byteCount) {
+            storeStraddling(offset, value, byteCount);
+            return;
+        }
+
+        final ByteBuffer page = getPageForWrite(offset >>> PAGE_SHIFT);
+        switch (sizeLog2) {
+            case 0 -> page.put(pageOffset, (byte) value);
+            case 1 -> page.putShort(pageOffset, (short) value);
+            case 2 -> page.putInt(pageOffset, (int) value);
+            case 3 -> page.putLong(pageOffset, value);
+            default -> throw new IllegalArgumentException();
+        }
+    }
+
+    @Override
+    public void load(int offset, final ByteBuffer dst) throws MemoryAccessException {
+        if (offset < 0 || offset > size - dst.remaining()) {
+            throw new MemoryAccessException();
+        }
+
+        while (dst.hasRemaining()) {
+            final int index = offset >>> PAGE_SHIFT;
+            final int pageOffset = offset & PAGE_MASK;
+            final int count = Math.min(dst.remaining(), PAGE_SIZE - pageOffset);
+            final ByteBuffer page = pages[index];
+            if (page != null) {
+                dst.put(dst.position(), page, pageOffset, count);
+                dst.position(dst.position() + count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    dst.put((byte) 0);
+                }
+            }
+            offset += count;
+        }
+    }
+
+    @Override
+    public void store(int offset, final ByteBuffer src) throws MemoryAccessException {
+        if (offset < 0 || offset > size - src.remaining()) {
+            throw new MemoryAccessException();
+        }
+
+        while (src.hasRemaining()) {
+            final int index = offset >>> PAGE_SHIFT;
+            final int pageOffset = offset & PAGE_MASK;
+            final int count = Math.min(src.remaining(), PAGE_SIZE - pageOffset);
+            getPageForWrite(index).put(pageOffset, src, src.position(), count);
+            src.position(src.position() + count);
+            offset += count;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int index = 0; index < pages.length; index++) {
+            releasePage(index);
+        }
+        dirtyPages.clear();
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    /**
+     * Copies of the contents of a set of pages.
+     *
+     * @param indices the indices of the pages.
+     * @param pages   the contents of the pages, {@code null} for pages containing only zeros.
+     */
+    public record Snapshot(int[] indices, byte[][] pages) { }
+
+    ///////////////////////////////////////////////////////////////
+
+    private ByteBuffer getPageForWrite(final int index) {
+        ByteBuffer page = pages[index];
+        if (page == null) {
+            page = ByteBuffer.allocateDirect(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            pages[index] = page;
+        }
+        dirtyPages.set(index);
+        return page;
+    }
+
+    private void releasePage(final int index) {
+        final ByteBuffer page = pages[index];
+        if (page != null) {
+            pages[index] = null;
+            DirectByteBufferUtils.release(page);
+        }
+    }
+
+    private long loadStraddling(final int offset, final int byteCount) {
+        long value = 0;
+        for (int i = byteCount - 1; i >= 0; i--) {
+            value = (value << 8) | (load(offset + i, 0) & 0xFF);
+        }
+        // Sign extend, to match the aligned case.
+        final int shift = Long.SIZE - byteCount * Byte.SIZE;
+        return (value << shift) >> shift;
+    }
+
+    private void storeStraddling(final int offset, final long value, final int byteCount) {
+        for (int i = 0; i < byteCount; i++) {
+            store(offset + i, value >>> (i * Byte.SIZE), 0);
+        }
+    }
+
+    private void checkLayout(final SparseBlob blob) throws IOException {
+        if (blob.getBlockSize() != PAGE_SIZE || blob.getBlockCount() != pages.length) {
+            throw new IOException("Blob layout does not match memory layout.");
+        }
+    }
+
+    private static boolean isZero(final byte[] page) {
+        for (final byte value : page) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
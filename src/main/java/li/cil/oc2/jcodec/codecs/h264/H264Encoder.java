@@ -15,6 +15,8 @@ import li.cil.oc2.jcodec.common.model.Size;
 import li.cil.oc2.jcodec.common.tools.MathUtil;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -92,6 +94,20 @@ public final class H264Encoder extends VideoEncoder {
      * Encode this picture into h.264 frame. Frame type will be selected by encoder.
      */
     public EncodedFrame encodeFrame(final Picture pic, final ByteBuffer _out) {
+        return encodeFrame(pic, _out, null);
+    }
+
+    /**
+     * Encode this picture into h.264 frame. Frame type will be selected by encoder.
+     * <p>
+     * Macroblocks not in the set of changed macroblocks are assumed to be identical
+     * to the previous frame. In P-frames these are emitted as P_Skip where possible,
+     * without running motion estimation or transforms on them. A null set means all
+     * macroblocks may have changed.
+     *
+     * @param changedMacroblocks indices of the changed macroblocks, in raster order.
+     */
+    public EncodedFrame encodeFrame(final Picture pic, final ByteBuffer _out, final BitSet changedMacroblocks) {
         if (pic.getColor() != ColorSpace.YUV420J)
             throw new IllegalArgumentException("Input picture color is not supported: " + pic.getColor());
 
@@ -102,7 +118,7 @@ public final class H264Encoder extends VideoEncoder {
         final SliceType sliceType = frameNumber == 0 ? SliceType.I : SliceType.P;
         final boolean idr = frameNumber == 0;
 
-        final ByteBuffer data = doEncodeFrame(pic, _out, idr, frameNumber++, sliceType);
+        final ByteBuffer data = doEncodeFrame(pic, _out, idr, frameNumber++, sliceType, changedMacroblocks);
 
         return new EncodedFrame(data, idr);
     }
@@ -113,7 +129,7 @@ public final class H264Encoder extends VideoEncoder {
      */
     public ByteBuffer encodeIDRFrame(final Picture pic, final ByteBuffer _out) {
         frameNumber = 0;
-        return doEncodeFrame(pic, _out, true, frameNumber, SliceType.I);
+        return doEncodeFrame(pic, _out, true, frameNumber, SliceType.I, null);
     }
 
     /**
@@ -123,10 +139,11 @@ public final class H264Encoder extends VideoEncoder {
      */
     public ByteBuffer encodePFrame(final Picture pic, final ByteBuffer _out) {
         frameNumber++;
-        return doEncodeFrame(pic, _out, true, frameNumber, SliceType.P);
+        return doEncodeFrame(pic, _out, true, frameNumber, SliceType.P, null);
     }
 
-    public ByteBuffer doEncodeFrame(final Picture pic, final ByteBuffer _out, final boolean idr, final int frameNumber, final SliceType frameType) {
+    public ByteBuffer doEncodeFrame(final Picture pic, final ByteBuffer _out, final boolean idr, final int frameNumber, final SliceType frameType,
+                                    final BitSet changedMacroblocks) {
         final ByteBuffer dup = _out.duplicate();
         int maxSize = Math.min(dup.remaining(), pic.getWidth() * pic.getHeight());
         maxSize -= (maxSize >>> 6); // 1.5% to account for escaping
@@ -159,7 +176,7 @@ public final class H264Encoder extends VideoEncoder {
 
         topEncoded = new EncodedMB[mbWidth];
 
-        encodeSlice(sps, pps, pic, dup, idr, frameNumber, frameType, qp);
+        encodeSlice(sps, pps, pic, dup, idr, frameNumber, frameType, qp, changedMacroblocks);
 
         putLastMBLine();
 
@@ -210,7 +227,7 @@ public final class H264Encoder extends VideoEncoder {
     }
 
     private void encodeSlice(final SeqParameterSet sps, final PictureParameterSet pps, final Picture pic, final ByteBuffer dup, boolean idr,
-                             final int frameNum, final SliceType sliceType, final int sliceQp) {
+                             final int frameNum, final SliceType sliceType, final int sliceQp, final BitSet changedMacroblocks) {
         if (idr && sliceType != SliceType.I) {
             idr = false;
         }
@@ -240,18 +257,30 @@ public final class H264Encoder extends VideoEncoder {
         final int mbWidth = sps.picWidthInMbsMinus1 + 1;
         final int mbHeight = sps.picHeightInMapUnitsMinus1 + 1;
         int oldQp = sliceQp;
+        int skipRun = 0;
         for (int mbY = 0, mbAddr = 0; mbY < mbHeight; mbY++) {
             for (int mbX = 0; mbX < mbWidth; mbX++, mbAddr++) {
+                final boolean unchanged = sliceType == SliceType.P && ref != null &&
+                    changedMacroblocks != null && !changedMacroblocks.get(mbAddr);
+                if (unchanged && mbEncoderP16x16.isSkipMotionVectorZero(context, mbX, mbY)) {
+                    skipMacroblock(mbX, mbY);
+                    estimator.mvSave(mbX, new int[]{0, 0, 1});
+                    skipRun++;
+                    continue;
+                }
+
                 if (sliceType == SliceType.P) {
-                    CAVLCWriter.writeUE(sliceData, 0); // number of skipped mbs
+                    CAVLCWriter.writeUE(sliceData, skipRun); // number of skipped mbs
+                    skipRun = 0;
                 }
 
                 int qpDelta = rc.initialQpDelta(pic, mbX, mbY);
                 int mbQp = oldQp + qpDelta;
 
+                // Unchanged macroblocks that cannot be skipped still match the reference without motion.
                 int[] mv = null;
                 if (ref != null)
-                    mv = estimator.mvEstimate(pic, mbX, mbY);
+                    mv = unchanged ? new int[]{0, 0} : estimator.mvEstimate(pic, mbX, mbY);
 
                 final NonRdVector params = new NonRdVector(mv, IntraPredEstimator.getLumaMode(pic, context, mbX, mbY),
                     IntraPredEstimator.getLumaPred4x4(pic, context, mbX, mbY, mbQp),
@@ -281,6 +310,9 @@ public final class H264Encoder extends VideoEncoder {
                 addToReference(outMB, mbX, mbY);
             }
         }
+        if (skipRun > 0) {
+            CAVLCWriter.writeUE(sliceData, skipRun);
+        }
         sliceData.write1Bit(1);
         sliceData.flush();
         buf = sliceData.getBuffer();
@@ -289,6 +321,32 @@ public final class H264Encoder extends VideoEncoder {
         escapeNAL(buf, dup);
     }
 
+    /**
+     * Reconstructs a P_Skip macroblock, which is a copy of the reference at the
+     * same location, with the slice's current qp and no residual.
+     */
+    private void skipMacroblock(final int mbX, final int mbY) {
+        final EncodedMB outMB = new EncodedMB();
+        outMB.setPos(mbX, mbY);
+        for (int p = 0; p < 3; p++) {
+            final int luma = p == 0 ? 1 : 0;
+            MBEncoderHelper.take(ref.getPlaneData(p), ref.getPlaneWidth(p), ref.getPlaneHeight(p), mbX << (3 + luma),
+                mbY << (3 + luma), outMB.getPixels().getPlaneData(p), 8 << luma, 8 << luma);
+        }
+        Arrays.fill(outMB.getMr(), 1);
+        outMB.setType(MBType.P_16x16);
+        outMB.setQp(context.prevQp);
+
+        context.update(outMB);
+        // Skipped macroblocks have no type in the bitstream, so the decoder does
+        // not use them for coefficient and intra mode prediction. Match that.
+        context.leftMBType = context.topMBType[mbX] = null;
+
+        new MBDeblocker().deblockMBP(outMB, mbX > 0 ? topEncoded[mbX - 1] : null,
+            mbY > 0 ? topEncoded[mbX] : null);
+        addToReference(outMB, mbX, mbY);
+    }
+
     private void calcMse(final Picture pic, final EncodedMB out, final int mbX, final int mbY, final long[] out_se) {
         final byte[] patch = new byte[256];
         for (int p = 0; p < 3; p++) {
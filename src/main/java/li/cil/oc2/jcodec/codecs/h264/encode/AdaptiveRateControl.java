@@ -0,0 +1,99 @@
+/* SPDX-License-Identifier: BSD 2-Clause "Simplified" License */
+
+package li.cil.oc2.jcodec.codecs.h264.encode;
+
+import li.cil.oc2.jcodec.codecs.h264.io.model.SliceType;
+import li.cil.oc2.jcodec.common.model.Picture;
+import li.cil.oc2.jcodec.common.model.Size;
+
+/**
+ * Frame level QP adaptation towards a target frame size.
+ * <p>
+ * The target frame size is set from the outside before encoding each frame, e.g. based on
+ * the bandwidth available for sending it. After each P-frame, the QP for the next frame is
+ * adjusted by the size of that frame relative to its target. Raising the QP by six roughly
+ * halves the frame size, so the QP is raised quickly when frames are too large, and lowered
+ * one step at a time when they are much smaller than needed, to avoid oscillating.
+ * <p>
+ * The size of a frame is what the encoder produced for it, unless its size after further
+ * processing is reported via {@link #setFrameSize(int)}, e.g. when frames are compressed before
+ * being sent. This way the frame size and the target measure the same thing.
+ * <p>
+ * I-frames are always much larger than P-frames, so their size is not used for adaptation.
+ */
+public final class AdaptiveRateControl implements RateControl {
+    private static final int MAX_QP_INCREASE = 6;
+
+    private final int minQp;
+    private final int maxQp;
+    private int qp;
+    private int targetFrameBits;
+    private int pictureTargetBits; // Target of the picture currently being encoded.
+    private int frameBits;
+    private SliceType sliceType;
+
+    public AdaptiveRateControl(final int minQp, final int maxQp) {
+        this.minQp = minQp;
+        this.maxQp = maxQp;
+        this.qp = minQp;
+    }
+
+    /**
+     * Sets the size the next frame should ideally not exceed.
+     *
+     * @param bytes the target frame size in bytes, zero or less for no target.
+     */
+    public void setTargetFrameSize(final int bytes) {
+        this.targetFrameBits = bytes > 0 ? bytes << 3 : 0;
+    }
+
+    /**
+     * Sets the size of the frame most recently encoded, replacing the size produced by the encoder.
+     * <p>
+     * Must be called before the next frame is started, to be used for adaptation.
+     *
+     * @param bytes the actual size of the frame in bytes.
+     */
+    public void setFrameSize(final int bytes) {
+        this.frameBits = bytes << 3;
+    }
+
+    @Override
+    public int startPicture(final Size sz, final int maxSize, final SliceType sliceType) {
+        if (this.sliceType == SliceType.P) {
+            adapt();
+        }
+
+        this.sliceType = sliceType;
+        this.pictureTargetBits = targetFrameBits;
+        this.frameBits = 0;
+        return qp;
+    }
+
+    @Override
+    public int initialQpDelta(final Picture pic, final int mbX, final int mbY) {
+        return 0;
+    }
+
+    @Override
+    public int accept(final int bits) {
+        frameBits += bits;
+        return 0;
+    }
+
+    private void adapt() {
+        if (pictureTargetBits <= 0) {
+            qp = minQp;
+            return;
+        }
+
+        // Six QP steps halve the frame size.
+        final double ratio = (double) Math.max(1, frameBits) / pictureTargetBits;
+        final int delta = (int) Math.round(6 * Math.log(ratio) / Math.log(2));
+        if (delta > 0) {
+            qp = Math.min(maxQp, qp + Math.min(MAX_QP_INCREASE, delta));
+        } else if (delta < -MAX_QP_INCREASE / 2) {
+            qp = Math.max(minQp, qp - 1);
+        }
+    }
+}
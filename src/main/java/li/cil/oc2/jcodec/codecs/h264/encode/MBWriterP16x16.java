@@ -43,33 +43,12 @@ public final class MBWriterP16x16 {
             final int refIdx = decideRef();
             CAVLCWriter.writeTE(out, refIdx, sps.numRefFrames - 1);
         }
-        final int partBlkSize = 4; // 16x16
         final int refIdx = 1;
-
-        final boolean trAvb = mbY > 0 && mbX < sps.picWidthInMbsMinus1;
-        final boolean tlAvb = mbX > 0 && mbY > 0;
-        final int ax = ctx.mvLeftX[0];
-        final int ay = ctx.mvLeftY[0];
-        final boolean ar = ctx.mvLeftR[0] == refIdx;
-
-        final int bx = ctx.mvTopX[mbX << 2];
-        final int by = ctx.mvTopY[mbX << 2];
-        final boolean br = ctx.mvTopR[mbX << 2] == refIdx;
-
-        final int cx = trAvb ? ctx.mvTopX[(mbX << 2) + partBlkSize] : 0;
-        final int cy = trAvb ? ctx.mvTopY[(mbX << 2) + partBlkSize] : 0;
-        final boolean cr = trAvb && ctx.mvTopR[(mbX << 2) + partBlkSize] == refIdx;
-
-        final int dx = tlAvb ? ctx.mvTopLeftX : 0;
-        final int dy = tlAvb ? ctx.mvTopLeftY : 0;
-        final boolean dr = tlAvb && (ctx.mvTopLeftR == refIdx);
-
-        final int mvpx = H264EncoderUtils.median(ax, ar, bx, br, cx, cr, dx, dr, mbX > 0, mbY > 0, trAvb, tlAvb);
-        final int mvpy = H264EncoderUtils.median(ay, ar, by, br, cy, cr, dy, dr, mbX > 0, mbY > 0, trAvb, tlAvb);
+        final int[] mvp = predictMotionVector(ctx, mbX, mbY);
 
         // Motion estimation for the current macroblock
-        CAVLCWriter.writeSE(out, params.mv[0] - mvpx); // mvdx
-        CAVLCWriter.writeSE(out, params.mv[1] - mvpy); // mvdy
+        CAVLCWriter.writeSE(out, params.mv[0] - mvp[0]); // mvdx
+        CAVLCWriter.writeSE(out, params.mv[1] - mvp[1]); // mvdy
 
         final Picture mbRef = Picture.create(16, 16, sps.chromaFormatIdc);
         final int[][] mb = new int[][]{new int[256], new int[64], new int[64]};
@@ -103,6 +82,51 @@ public final class MBWriterP16x16 {
         ctx.prevQp = qp;
     }
 
+    /**
+     * Checks whether a P_Skip macroblock at the given position would be predicted
+     * to have a zero motion vector. Only then can a macroblock identical to the
+     * reference at the same location be skipped.
+     */
+    public boolean isSkipMotionVectorZero(final EncodingContext ctx, final int mbX, final int mbY) {
+        final int refIdx = 1;
+        if (mbX == 0 || mbY == 0)
+            return true;
+        if (ctx.mvLeftR[0] == refIdx && ctx.mvLeftX[0] == 0 && ctx.mvLeftY[0] == 0)
+            return true;
+        if (ctx.mvTopR[mbX << 2] == refIdx && ctx.mvTopX[mbX << 2] == 0 && ctx.mvTopY[mbX << 2] == 0)
+            return true;
+
+        final int[] mvp = predictMotionVector(ctx, mbX, mbY);
+        return mvp[0] == 0 && mvp[1] == 0;
+    }
+
+    private int[] predictMotionVector(final EncodingContext ctx, final int mbX, final int mbY) {
+        final int partBlkSize = 4; // 16x16
+        final int refIdx = 1;
+
+        final boolean trAvb = mbY > 0 && mbX < sps.picWidthInMbsMinus1;
+        final boolean tlAvb = mbX > 0 && mbY > 0;
+        final int ax = ctx.mvLeftX[0];
+        final int ay = ctx.mvLeftY[0];
+        final boolean ar = ctx.mvLeftR[0] == refIdx;
+
+        final int bx = ctx.mvTopX[mbX << 2];
+        final int by = ctx.mvTopY[mbX << 2];
+        final boolean br = ctx.mvTopR[mbX << 2] == refIdx;
+
+        final int cx = trAvb ? ctx.mvTopX[(mbX << 2) + partBlkSize] : 0;
+        final int cy = trAvb ? ctx.mvTopY[(mbX << 2) + partBlkSize] : 0;
+        final boolean cr = trAvb && ctx.mvTopR[(mbX << 2) + partBlkSize] == refIdx;
+
+        final int dx = tlAvb ? ctx.mvTopLeftX : 0;
+        final int dy = tlAvb ? ctx.mvTopLeftY : 0;
+        final boolean dr = tlAvb && (ctx.mvTopLeftR == refIdx);
+
+        final int mvpx = H264EncoderUtils.median(ax, ar, bx, br, cx, cr, dx, dr, mbX > 0, mbY > 0, trAvb, tlAvb);
+        final int mvpy = H264EncoderUtils.median(ay, ar, by, br, cy, cr, dy, dr, mbX > 0, mbY > 0, trAvb, tlAvb);
+        return new int[]{mvpx, mvpy};
+    }
+
     private int getCodedBlockPattern() {
         return 47;
     }
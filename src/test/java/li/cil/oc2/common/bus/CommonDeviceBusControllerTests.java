@@ -2,25 +2,33 @@ package li.cil.oc2.common.bus;
 
 import li.cil.oc2.api.bus.DeviceBusElement;
 import li.cil.oc2.api.bus.device.rpc.RPCDevice;
+import li.cil.oc2.common.Config;
 import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.event.TickEvent;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Collections;
-import java.util.Optional;
+import java.util.*;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 public class CommonDeviceBusControllerTests {
     private CommonDeviceBusController busController;
     private DeviceBusElement busControllerBusElement;
+    private int maxBusElementCount;
+    private int busScanElementsPerTick;
 
     @BeforeEach
     public void setupEach() {
+        maxBusElementCount = Config.maxBusElementCount;
+        busScanElementsPerTick = Config.busScanElementsPerTick;
+
         busControllerBusElement = mock(DeviceBusElement.class);
         when(busControllerBusElement.getLocalDevices()).thenReturn(emptyList());
         when(busControllerBusElement.getNeighbors()).thenReturn(Optional.empty());
@@ -28,6 +36,16 @@ public class CommonDeviceBusControllerTests {
         busController = new CommonDeviceBusController(busControllerBusElement, 0);
     }
 
+    @AfterEach
+    public void teardownEach() {
+        Config.maxBusElementCount = maxBusElementCount;
+
+        // Don't leave a small budget for other tests.
+        Config.busScanElementsPerTick = Integer.MAX_VALUE;
+        tick();
+        Config.busScanElementsPerTick = busScanElementsPerTick;
+    }
+
     @Test
     public void scanPendingWhenBlockEntityNotLoaded() {
         busController.scan();
@@ -75,4 +93,150 @@ public class CommonDeviceBusControllerTests {
         verify(busElement1).addController(busController);
         verify(busElement2).addController(busController);
     }
+
+    @Test
+    public void scanContinuesInNextTickWhenBudgetIsUsedUp() {
+        // topology: controller <-> element 1 <-> element 2
+
+        final DeviceBusElement busElement1 = mock(DeviceBusElement.class);
+        final DeviceBusElement busElement2 = mock(DeviceBusElement.class);
+
+        when(busControllerBusElement.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement2))));
+        when(busElement2.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+
+        Config.busScanElementsPerTick = 1;
+
+        tick();
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.SCAN_PENDING, busController.getState());
+
+        tick();
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.SCAN_PENDING, busController.getState());
+
+        tick();
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+
+        verify(busElement1).addController(busController);
+        verify(busElement2).addController(busController);
+    }
+
+    @Test
+    public void scanDoesNotRestartWhenVisitedElementChanges() {
+        // topology: controller <-> element 1 <-> element 2
+
+        final DeviceBusElement busElement1 = mock(DeviceBusElement.class);
+        final DeviceBusElement busElement2 = mock(DeviceBusElement.class);
+
+        when(busControllerBusElement.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement2))));
+        when(busElement2.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+
+        Config.busScanElementsPerTick = 1;
+
+        tick();
+        busController.scan();
+        busController.scheduleBusScan(busControllerBusElement);
+
+        tick();
+        busController.scan();
+        tick();
+        busController.scan();
+        tick();
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+
+        verify(busControllerBusElement, times(2)).getNeighbors();
+        verify(busElement1, times(1)).getNeighbors();
+        verify(busElement2, times(1)).getNeighbors();
+    }
+
+    @Test
+    public void elementChangeOnlyVisitsChangedElement() {
+        // topology: controller <-> element 1 <-> element 2, then controller <-> element 1
+
+        final DeviceBusElement busElement1 = mock(DeviceBusElement.class);
+        final DeviceBusElement busElement2 = mock(DeviceBusElement.class);
+
+        when(busControllerBusElement.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement2))));
+        when(busElement2.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+        assertTrue(busController.getElements().contains(busElement2));
+
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.emptyList()));
+        busController.scheduleBusScan(busElement1);
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+
+        assertFalse(busController.getElements().contains(busElement2));
+        verify(busElement2).removeController(busController);
+        verify(busControllerBusElement, times(1)).getNeighbors();
+        verify(busElement2, times(1)).getNeighbors();
+    }
+
+    @Test
+    public void invalidatedElementIsFoundAgainWhenStillConnected() {
+        // topology: controller <-> element 1 -> element 2, element 1 replaces its optional
+
+        final DeviceBusElement busElement1 = mock(DeviceBusElement.class);
+        final DeviceBusElement busElement2 = mock(DeviceBusElement.class);
+
+        final List<LazyOptional<DeviceBusElement>> busElement1Optionals = new ArrayList<>();
+        when(busControllerBusElement.getNeighbors()).then(invocation -> {
+            final LazyOptional<DeviceBusElement> optional = LazyOptional.of(() -> busElement1);
+            busElement1Optionals.add(optional);
+            return Optional.of(Collections.singleton(optional));
+        });
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement2))));
+        when(busElement2.getNeighbors()).thenReturn(Optional.of(Collections.emptyList()));
+
+        final RPCDevice device = mock(RPCDevice.class);
+        when(busElement2.getLocalDevices()).thenReturn(singletonList(device));
+
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+        assertTrue(busController.getDevices().contains(device));
+
+        busElement1Optionals.get(0).invalidate();
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.READY, busController.getState());
+
+        assertTrue(busController.getElements().contains(busElement1));
+        assertTrue(busController.getElements().contains(busElement2));
+        assertEquals(Set.of(device), busController.getDevices());
+        verify(busElement1, never()).removeController(busController);
+        verify(busElement2, never()).removeController(busController);
+
+        // The new optional is observed, too.
+        busElement1Optionals.get(1).invalidate();
+        busController.scan();
+        assertEquals(3, busElement1Optionals.size());
+        assertEquals(Set.of(device), busController.getDevices());
+    }
+
+    @Test
+    public void scanFailsWhenTooManyElements() {
+        final DeviceBusElement busElement1 = mock(DeviceBusElement.class);
+
+        when(busControllerBusElement.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busElement1))));
+        when(busElement1.getNeighbors()).thenReturn(Optional.of(Collections.singleton(LazyOptional.of(() -> busControllerBusElement))));
+
+        Config.maxBusElementCount = 1;
+
+        busController.scan();
+        assertEquals(CommonDeviceBusController.BusState.TOO_COMPLEX, busController.getState());
+
+        verify(busElement1).removeController(busController);
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static void tick() {
+        BusScanScheduler.handleServerTick(new TickEvent.ServerTickEvent(TickEvent.Phase.START));
+    }
 }
@@ -1,16 +1,26 @@
 package li.cil.oc2.common.bus;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import li.cil.oc2.api.bus.DeviceBusController;
 import li.cil.oc2.api.bus.device.Device;
 import li.cil.oc2.api.bus.device.rpc.RPCDevice;
 import li.cil.oc2.api.bus.device.rpc.RPCMethod;
 import li.cil.oc2.common.bus.device.rpc.RPCDeviceList;
+import li.cil.oc2.common.serialization.MessagePackJsonConverter;
 import li.cil.sedna.api.device.serial.SerialDevice;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public final class RPCDeviceBusAdapterTests {
@@ -158,6 +168,105 @@ public final class RPCDeviceBusAdapterTests {
         verify(device2, atMostOnce()).mount();
     }
 
+    @Test
+    public void binaryProtocolListsDevicesWithHandles() {
+        final LoopbackSerialDevice serialDevice = new LoopbackSerialDevice();
+        adapter = new RPCDeviceBusAdapter(serialDevice);
+        final RPCDevice device = mock(RPCDevice.class);
+        when(device.getMethodGroups()).thenReturn(Collections.singletonList(mock(RPCMethod.class)));
+        final UUID identifier = UUID.randomUUID();
+        addDevice(device, identifier);
+        adapter.resume(controller, true);
+
+        serialDevice.putInput("{\"type\":\"protocol\",\"data\":\"binary\"}\0".getBytes(StandardCharsets.UTF_8));
+        adapter.step(0);
+        assertEquals("\0{\"type\":\"protocol\",\"data\":\"binary\"}\0", new String(serialDevice.takeOutput(), StandardCharsets.UTF_8));
+
+        serialDevice.putInput(frame(JsonParser.parseString("{\"type\":\"list\"}")));
+        adapter.step(0);
+        final JsonObject response = unframe(serialDevice.takeOutput()).getAsJsonObject();
+        assertEquals("list", response.get("type").getAsString());
+        final JsonArray devices = response.getAsJsonArray("data");
+        assertEquals(1, devices.size());
+        assertEquals(identifier.toString(), devices.get(0).getAsJsonObject().get("deviceId").getAsString());
+        assertEquals(0, devices.get(0).getAsJsonObject().get("handle").getAsInt());
+
+        serialDevice.putInput(frame(JsonParser.parseString("{\"type\":\"methods\",\"data\":1}")));
+        adapter.step(0);
+        final JsonObject error = unframe(serialDevice.takeOutput()).getAsJsonObject();
+        assertEquals("error", error.get("type").getAsString());
+        assertEquals(RPCDeviceBusAdapter.ERROR_UNKNOWN_DEVICE, error.get("data").getAsString());
+    }
+
+    @Test
+    public void unknownProtocolIsRejected() {
+        final LoopbackSerialDevice serialDevice = new LoopbackSerialDevice();
+        adapter = new RPCDeviceBusAdapter(serialDevice);
+
+        serialDevice.putInput("{\"type\":\"protocol\",\"data\":\"xml\"}\0".getBytes(StandardCharsets.UTF_8));
+        adapter.step(0);
+        assertEquals("\0{\"type\":\"error\",\"data\":\"" + RPCDeviceBusAdapter.ERROR_UNKNOWN_PROTOCOL + "\"}\0", new String(serialDevice.takeOutput(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void pipelinedInvocationsCompleteOutOfOrder() {
+        final LoopbackSerialDevice serialDevice = new LoopbackSerialDevice();
+        adapter = new RPCDeviceBusAdapter(serialDevice);
+        final UUID identifier = addTestMethodsDevice();
+        adapter.resume(controller, true);
+
+        serialDevice.putInput(("{\"type\":\"invoke\",\"id\":1,\"data\":{\"deviceId\":\"" + identifier + "\",\"name\":\"SynchronizedMethod\"}}\0" +
+                               "{\"type\":\"invoke\",\"id\":2,\"data\":{\"deviceId\":\"" + identifier + "\",\"name\":\"UnsynchronizedMethod\"}}\0").getBytes(StandardCharsets.UTF_8));
+        adapter.step(0);
+        assertEquals("\0{\"type\":\"result\",\"data\":2,\"id\":2}\0", new String(serialDevice.takeOutput(), StandardCharsets.UTF_8));
+
+        adapter.tick();
+        adapter.step(0);
+        assertEquals("\0{\"type\":\"result\",\"data\":1,\"id\":1}\0", new String(serialDevice.takeOutput(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void batchRunsInSingleTick() {
+        final LoopbackSerialDevice serialDevice = new LoopbackSerialDevice();
+        adapter = new RPCDeviceBusAdapter(serialDevice);
+        final UUID identifier = addTestMethodsDevice();
+        adapter.resume(controller, true);
+
+        serialDevice.putInput(("{\"type\":\"batch\",\"data\":[" +
+                               "{\"deviceId\":\"" + identifier + "\",\"name\":\"SynchronizedMethod\"}," +
+                               "{\"deviceId\":\"" + identifier + "\",\"name\":\"UnknownMethod\"}," +
+                               "{\"deviceId\":\"" + identifier + "\",\"name\":\"UnsynchronizedMethod\"}]}\0").getBytes(StandardCharsets.UTF_8));
+        adapter.step(0);
+        assertEquals(0, serialDevice.takeOutput().length);
+
+        adapter.tick();
+        adapter.step(0);
+        assertEquals("\0{\"type\":\"batch\",\"data\":[" +
+                     "{\"type\":\"result\",\"data\":1}," +
+                     "{\"type\":\"error\",\"data\":\"" + RPCDeviceBusAdapter.ERROR_UNKNOWN_METHOD + "\"}," +
+                     "{\"type\":\"result\",\"data\":2}]}\0", new String(serialDevice.takeOutput(), StandardCharsets.UTF_8));
+    }
+
+    private UUID addTestMethodsDevice() {
+        final RPCDevice device = mock(RPCDevice.class);
+        when(device.getMethodGroups()).thenReturn(Arrays.asList(new SynchronizedMethod(), new UnsynchronizedMethod()));
+        final UUID identifier = UUID.randomUUID();
+        addDevice(device, identifier);
+        return identifier;
+    }
+
+    private static byte[] frame(final JsonElement message) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertDoesNotThrow(() -> MessagePackJsonConverter.write(message, new DataOutputStream(bytes)));
+        return ByteBuffer.allocate(4 + bytes.size()).putInt(bytes.size()).put(bytes.toByteArray()).array();
+    }
+
+    private static JsonElement unframe(final byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        assertEquals(data.length - 4, buffer.getInt());
+        return MessagePackJsonConverter.read(buffer);
+    }
+
     private RPCDevice addEmptyDevice() {
         final RPCDevice device = mock(RPCDevice.class);
         addDevice(device);
@@ -184,4 +293,67 @@ public final class RPCDeviceBusAdapterTests {
         busDevices.remove(device);
         deviceIdentifiers.remove(device);
     }
+
+    private static final class SynchronizedMethod extends AbstractTestMethod {
+        SynchronizedMethod() {
+            super(int.class);
+        }
+
+        @Override
+        public boolean isSynchronized() {
+            return true;
+        }
+
+        @Override
+        protected Object invoke(final Object... parameters) {
+            return 1;
+        }
+    }
+
+    private static final class UnsynchronizedMethod extends AbstractTestMethod {
+        UnsynchronizedMethod() {
+            super(int.class);
+        }
+
+        @Override
+        protected Object invoke(final Object... parameters) {
+            return 2;
+        }
+    }
+
+    private static final class LoopbackSerialDevice implements SerialDevice {
+        private final ArrayDeque<Byte> input = new ArrayDeque<>();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        public void putInput(final byte[] data) {
+            for (final byte value : data) {
+                input.add(value);
+            }
+        }
+
+        public byte[] takeOutput() {
+            final byte[] result = output.toByteArray();
+            output.reset();
+            return result;
+        }
+
+        @Override
+        public int read() {
+            return input.isEmpty() ? -1 : input.remove() & 0xFF;
+        }
+
+        @Override
+        public boolean canPutByte() {
+            return true;
+        }
+
+        @Override
+        public void putByte(final byte value) {
+            output.write(value);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
 }
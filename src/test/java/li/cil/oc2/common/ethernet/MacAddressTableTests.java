@@ -0,0 +1,95 @@
+package li.cil.oc2.common.ethernet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MacAddressTableTests {
+    private static final int CAPACITY = 4;
+    private static final int MAX_AGE = 100;
+    private static final int BROADCAST = -1;
+
+    private final MacAddressTable<String> table = new MacAddressTable<>(CAPACITY, MAX_AGE);
+
+    @Test
+    public void unknownDestinationIsFlooded() {
+        assertNull(table.lookup(frame(2, 1), 0));
+    }
+
+    @Test
+    public void learnedDestinationIsFound() {
+        table.learn(frame(BROADCAST, 1), "a", 0);
+        assertEquals("a", table.lookup(frame(1, 2), 0));
+    }
+
+    @Test
+    public void multicastIsFloodedAndNotLearned() {
+        table.learn(frame(2, 1), "a", 0);
+        assertNull(table.lookup(frame(BROADCAST, 2), 0));
+
+        final byte[] multicastSource = frame(2, 3);
+        multicastSource[6] |= 1;
+        table.learn(multicastSource, "b", 0);
+        final byte[] multicastDestination = frame(3, 2);
+        multicastDestination[0] |= 1;
+        assertNull(table.lookup(multicastDestination, 0));
+        assertNull(table.lookup(frame(3, 2), 0));
+    }
+
+    @Test
+    public void copiesArrivingAtSameTimeDoNotMoveAddress() {
+        table.learn(frame(BROADCAST, 1), "a", 0);
+        table.learn(frame(BROADCAST, 1), "b", 0);
+        assertEquals("a", table.lookup(frame(1, 2), 0));
+
+        table.learn(frame(BROADCAST, 1), "b", 1);
+        assertEquals("b", table.lookup(frame(1, 2), 1));
+    }
+
+    @Test
+    public void oldAddressesExpire() {
+        table.learn(frame(BROADCAST, 1), "a", 0);
+        assertEquals("a", table.lookup(frame(1, 2), MAX_AGE));
+        assertNull(table.lookup(frame(1, 2), MAX_AGE + 1));
+    }
+
+    @Test
+    public void leastRecentlySeenAddressIsReplacedWhenFull() {
+        for (int i = 0; i < CAPACITY; i++) {
+            table.learn(frame(BROADCAST, 2 * i + 2), "a", 0);
+        }
+        table.learn(frame(BROADCAST, 2), "a", 1); // Seen again, so no longer least recently seen.
+        table.learn(frame(BROADCAST, 64), "b", 1);
+
+        assertEquals("a", table.lookup(frame(2, 0), 1));
+        assertNull(table.lookup(frame(4, 0), 1));
+        assertEquals("b", table.lookup(frame(64, 0), 1));
+    }
+
+    @Test
+    public void removedPortIsForgotten() {
+        table.learn(frame(BROADCAST, 2), "a", 0);
+        table.learn(frame(BROADCAST, 4), "b", 0);
+        table.remove("a");
+
+        assertNull(table.lookup(frame(2, 0), 0));
+        assertEquals("b", table.lookup(frame(4, 0), 0));
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static byte[] frame(final int destination, final int source) {
+        final byte[] frame = new byte[64];
+        if (destination == BROADCAST) {
+            Arrays.fill(frame, 0, 6, (byte) 0xFF);
+        } else {
+            frame[0] = 2; // Locally administered, unicast.
+            frame[5] = (byte) destination;
+        }
+        frame[6] = 2;
+        frame[11] = (byte) source;
+        return frame;
+    }
+}
@@ -0,0 +1,184 @@
+package li.cil.oc2.common.ethernet;
+
+import li.cil.oc2.api.capabilities.NetworkInterface;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.TextComponent;
+import net.minecraftforge.event.TickEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class NetworkSegmentTests {
+    private static final int BRIDGE_COUNT = 4;
+    private static final int TIME_TO_LIVE = 16;
+    private static final int BROADCAST = -1;
+
+    private TestBridge[] bridges;
+    private TestInterface[] interfaces;
+
+    @BeforeEach
+    public void setupEach() {
+        // topology: a ring of bridges, each with one interface attached
+        bridges = new TestBridge[BRIDGE_COUNT];
+        interfaces = new TestInterface[BRIDGE_COUNT];
+        for (int i = 0; i < BRIDGE_COUNT; i++) {
+            bridges[i] = new TestBridge();
+            interfaces[i] = new TestInterface();
+            bridges[i].connected.add(interfaces[i]);
+        }
+        for (int i = 0; i < BRIDGE_COUNT; i++) {
+            bridges[i].connected.add(bridges[(i + 1) % BRIDGE_COUNT]);
+            bridges[(i + 1) % BRIDGE_COUNT].connected.add(bridges[i]);
+        }
+    }
+
+    @Test
+    public void broadcastInRingIsReceivedOnce() {
+        final NetworkSegment segment = NetworkSegment.get(bridges[0]);
+        assertEquals(BRIDGE_COUNT, segment.getInterfaceCount());
+
+        assertTrue(segment.send(bridges[0], interfaces[0], frame(BROADCAST, 1), TIME_TO_LIVE, 0));
+        deliverFrames();
+
+        assertEquals(0, interfaces[0].receivedFrames.size());
+        for (int i = 1; i < BRIDGE_COUNT; i++) {
+            assertEquals(1, interfaces[i].receivedFrames.size());
+        }
+    }
+
+    @Test
+    public void allBridgesInRingShareSegment() {
+        final NetworkSegment segment = NetworkSegment.get(bridges[0]);
+        for (final TestBridge bridge : bridges) {
+            assertSame(segment, NetworkSegment.get(bridge));
+        }
+    }
+
+    @Test
+    public void unicastIsOnlyReceivedByLearnedDestination() {
+        final NetworkSegment segment = NetworkSegment.get(bridges[0]);
+        segment.send(bridges[0], interfaces[0], frame(BROADCAST, 1), TIME_TO_LIVE, 0);
+        deliverFrames();
+        for (final TestInterface networkInterface : interfaces) {
+            networkInterface.receivedFrames.clear();
+        }
+
+        segment.send(bridges[2], interfaces[2], frame(1, 3), TIME_TO_LIVE, 0);
+        deliverFrames();
+
+        assertEquals(1, interfaces[0].receivedFrames.size());
+        for (int i = 1; i < BRIDGE_COUNT; i++) {
+            assertEquals(0, interfaces[i].receivedFrames.size());
+        }
+    }
+
+    @Test
+    public void segmentIsRebuiltAfterBridgeInvalidation() {
+        final NetworkSegment segment = NetworkSegment.get(bridges[0]);
+
+        final TestInterface addedInterface = new TestInterface();
+        bridges[2].connected.add(addedInterface);
+        bridges[2].invalidateSegment();
+
+        final NetworkSegment rebuiltSegment = NetworkSegment.get(bridges[0]);
+        assertNotSame(segment, rebuiltSegment);
+        assertEquals(BRIDGE_COUNT + 1, rebuiltSegment.getInterfaceCount());
+
+        rebuiltSegment.send(bridges[0], interfaces[0], frame(BROADCAST, 1), TIME_TO_LIVE, 0);
+        deliverFrames();
+
+        assertEquals(1, addedInterface.receivedFrames.size());
+        for (int i = 1; i < BRIDGE_COUNT; i++) {
+            assertEquals(1, interfaces[i].receivedFrames.size());
+        }
+    }
+
+    @Test
+    public void framesWithoutTimeToLiveAreDropped() {
+        final NetworkSegment segment = NetworkSegment.get(bridges[0]);
+        assertFalse(segment.send(bridges[0], interfaces[0], frame(BROADCAST, 1), 0, 0));
+        deliverFrames();
+
+        for (final TestInterface networkInterface : interfaces) {
+            assertEquals(0, networkInterface.receivedFrames.size());
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////
+
+    private static void deliverFrames() {
+        EthernetFabric.handleServerTick(new TickEvent.ServerTickEvent(TickEvent.Phase.END));
+    }
+
+    private static byte[] frame(final int destination, final int source) {
+        final byte[] frame = new byte[64];
+        if (destination == BROADCAST) {
+            Arrays.fill(frame, 0, 6, (byte) 0xFF);
+        } else {
+            frame[0] = 2; // Locally administered, unicast.
+            frame[5] = (byte) destination;
+        }
+        frame[6] = 2;
+        frame[11] = (byte) source;
+        return frame;
+    }
+
+    private static final class TestBridge implements EthernetBridge {
+        public final List<NetworkInterface> connected = new ArrayList<>();
+        @Nullable private NetworkSegment segment;
+
+        @Override
+        public void collectConnectedInterfaces(final Consumer<NetworkInterface> consumer) {
+            connected.forEach(consumer);
+        }
+
+        @Override
+        public Component getDescription() {
+            return TextComponent.EMPTY;
+        }
+
+        @Nullable
+        @Override
+        public NetworkSegment getSegment() {
+            return segment;
+        }
+
+        @Override
+        public void setSegment(final NetworkSegment segment) {
+            this.segment = segment;
+        }
+
+        @Nullable
+        @Override
+        public byte[] readEthernetFrame() {
+            return null;
+        }
+
+        @Override
+        public void writeEthernetFrame(final NetworkInterface source, final byte[] frame, final int timeToLive) {
+            NetworkSegment.get(this).send(this, source, frame, timeToLive, 0);
+        }
+    }
+
+    private static final class TestInterface implements NetworkInterface {
+        public final List<byte[]> receivedFrames = new ArrayList<>();
+
+        @Nullable
+        @Override
+        public byte[] readEthernetFrame() {
+            return null;
+        }
+
+        @Override
+        public void writeEthernetFrame(final NetworkInterface source, final byte[] frame, final int timeToLive) {
+            receivedFrames.add(frame);
+        }
+    }
+}
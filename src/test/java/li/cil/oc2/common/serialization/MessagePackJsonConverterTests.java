@@ -0,0 +1,54 @@
+package li.cil.oc2.common.serialization;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MessagePackJsonConverterTests {
+    @Test
+    public void testRoundTrip() {
+        final JsonElement json = JsonParser.parseString("""
+            {
+                "type": "invoke",
+                "data": {
+                    "deviceId": 3,
+                    "name": "getSignal",
+                    "parameters": [true, false, null, -1, -200, 70000, 5000000000, 1.5, "a longer string that needs more than 31 bytes"]
+                }
+            }""");
+
+        assertEquals(json, MessagePackJsonConverter.read(ByteBuffer.wrap(write(json))));
+    }
+
+    @Test
+    public void testCompactEncoding() {
+        assertArrayEquals(new byte[]{0x05}, write(JsonParser.parseString("5")));
+        assertArrayEquals(new byte[]{(byte) 0xff}, write(JsonParser.parseString("-1")));
+        assertArrayEquals(new byte[]{(byte) 0xa1, 'a'}, write(JsonParser.parseString("\"a\"")));
+        assertArrayEquals(new byte[]{(byte) 0x81, (byte) 0xa1, 'a', (byte) 0x91, (byte) 0xc3}, write(JsonParser.parseString("{\"a\":[true]}")));
+    }
+
+    @Test
+    public void testBinaryIsReadAsUnsignedBytes() {
+        final byte[] data = {(byte) 0xc4, 2, 1, (byte) 0xff};
+        assertEquals(JsonParser.parseString("[1,255]"), MessagePackJsonConverter.read(ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void testTruncatedMessageThrows() {
+        final byte[] data = {(byte) 0xdd, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+        assertThrows(RuntimeException.class, () -> MessagePackJsonConverter.read(ByteBuffer.wrap(data)));
+    }
+
+    private static byte[] write(final JsonElement json) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertDoesNotThrow(() -> MessagePackJsonConverter.write(json, new DataOutputStream(bytes)));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,185 @@
+package li.cil.oc2.common.serialization;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PageLogTests {
+    private static final int PAGE_SIZE = 4096;
+    private static final int PAGE_COUNT = 64;
+
+    private Path path;
+    private Path replacementPath;
+    private FileChannel channel;
+    private FileChannel replacement;
+    private boolean failCommit;
+    private final PageLog.Storage storage = new PageLog.Storage() {
+        @Override
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public FileChannel createReplacement() throws IOException {
+            replacement = FileChannel.open(replacementPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return replacement;
+        }
+
+        @Override
+        public FileChannel commitReplacement() throws IOException {
+            replacement.close();
+            if (failCommit) {
+                throw new IOException();
+            }
+            channel.close();
+            Files.move(replacementPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return channel;
+        }
+    };
+
+    @BeforeEach
+    public void setupEach() throws IOException {
+        path = Files.createTempFile("page", ".log");
+        replacementPath = path.resolveSibling(path.getFileName() + ".new");
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @AfterEach
+    public void teardownEach() throws IOException {
+        channel.close();
+        if (replacement != null) {
+            replacement.close();
+        }
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(replacementPath);
+    }
+
+    @Test
+    public void incrementalSnapshotsAreReplayedInOrder() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{1, 2}, new byte[][]{filledPage(1), filledPage(2)}, false);
+        log.write(new int[]{2, 3}, new byte[][]{null, randomPage()}, false);
+        final byte[] latest = filledPage(3);
+        log.write(new int[]{1}, new byte[][]{latest}, false);
+
+        final byte[][] pages = replay();
+        assertArrayEquals(latest, pages[1]);
+        assertNull(pages[2]);
+        assertNotNull(pages[3]);
+        assertNull(pages[4]);
+    }
+
+    @Test
+    public void pagesAreCompressed() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{0, 1, 2, 3}, new byte[][]{filledPage(1), filledPage(2), filledPage(3), filledPage(4)}, false);
+        assertTrue(channel.size() < PAGE_SIZE);
+    }
+
+    @Test
+    public void incompressiblePagesAreStoredAsIs() throws IOException {
+        final byte[] page = randomPage();
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{5}, new byte[][]{page}, false);
+        assertArrayEquals(page, replay()[5]);
+    }
+
+    @Test
+    public void uncommittedDataIsDiscarded() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{1}, new byte[][]{filledPage(1)}, false);
+        final long committedSize = channel.size();
+        log.write(new int[]{1, 2}, new byte[][]{filledPage(2), filledPage(2)}, false);
+        channel.truncate(channel.size() - 4);
+
+        final byte[][] pages = replay();
+        assertArrayEquals(filledPage(1), pages[1]);
+        assertNull(pages[2]);
+        assertEquals(committedSize, channel.size());
+    }
+
+    @Test
+    public void fullSnapshotReplacesLog() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        for (int i = 0; i < 1024; i++) {
+            log.write(new int[]{i % 4}, new byte[][]{randomPage()}, false);
+        }
+        assertTrue(log.shouldCompact());
+
+        log.write(new int[]{7}, new byte[][]{filledPage(7)}, true);
+        assertFalse(log.shouldCompact());
+
+        final byte[][] pages = replay();
+        assertNull(pages[0]);
+        assertArrayEquals(filledPage(7), pages[7]);
+    }
+
+    @Test
+    public void failedFullSnapshotKeepsPreviousLog() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{1}, new byte[][]{filledPage(1)}, false);
+
+        failCommit = true;
+        assertThrows(IOException.class, () -> log.write(new int[]{2}, new byte[][]{filledPage(2)}, true));
+        failCommit = false;
+
+        log.write(new int[]{3}, new byte[][]{filledPage(3)}, false);
+
+        final byte[][] pages = replay();
+        assertArrayEquals(filledPage(1), pages[1]);
+        assertNull(pages[2]);
+        assertArrayEquals(filledPage(3), pages[3]);
+    }
+
+    @Test
+    public void invalidRecordLengthsEndLog() throws IOException {
+        final PageLog log = PageLog.create(storage, PAGE_SIZE, PAGE_COUNT);
+        log.write(new int[]{1}, new byte[][]{filledPage(1)}, false);
+        final long committedSize = channel.size();
+
+        for (final int length : new int[]{Integer.MIN_VALUE, -16, PAGE_SIZE}) {
+            // Invalid record, followed by a commit marker that would commit it.
+            final int payloadLength = length == Integer.MIN_VALUE ? 0 : Math.abs(length);
+            final ByteBuffer record = ByteBuffer.allocate(8 + payloadLength + 8);
+            record.putInt(2).putInt(length).position(8 + payloadLength);
+            record.putInt(-1).putInt(1).flip();
+            channel.write(record, committedSize);
+
+            final byte[][] pages = replay();
+            assertArrayEquals(filledPage(1), pages[1]);
+            assertNull(pages[2]);
+            assertEquals(committedSize, channel.size());
+        }
+    }
+
+    private byte[][] replay() throws IOException {
+        final byte[][] pages = new byte[PAGE_COUNT][];
+        PageLog.open(storage, PAGE_SIZE, PAGE_COUNT, (final int index, @Nullable final byte[] data) -> pages[index] = data);
+        return pages;
+    }
+
+    private static byte[] filledPage(final int value) {
+        final byte[] page = new byte[PAGE_SIZE];
+        ByteBuffer.wrap(page).putInt(value).putInt(PAGE_SIZE - 4, value);
+        return page;
+    }
+
+    private static byte[] randomPage() {
+        final byte[] page = new byte[PAGE_SIZE];
+        new Random(PAGE_SIZE).nextBytes(page);
+        return page;
+    }
+}
@@ -0,0 +1,111 @@
+package li.cil.oc2.common.serialization;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class SparseBlobTests {
+    private static final int BLOCK_SIZE = 512;
+    private static final int BLOCK_COUNT = 1024;
+
+    private Path path;
+    private FileChannel channel;
+
+    @BeforeEach
+    public void setupEach() throws IOException {
+        path = Files.createTempFile("sparse", ".blob");
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @AfterEach
+    public void teardownEach() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void newBlobOnlyStoresHeaderAndIndex() throws IOException {
+        final SparseBlob blob = SparseBlob.create(channel, BLOCK_SIZE, BLOCK_COUNT, 42);
+
+        assertTrue(SparseBlob.isSparseBlob(channel));
+        assertEquals(0, blob.getAllocatedBlockCount());
+        assertFalse(blob.isAllocated(0));
+        assertTrue(channel.size() < BLOCK_COUNT * 8L);
+    }
+
+    @Test
+    public void allocatedBlocksPersist() throws IOException {
+        final SparseBlob blob = SparseBlob.create(channel, BLOCK_SIZE, BLOCK_COUNT, 42);
+        blob.allocate(1000, filledBlock((byte) 1));
+        blob.allocate(3, filledBlock((byte) 2));
+        blob.write(1000, 10, ByteBuffer.wrap(new byte[]{5, 6}));
+
+        final long sizeWithTwoBlocks = channel.size();
+
+        final SparseBlob reopened = SparseBlob.open(channel);
+        assertEquals(42, reopened.getTag());
+        assertEquals(BLOCK_COUNT, reopened.getBlockCount());
+        assertEquals(2, reopened.getAllocatedBlockCount());
+        assertTrue(reopened.isAllocated(3));
+        assertTrue(reopened.isAllocated(1000));
+        assertFalse(reopened.isAllocated(4));
+
+        final ByteBuffer data = ByteBuffer.allocate(4);
+        reopened.read(1000, 9, data);
+        assertArrayEquals(new byte[]{1, 5, 6, 1}, data.array());
+
+        data.clear();
+        reopened.read(3, 0, data);
+        assertArrayEquals(new byte[]{2, 2, 2, 2}, data.array());
+
+        reopened.allocate(4, filledBlock((byte) 3));
+        assertEquals(sizeWithTwoBlocks + BLOCK_SIZE, channel.size());
+    }
+
+    @Test
+    public void accessToUnallocatedBlockThrows() throws IOException {
+        final SparseBlob blob = SparseBlob.create(channel, BLOCK_SIZE, BLOCK_COUNT, 0);
+        assertThrows(IllegalStateException.class, () -> blob.read(0, 0, ByteBuffer.allocate(1)));
+        assertThrows(IllegalStateException.class, () -> blob.write(0, 0, ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    public void rawDataIsNotSparseBlob() throws IOException {
+        channel.write(ByteBuffer.allocate(BLOCK_SIZE));
+        assertFalse(SparseBlob.isSparseBlob(channel));
+        assertThrows(IOException.class, () -> SparseBlob.open(channel));
+    }
+
+    @Test
+    public void invalidBlockCountThrows() throws IOException {
+        SparseBlob.create(channel, BLOCK_SIZE, BLOCK_COUNT, 0);
+
+        setBlockCount(Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> SparseBlob.open(channel));
+
+        setBlockCount(BLOCK_COUNT * 2);
+        assertThrows(IOException.class, () -> SparseBlob.open(channel));
+    }
+
+    private void setBlockCount(final int blockCount) throws IOException {
+        final ByteBuffer value = ByteBuffer.allocate(4).putInt(blockCount).flip();
+        channel.write(value, 12);
+    }
+
+    private static ByteBuffer filledBlock(final byte value) {
+        final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        while (block.hasRemaining()) {
+            block.put(value);
+        }
+        return block.flip();
+    }
+}